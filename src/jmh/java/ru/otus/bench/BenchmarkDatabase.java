@@ -0,0 +1,170 @@
+package ru.otus.bench;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.otus.config.LibraryProperties;
+import ru.otus.dao.impl.AuthorDAOJdbc;
+import ru.otus.dao.impl.BookDAOJdbc;
+import ru.otus.dao.impl.GenreDAOJdbc;
+import ru.otus.mapper.AuthorRowMapper;
+import ru.otus.mapper.BookRowMapper;
+import ru.otus.mapper.GenreRowMapper;
+import ru.otus.service.impl.BookServiceImpl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * H2 в памяти со схемой приложения и заданным количеством книг, DAO и сервис собраны без Spring контекста.
+ * У каждой книги уникальное название {@link #bookName(long)}, один автор и один жанр, авторов и жанров
+ * в 100 раз меньше, чем книг.
+ * {@link #getBookDAO()} читает через join, {@link #getBookViewDAO()} - из book_view; таблица book_view заполняется
+ * при посеве, изменения через getBookDAO() в нее не попадают
+ */
+public class BenchmarkDatabase implements AutoCloseable {
+    private static final int SEED_BATCH = 10_000;
+
+    private final HikariDataSource dataSource;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BookDAOJdbc bookDAO;
+    private final BookDAOJdbc bookViewDAO;
+    private final AuthorDAOJdbc authorDAO;
+    private final GenreDAOJdbc genreDAO;
+    private final BookServiceImpl bookService;
+    private final int books;
+    private final int authors;
+    private final int genres;
+
+    public BenchmarkDatabase(int books, int poolSize) {
+        this("jdbc:h2:mem:bench-" + UUID.randomUUID(), "schema.sql", books, poolSize);
+    }
+
+    /**
+     * База по заданному url со схемой из schemaScript; книги досеиваются, только если таблица books пуста,
+     * поэтому для постоянной базы повторное открытие не пересоздает данные
+     */
+    public BenchmarkDatabase(String url, String schemaScript, int books, int poolSize) {
+        final var config = new HikariConfig();
+        config.setJdbcUrl(url);
+        config.setMaximumPoolSize(poolSize);
+        this.dataSource = new HikariDataSource(config);
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(new JdbcTemplate(dataSource));
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        final var bookRowMapper = new BookRowMapper(new AuthorRowMapper(), new GenreRowMapper());
+        final var viewProperties = new LibraryProperties();
+        viewProperties.getReadModel().setEnabled(true);
+        this.bookDAO = new BookDAOJdbc(jdbcTemplate.getJdbcTemplate(), bookRowMapper, new LibraryProperties(), null);
+        this.bookViewDAO = new BookDAOJdbc(jdbcTemplate.getJdbcTemplate(), bookRowMapper, viewProperties, null);
+        this.authorDAO = new AuthorDAOJdbc(jdbcTemplate.getJdbcTemplate(), new AuthorRowMapper());
+        this.genreDAO = new GenreDAOJdbc(jdbcTemplate.getJdbcTemplate(), new GenreRowMapper());
+        this.bookService = new BookServiceImpl(bookDAO, authorDAO, genreDAO, event -> { }, new LibraryProperties());
+        this.books = books;
+        this.authors = Math.max(1, books / 100);
+        this.genres = Math.max(1, books / 100);
+        createSchema(schemaScript);
+        final Long existing = jdbcTemplate.getJdbcTemplate().queryForObject("select count(*) from books", Long.class);
+        if (existing == null || existing == 0) {
+            seed();
+        }
+    }
+
+    public static String bookName(long id) {
+        return "Книга " + id;
+    }
+
+    public static String authorName(long id) {
+        return "Автор " + id;
+    }
+
+    public static String genreName(long id) {
+        return "Жанр " + id;
+    }
+
+    private void createSchema(String schemaScript) {
+        final var populator = new ResourceDatabasePopulator(new ClassPathResource(schemaScript));
+        populator.setSqlScriptEncoding(StandardCharsets.UTF_8.name());
+        populator.execute(dataSource);
+    }
+
+    private void seed() {
+        final var jdbc = jdbcTemplate.getJdbcTemplate();
+        final List<Object[]> rows = new ArrayList<>(SEED_BATCH);
+        for (long id = 1; id <= authors; id++) {
+            rows.add(new Object[]{id, authorName(id)});
+        }
+        jdbc.batchUpdate("insert into authors(author_id, author_name) values (?, ?)", rows);
+        rows.clear();
+        for (long id = 1; id <= genres; id++) {
+            rows.add(new Object[]{id, genreName(id)});
+        }
+        jdbc.batchUpdate("insert into genres(genre_id, genre_name) values (?, ?)", rows);
+        rows.clear();
+        for (long id = 1; id <= books; id++) {
+            rows.add(new Object[]{id, bookName(id), id % authors + 1, id % genres + 1});
+            if (rows.size() == SEED_BATCH || id == books) {
+                jdbc.batchUpdate("insert into books(book_id, book_name, author_id, genre_id) values (?, ?, ?, ?)", rows);
+                rows.clear();
+            }
+        }
+        jdbc.update("insert into book_authors(book_id, author_id, position) select book_id, author_id, 0 from books");
+        jdbc.update("insert into book_genres(book_id, genre_id, position) select book_id, genre_id, 0 from books");
+        bookViewDAO.rebuildReadModel();
+    }
+
+    public NamedParameterJdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    /**
+     * Транзакции на пуле базы: DAO и сервис внутри execute работают на одном соединении
+     */
+    public TransactionTemplate getTransactionTemplate() {
+        return transactionTemplate;
+    }
+
+    public BookDAOJdbc getBookDAO() {
+        return bookDAO;
+    }
+
+    public BookDAOJdbc getBookViewDAO() {
+        return bookViewDAO;
+    }
+
+    public AuthorDAOJdbc getAuthorDAO() {
+        return authorDAO;
+    }
+
+    public GenreDAOJdbc getGenreDAO() {
+        return genreDAO;
+    }
+
+    public BookServiceImpl getBookService() {
+        return bookService;
+    }
+
+    public int getBooks() {
+        return books;
+    }
+
+    public int getAuthors() {
+        return authors;
+    }
+
+    public int getGenres() {
+        return genres;
+    }
+
+    @Override
+    public void close() {
+        dataSource.close();
+    }
+}
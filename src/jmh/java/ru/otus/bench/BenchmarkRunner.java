@@ -0,0 +1,27 @@
+package ru.otus.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Запуск бенчмарков с параметрами командной строки JMH.
+ * Если не заданы формат (-rf) или файл результата (-rff), результаты пишутся в JSON
+ * в target/jmh-result.json, чтобы их можно было сравнивать между версиями
+ */
+public class BenchmarkRunner {
+    private static final String DEFAULT_RESULT = "target/jmh-result.json";
+
+    public static void main(String[] args) throws Exception {
+        final var commandLine = new CommandLineOptions(args);
+        final var options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result(DEFAULT_RESULT);
+        }
+        new Runner(options.build()).run();
+    }
+}
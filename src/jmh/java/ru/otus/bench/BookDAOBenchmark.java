@@ -0,0 +1,137 @@
+package ru.otus.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.otus.entity.Author;
+import ru.otus.entity.Book;
+import ru.otus.entity.Genre;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск, вставка и обновление книг через BookDAOJdbc на H2 в памяти.
+ * Методы *Concurrent выполняются в 4 потоках на одной базе.
+ * SampleTime дает перцентили задержки, Throughput - операции в секунду.
+ * findAllByIds и findByIdLoop читают одни и те же BULK_SIZE книг одним вызовом и по одной
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookDAOBenchmark {
+    private static final int BULK_SIZE = 300;
+
+    @Param({"1000", "100000"})
+    private int books;
+
+    private BenchmarkDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase(books, 8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Optional<Book> findById() {
+        return database.getBookDAO().findById(randomBookId());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<Book> findByIdConcurrent() {
+        return database.getBookDAO().findById(randomBookId());
+    }
+
+    @Benchmark
+    public List<Book> findAllByIds() {
+        return database.getBookDAO().findAllByIds(randomBookIds());
+    }
+
+    @Benchmark
+    public List<Book> findByIdLoop() {
+        final var books = new ArrayList<Book>(BULK_SIZE);
+        for (Long id : randomBookIds()) {
+            database.getBookDAO().findById(id).ifPresent(books::add);
+        }
+        return books;
+    }
+
+    @Benchmark
+    public List<Book> findByName() {
+        return database.getBookDAO().findByName(BenchmarkDatabase.bookName(randomBookId()));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<Book> findByNameConcurrent() {
+        return database.getBookDAO().findByName(BenchmarkDatabase.bookName(randomBookId()));
+    }
+
+    @Benchmark
+    public long save() {
+        return database.getBookDAO().save(randomBook(0));
+    }
+
+    @Benchmark
+    public Boolean update() {
+        return database.getTransactionTemplate().execute(
+                status -> database.getBookDAO().update(randomBook(randomBookId())));
+    }
+
+    /**
+     * update вызывается в транзакции: без нее замена связей одной книги из двух потоков пересекается
+     */
+    @Benchmark
+    @Threads(4)
+    public Boolean updateConcurrent() {
+        return database.getTransactionTemplate().execute(
+                status -> database.getBookDAO().update(randomBook(randomBookId())));
+    }
+
+    private long randomBookId() {
+        return ThreadLocalRandom.current().nextLong(1, database.getBooks() + 1);
+    }
+
+    private List<Long> randomBookIds() {
+        final var ids = new ArrayList<Long>(BULK_SIZE);
+        for (int i = 0; i < BULK_SIZE; i++) {
+            ids.add(randomBookId());
+        }
+        return ids;
+    }
+
+    private Book randomBook(long id) {
+        final var random = ThreadLocalRandom.current();
+        final long authorId = random.nextLong(1, database.getAuthors() + 1);
+        final long genreId = random.nextLong(1, database.getGenres() + 1);
+        return new Book(
+                id,
+                BenchmarkDatabase.bookName(random.nextLong(database.getBooks())),
+                new Author(authorId, BenchmarkDatabase.authorName(authorId)),
+                new Genre(genreId, BenchmarkDatabase.genreName(genreId))
+        );
+    }
+}
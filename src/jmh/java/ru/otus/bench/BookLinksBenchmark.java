@@ -0,0 +1,109 @@
+package ru.otus.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.otus.entity.Book;
+import ru.otus.mapper.AuthorRowMapper;
+import ru.otus.mapper.BookLinksHandler;
+import ru.otus.mapper.BookRowMapper;
+import ru.otus.mapper.GenreRowMapper;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение страницы книг с авторами и жанрами: singleJoin - прежний запрос с одним автором и жанром через
+ * BookRowMapper, links - BookDAOJdbc.findPage (страница и по запросу на таблицу связей), perBookLinks - та же
+ * страница со связями, дочитанными запросами на каждую книгу (N+1). У каждой пятой книги два автора
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookLinksBenchmark {
+    private static final int BOOKS = 20_000;
+    private static final String PAGE_JOIN =
+            "select b.book_id, b.book_name, b.author_id, b.genre_id, b.version, a.author_id, a.author_name, g.genre_name " +
+            "from books b " +
+            "inner join authors a on b.author_id = a.author_id " +
+            "inner join genres g on b.genre_id = g.genre_id " +
+            "where b.book_id > :after_id order by b.book_id limit :limit";
+    private static final String AUTHORS_BY_ID =
+            "select ba.book_id, a.author_id, a.author_name " +
+            "from book_authors ba left join authors a on a.author_id = ba.author_id " +
+            "where ba.book_id = :id order by ba.position";
+    private static final String GENRES_BY_ID =
+            "select bg.book_id, g.genre_id, g.genre_name " +
+            "from book_genres bg left join genres g on g.genre_id = bg.genre_id " +
+            "where bg.book_id = :id order by bg.position";
+
+    @Param({"100", "1000"})
+    private int pageSize;
+
+    private final BookRowMapper bookRowMapper = new BookRowMapper(new AuthorRowMapper(), new GenreRowMapper());
+
+    private BenchmarkDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase(BOOKS, 1);
+        database.getJdbcTemplate().getJdbcTemplate().update(
+                "insert into book_authors(book_id, author_id, position) " +
+                "select book_id, mod(author_id, " + database.getAuthors() + ") + 1, 1 from books " +
+                "where mod(book_id, 5) = 0 and " + database.getAuthors() + " > 1");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Book> singleJoin() {
+        return database.getJdbcTemplate().query(PAGE_JOIN, pageParams(), bookRowMapper);
+    }
+
+    @Benchmark
+    public List<Book> links() {
+        return database.getBookDAO().findPage(randomAfterId(), pageSize);
+    }
+
+    @Benchmark
+    public List<Book> perBookLinks() {
+        final var books = database.getJdbcTemplate().query(PAGE_JOIN, pageParams(), bookRowMapper);
+        final var handler = new BookLinksHandler(books);
+        for (Book book : books) {
+            database.getJdbcTemplate().query(AUTHORS_BY_ID, Map.of("id", book.getId()), handler.authors());
+            database.getJdbcTemplate().query(GENRES_BY_ID, Map.of("id", book.getId()), handler.genres());
+        }
+        handler.apply(books);
+        return books;
+    }
+
+    private Map<String, Object> pageParams() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("after_id", randomAfterId());
+        params.put("limit", pageSize);
+        return params;
+    }
+
+    private long randomAfterId() {
+        return ThreadLocalRandom.current().nextLong(BOOKS - pageSize);
+    }
+}
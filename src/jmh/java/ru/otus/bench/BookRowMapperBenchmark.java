@@ -0,0 +1,82 @@
+package ru.otus.bench;
+
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.otus.entity.Book;
+import ru.otus.mapper.AuthorRowMapper;
+import ru.otus.mapper.BookResultSetExtractor;
+import ru.otus.mapper.BookRowMapper;
+import ru.otus.mapper.GenreRowMapper;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор строк результата в Book без обращения к БД: ResultSet в памяти с колонками запроса BookDAOJdbc.
+ * mapRows - построчный BookRowMapper, extract - BookResultSetExtractor с общими экземплярами авторов и жанров.
+ * Выделение памяти на операцию видно с профилировщиком: -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookRowMapperBenchmark {
+    @Param({"1000", "100000"})
+    private int rows;
+
+    private final BookRowMapper bookRowMapper = new BookRowMapper(new AuthorRowMapper(), new GenreRowMapper());
+    private SimpleResultSet resultSet;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        resultSet = new SimpleResultSet();
+        resultSet.setAutoClose(false);
+        resultSet.addColumn("BOOK_ID", Types.BIGINT, 19, 0);
+        resultSet.addColumn("BOOK_NAME", Types.VARCHAR, 255, 0);
+        resultSet.addColumn("AUTHOR_ID", Types.BIGINT, 19, 0);
+        resultSet.addColumn("GENRE_ID", Types.BIGINT, 19, 0);
+        resultSet.addColumn("VERSION", Types.BIGINT, 19, 0);
+        resultSet.addColumn("AUTHOR_ID", Types.BIGINT, 19, 0);
+        resultSet.addColumn("AUTHOR_NAME", Types.VARCHAR, 255, 0);
+        resultSet.addColumn("GENRE_NAME", Types.VARCHAR, 255, 0);
+        for (long id = 1; id <= rows; id++) {
+            final long authorId = id % 100 + 1;
+            final long genreId = id % 10 + 1;
+            resultSet.addRow(id, BenchmarkDatabase.bookName(id), authorId, genreId, 0L, authorId,
+                    BenchmarkDatabase.authorName(authorId), BenchmarkDatabase.genreName(genreId));
+        }
+    }
+
+    @Benchmark
+    public List<Book> mapRows() throws SQLException {
+        resultSet.beforeFirst();
+        final var books = new ArrayList<Book>(rows);
+        int rowNum = 0;
+        while (resultSet.next()) {
+            books.add(bookRowMapper.mapRow(resultSet, rowNum++));
+        }
+        return books;
+    }
+
+    @Benchmark
+    public List<Book> extract() throws SQLException {
+        resultSet.beforeFirst();
+        return new BookResultSetExtractor().extractData(resultSet);
+    }
+}
@@ -0,0 +1,77 @@
+package ru.otus.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.otus.entity.Book;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Создание и обновление книг через BookServiceImpl: поиск автора и жанра по имени плюс запись книги.
+ * Сервис собран без Spring, поэтому каждый запрос выполняется в режиме autocommit
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookServiceBenchmark {
+    @Param({"1000", "100000"})
+    private int books;
+
+    private BenchmarkDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase(books, 8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Book create() {
+        final var random = ThreadLocalRandom.current();
+        return database.getBookService().create(
+                BenchmarkDatabase.bookName(random.nextLong(database.getBooks())),
+                BenchmarkDatabase.authorName(random.nextLong(1, database.getAuthors() + 1)),
+                BenchmarkDatabase.genreName(random.nextLong(1, database.getGenres() + 1))
+        );
+    }
+
+    @Benchmark
+    public Book update() {
+        return update(ThreadLocalRandom.current());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Book updateConcurrent() {
+        return update(ThreadLocalRandom.current());
+    }
+
+    private Book update(ThreadLocalRandom random) {
+        return database.getBookService().update(
+                random.nextLong(1, database.getBooks() + 1),
+                BenchmarkDatabase.bookName(random.nextLong(database.getBooks())),
+                BenchmarkDatabase.authorName(random.nextLong(1, database.getAuthors() + 1)),
+                BenchmarkDatabase.genreName(random.nextLong(1, database.getGenres() + 1))
+        );
+    }
+}
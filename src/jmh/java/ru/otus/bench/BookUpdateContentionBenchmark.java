@@ -0,0 +1,80 @@
+package ru.otus.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.otus.config.LibraryProperties;
+import ru.otus.dto.LockMode;
+import ru.otus.entity.Book;
+import ru.otus.service.impl.BookServiceImpl;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Изменение названия книги (чтение, изменение, запись) из нескольких потоков, каждый вызов в своей транзакции.
+ * Потоки выбирают книгу случайно из первых hotBooks: при hotBooks = 1 все меняют одну книгу.
+ * OPTIMISTIC - условный update по версии с повтором при конфликте, PESSIMISTIC - select ... for update
+ * строки книги перед чтением
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class BookUpdateContentionBenchmark {
+    private static final int THREADS = 4;
+
+    @Param({"OPTIMISTIC", "PESSIMISTIC"})
+    private LockMode lockMode;
+
+    @Param({"1", "16", "1000"})
+    private int hotBooks;
+
+    private final AtomicLong names = new AtomicLong();
+
+    private BenchmarkDatabase database;
+    private BookServiceImpl bookService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase(10_000, THREADS);
+        // триггеры полнотекстового индекса занимают большую часть времени update и выполняются по одному,
+        // без индекса в замер попадают чтение, запись и ожидание блокировок
+        database.getJdbcTemplate().getJdbcTemplate().execute("CALL FT_DROP_INDEX('PUBLIC', 'BOOKS')");
+        final var properties = new LibraryProperties();
+        properties.getBookUpdate().setLockMode(lockMode);
+        // повторов с запасом: при конфликте на всех попытках вызов завершится исключением, и замер будет прерван
+        properties.getBookUpdate().setMaxAttempts(1000);
+        properties.getBookUpdate().setRetryBackoff(Duration.ofMillis(1));
+        bookService = new BookServiceImpl(database.getBookDAO(), database.getAuthorDAO(), database.getGenreDAO(),
+                event -> { }, properties);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Book updateName() {
+        final long id = ThreadLocalRandom.current().nextLong(hotBooks) + 1;
+        return database.getTransactionTemplate().execute(
+                status -> bookService.update(id, "Новое название " + names.incrementAndGet(), null, null));
+    }
+}
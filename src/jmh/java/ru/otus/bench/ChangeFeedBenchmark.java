@@ -0,0 +1,106 @@
+package ru.otus.bench;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import ru.otus.config.LibraryProperties;
+import ru.otus.dao.impl.BookChangeDAOJdbc;
+import ru.otus.dao.impl.BookDAOJdbc;
+import ru.otus.entity.Author;
+import ru.otus.entity.Book;
+import ru.otus.entity.Genre;
+import ru.otus.event.BookChangeListener;
+import ru.otus.mapper.AuthorRowMapper;
+import ru.otus.mapper.BookRowMapper;
+import ru.otus.mapper.GenreRowMapper;
+import ru.otus.service.impl.BookChangeFeedImpl;
+
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Цена журнала изменений на записи: update одной книги и удаление пачки книг в транзакции
+ * без журнала и с журналом book_changes и рассылкой после коммита одному слушателю
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChangeFeedBenchmark {
+    private static final int BULK_SIZE = 100;
+
+    @Param({"false", "true"})
+    private boolean changeFeed;
+
+    private final LongAdder delivered = new LongAdder();
+
+    private BenchmarkDatabase database;
+    private BookChangeFeedImpl feed;
+    private BookDAOJdbc bookDAO;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase(10_000, 4);
+        // без триггеров полнотекстового индекса, иначе они занимают почти все время записи
+        database.getJdbcTemplate().getJdbcTemplate().execute("CALL FT_DROP_INDEX('PUBLIC', 'BOOKS')");
+        if (changeFeed) {
+            feed = new BookChangeFeedImpl(new BookChangeDAOJdbc(database.getJdbcTemplate().getJdbcTemplate()),
+                    new StaticListableBeanFactory().getBeanProvider(BookChangeListener.class),
+                    new SimpleMeterRegistry(), new LibraryProperties());
+            feed.start();
+            feed.subscribe(changes -> delivered.add(changes.size()));
+        }
+        final var bookRowMapper = new BookRowMapper(new AuthorRowMapper(), new GenreRowMapper());
+        bookDAO = new BookDAOJdbc(database.getJdbcTemplate().getJdbcTemplate(), bookRowMapper, new LibraryProperties(), feed);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        if (feed != null) {
+            feed.stop();
+        }
+        database.close();
+    }
+
+    @Benchmark
+    public Boolean update() {
+        final long id = ThreadLocalRandom.current().nextLong(1, database.getBooks() + 1);
+        final var book = new Book(id, "Новое название " + id,
+                new Author(id % database.getAuthors() + 1, null), new Genre(id % database.getGenres() + 1, null));
+        return database.getTransactionTemplate().execute(status -> bookDAO.update(book));
+    }
+
+    /**
+     * Пачка книг создается и удаляется в одной транзакции: журнал получает записи одним пакетом
+     * и одним insert ... select
+     */
+    @Benchmark
+    public Integer saveAndDeleteAll() {
+        final var books = new ArrayList<Book>(BULK_SIZE);
+        for (int i = 0; i < BULK_SIZE; i++) {
+            books.add(new Book("Временная книга " + i, new Author(1, null), new Genre(1, null)));
+        }
+        return database.getTransactionTemplate().execute(status -> {
+            bookDAO.saveAll(books);
+            final var ids = database.getJdbcTemplate().getJdbcTemplate().queryForList(
+                    "select book_id from books where book_name like 'Временная книга %'", Long.class);
+            return bookDAO.deleteAllByIds(ids);
+        });
+    }
+}
@@ -0,0 +1,82 @@
+package ru.otus.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.otus.entity.Author;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пропускная способность AuthorDAOJdbc.getOrCreate из нескольких потоков: existing - имена уже есть в БД,
+ * unique - каждое имя новое, contended - потоки одновременно создают одни и те же новые имена.
+ * mergeExisting - для сравнения merge ... key(author_name) по существующим именам: он переписывает
+ * и блокирует строку при каждом вызове
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class GetOrCreateBenchmark {
+    private static final int THREADS = 4;
+    private static final String MERGE = "merge into authors(author_name) key(author_name) values (:name)";
+    private static final String FIND_ID = "select author_id from authors where author_name = :name";
+
+    private final AtomicLong uniqueNames = new AtomicLong();
+    private final AtomicLong contendedNames = new AtomicLong();
+
+    private BenchmarkDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase(10_000, THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Author existing() {
+        return database.getAuthorDAO().getOrCreate(randomExistingName());
+    }
+
+    @Benchmark
+    public Author unique() {
+        return database.getAuthorDAO().getOrCreate("Новый автор " + uniqueNames.incrementAndGet());
+    }
+
+    @Benchmark
+    public Author contended() {
+        // каждое имя запрашивают подряд THREADS вызовов, в среднем по одному из каждого потока
+        return database.getAuthorDAO().getOrCreate("Общий автор " + contendedNames.incrementAndGet() / THREADS);
+    }
+
+    @Benchmark
+    public Long mergeExisting() {
+        final var params = Map.of("name", randomExistingName());
+        database.getJdbcTemplate().update(MERGE, params);
+        return database.getJdbcTemplate().queryForObject(FIND_ID, params, Long.class);
+    }
+
+    private String randomExistingName() {
+        return BenchmarkDatabase.authorName(ThreadLocalRandom.current().nextLong(database.getAuthors()) + 1);
+    }
+}
@@ -0,0 +1,84 @@
+package ru.otus.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.otus.entity.Book;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержка чтения книг через join books/authors/genres и из денормализованной таблицы book_view
+ * на одной и той же базе
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadModelBenchmark {
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"1000000"})
+    private int books;
+
+    private BenchmarkDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase(books, 8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Optional<Book> findByIdJoin() {
+        return database.getBookDAO().findById(randomBookId());
+    }
+
+    @Benchmark
+    public Optional<Book> findByIdView() {
+        return database.getBookViewDAO().findById(randomBookId());
+    }
+
+    @Benchmark
+    public List<Book> findByNameJoin() {
+        return database.getBookDAO().findByName(BenchmarkDatabase.bookName(randomBookId()));
+    }
+
+    @Benchmark
+    public List<Book> findByNameView() {
+        return database.getBookViewDAO().findByName(BenchmarkDatabase.bookName(randomBookId()));
+    }
+
+    @Benchmark
+    public List<Book> findPageJoin() {
+        return database.getBookDAO().findPage(randomBookId() - PAGE_SIZE, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Book> findPageView() {
+        return database.getBookViewDAO().findPage(randomBookId() - PAGE_SIZE, PAGE_SIZE);
+    }
+
+    private long randomBookId() {
+        return ThreadLocalRandom.current().nextLong(1, database.getBooks() + 1);
+    }
+}
@@ -0,0 +1,127 @@
+package ru.otus.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.otus.entity.Author;
+import ru.otus.entity.Book;
+import ru.otus.entity.Genre;
+import ru.otus.mapper.AuthorRowMapper;
+import ru.otus.mapper.BookRowMapper;
+import ru.otus.mapper.GenreRowMapper;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Цена одного вызова DAO: named* - прежний путь через NamedParameterJdbcTemplate с HashMap параметров
+ * на каждый вызов, prepared* - текущие DAO с запросами, разобранными один раз. Одну и ту же работу делают
+ * только *AuthorFindById: DAO книг еще дочитывает связи с авторами и жанрами, а update заменяет связи и пишет
+ * журнал изменений, поэтому *Book* сравнивать между собой нельзя.
+ * Запускать с -prof gc, чтобы видеть выделение памяти на операцию (gc.alloc.rate.norm)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatementReuseBenchmark {
+    private static final int BOOKS = 1000;
+    private static final String AUTHOR_BY_ID = "select author_id, author_name from authors where author_id = :id";
+    private static final String BOOK_BY_ID =
+            "select b.book_id, b.book_name, b.author_id, b.genre_id, b.version, a.author_id, a.author_name, g.genre_name " +
+            "from books b " +
+            "inner join authors a on b.author_id = a.author_id " +
+            "inner join genres g on b.genre_id = g.genre_id " +
+            "where b.book_id = :id";
+    private static final String BOOK_UPDATE =
+            "update books set book_name = :name, author_id = :author_id, genre_id = :genre_id where book_id = :id";
+
+    private final AuthorRowMapper authorRowMapper = new AuthorRowMapper();
+    private final BookRowMapper bookRowMapper = new BookRowMapper(new AuthorRowMapper(), new GenreRowMapper());
+
+    private BenchmarkDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase(BOOKS, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Author> namedAuthorFindById() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("id", randomAuthorId());
+        return database.getJdbcTemplate().query(AUTHOR_BY_ID, params, authorRowMapper);
+    }
+
+    @Benchmark
+    public Optional<Author> preparedAuthorFindById() {
+        return database.getAuthorDAO().findById(randomAuthorId());
+    }
+
+    @Benchmark
+    public List<Book> namedBookFindById() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("id", randomBookId());
+        return database.getJdbcTemplate().query(BOOK_BY_ID, params, bookRowMapper);
+    }
+
+    @Benchmark
+    public Optional<Book> preparedBookFindById() {
+        return database.getBookDAO().findById(randomBookId());
+    }
+
+    @Benchmark
+    public int namedBookUpdate() {
+        final var book = randomBook();
+        Map<String, Object> params = new HashMap<>();
+        params.put("id", book.getId());
+        params.put("name", book.getName());
+        params.put("author_id", book.getAuthor().getId());
+        params.put("genre_id", book.getGenre().getId());
+        return database.getJdbcTemplate().update(BOOK_UPDATE, params);
+    }
+
+    @Benchmark
+    public boolean preparedBookUpdate() {
+        return database.getBookDAO().update(randomBook());
+    }
+
+    private long randomAuthorId() {
+        return ThreadLocalRandom.current().nextLong(1, database.getAuthors() + 1);
+    }
+
+    private long randomBookId() {
+        return ThreadLocalRandom.current().nextLong(1, BOOKS + 1);
+    }
+
+    private Book randomBook() {
+        final long authorId = randomAuthorId();
+        final long genreId = ThreadLocalRandom.current().nextLong(1, database.getGenres() + 1);
+        return new Book(
+                randomBookId(),
+                BenchmarkDatabase.bookName(randomBookId()),
+                new Author(authorId, BenchmarkDatabase.authorName(authorId)),
+                new Genre(genreId, BenchmarkDatabase.genreName(genreId))
+        );
+    }
+}
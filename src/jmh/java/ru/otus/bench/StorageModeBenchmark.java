@@ -0,0 +1,123 @@
+package ru.otus.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+import ru.otus.entity.Book;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение H2 в памяти (профиль по умолчанию) и постоянной базы в файле (профиль file).
+ * startup - открытие базы до готовности к запросам: в памяти это schema.sql и загрузка всех книг,
+ * для файла - открытие уже заполненной базы и идемпотентный schema-file.sql.
+ * findById и update - пропускная способность на уже открытой базе
+ */
+@Fork(1)
+public class StorageModeBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Storage {
+        @Param({"mem", "file"})
+        String storage;
+
+        @Param({"10000", "100000"})
+        int books;
+
+        Path directory;
+
+        @Setup(Level.Trial)
+        public void createDirectory() throws IOException {
+            directory = Files.createTempDirectory("library-bench");
+        }
+
+        @TearDown(Level.Trial)
+        public void deleteDirectory() throws IOException {
+            FileSystemUtils.deleteRecursively(directory);
+        }
+
+        BenchmarkDatabase open() {
+            if ("file".equals(storage)) {
+                final var url = "jdbc:h2:file:" + directory.resolve("library").toAbsolutePath()
+                        + ";CACHE_SIZE=65536;COMPRESS=TRUE;WRITE_DELAY=500";
+                return new BenchmarkDatabase(url, "schema-file.sql", books, 4);
+            }
+            return new BenchmarkDatabase("jdbc:h2:mem:bench-" + UUID.randomUUID(), "schema.sql", books, 4);
+        }
+    }
+
+    /**
+     * Заполненная и закрытая база: для файла каждый запуск startup открывает ее с диска заново
+     */
+    @State(Scope.Benchmark)
+    public static class ClosedDatabase {
+        @Setup(Level.Trial)
+        public void populate(Storage storage) {
+            storage.open().close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class OpenDatabase {
+        BenchmarkDatabase database;
+
+        @Setup(Level.Trial)
+        public void open(Storage storage) {
+            database = storage.open();
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            database.close();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public long startup(Storage storage, ClosedDatabase closed) {
+        try (var restarted = storage.open()) {
+            return restarted.getBookDAO().findById(1).map(Book::getId).orElseThrow();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public Optional<Book> findById(Storage storage, OpenDatabase open) {
+        return open.database.getBookDAO().findById(ThreadLocalRandom.current().nextLong(1, storage.books + 1));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public boolean update(Storage storage, OpenDatabase open) {
+        final var random = ThreadLocalRandom.current();
+        final var book = open.database.getBookDAO().findById(random.nextLong(1, storage.books + 1)).orElseThrow();
+        book.setName(BenchmarkDatabase.bookName(random.nextLong(storage.books)));
+        return open.database.getBookDAO().update(book);
+    }
+}
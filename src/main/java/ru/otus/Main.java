@@ -2,10 +2,18 @@ package ru.otus;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 
 @SpringBootApplication
 public class Main {
+    /**
+     * Сколько шагов запуска хранить для отчета startup-report, остальные не записываются
+     */
+    private static final int STARTUP_STEPS_CAPACITY = 10_000;
+
     public static void main(String[] args) {
-        SpringApplication.run(Main.class, args);
+        final var application = new SpringApplication(Main.class);
+        application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS_CAPACITY));
+        application.run(args);
     }
 }
@@ -0,0 +1,48 @@
+package ru.otus.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.JdbcProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.otus.metrics.StatementMetrics;
+import ru.otus.metrics.StatementMetricsInterceptor;
+
+import javax.sql.DataSource;
+
+/**
+ * Заменяет JdbcOperations и NamedParameterJdbcTemplate из автоконфигурации на обертки, которые снимают
+ * метрики каждого запроса DAO. Автоконфигурация не создает JdbcTemplate при наличии JdbcOperations,
+ * поэтому он создается здесь с настройками spring.jdbc.template
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "library.jdbc", name = "metrics-enabled", matchIfMissing = true)
+public class JdbcConfig {
+    @Bean
+    public JdbcTemplate jdbcTemplate(DataSource dataSource, JdbcProperties jdbcProperties) {
+        final var jdbcTemplate = new JdbcTemplate(dataSource);
+        final var template = jdbcProperties.getTemplate();
+        jdbcTemplate.setFetchSize(template.getFetchSize());
+        jdbcTemplate.setMaxRows(template.getMaxRows());
+        if (template.getQueryTimeout() != null) {
+            jdbcTemplate.setQueryTimeout((int) template.getQueryTimeout().getSeconds());
+        }
+        return jdbcTemplate;
+    }
+
+    @Bean
+    @Primary
+    public JdbcOperations jdbcOperations(JdbcTemplate jdbcTemplate, StatementMetrics statementMetrics) {
+        return StatementMetricsInterceptor.instrument(jdbcTemplate, statementMetrics);
+    }
+
+    @Bean
+    public NamedParameterJdbcOperations namedParameterJdbcOperations(JdbcTemplate jdbcTemplate,
+                                                                     StatementMetrics statementMetrics) {
+        return StatementMetricsInterceptor.instrument(new NamedParameterJdbcTemplate(jdbcTemplate), statementMetrics);
+    }
+}
@@ -0,0 +1,9 @@
+package ru.otus.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(LibraryProperties.class)
+public class LibraryConfig {
+}
@@ -0,0 +1,236 @@
+package ru.otus.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import ru.otus.datasource.ReplicaPolicy;
+import ru.otus.dto.LockMode;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Настройки приложения из секции {@code library} файла application.yml
+ */
+@Data
+@ConfigurationProperties(prefix = "library")
+public class LibraryProperties {
+    private final BatchImport batchImport = new BatchImport();
+    private final ReferenceCache referenceCache = new ReferenceCache();
+    private final ReferenceData referenceData = new ReferenceData();
+    private final BookCache bookCache = new BookCache();
+    private final BookUpdate bookUpdate = new BookUpdate();
+    private final AnalyticsCache analyticsCache = new AnalyticsCache();
+    private final Jdbc jdbc = new Jdbc();
+    private final WriteBehind writeBehind = new WriteBehind();
+    private final Script script = new Script();
+    private final ReadModel readModel = new ReadModel();
+    private final Export export = new Export();
+    private final Routing routing = new Routing();
+    private final ChangeFeed changeFeed = new ChangeFeed();
+    private final Startup startup = new Startup();
+
+    @Data
+    public static class BatchImport {
+        /**
+         * Количество строк в одном batch insert, каждая пачка пишется в отдельной транзакции
+         */
+        private int chunkSize = 1000;
+    }
+
+    @Data
+    public static class ReferenceCache {
+        private boolean enabled = true;
+        /**
+         * Максимальное количество записей в кэше авторов и в кэше жанров
+         */
+        private long maxSize = 10_000;
+        private Duration ttl = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class ReferenceData {
+        /**
+         * Создавать отсутствующих авторов и жанры при создании и изменении книг и при загрузке из файла
+         * вместо ошибки или пропуска строки
+         */
+        private boolean autoCreate = false;
+    }
+
+    @Data
+    public static class BookCache {
+        /**
+         * Кэшировать собранные книги по id (поиск по id и по списку id)
+         */
+        private boolean enabled = false;
+        private long maxSize = 10_000;
+        private Duration ttl = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class BookUpdate {
+        /**
+         * Защита изменения книги по ее текущему состоянию (без автора или жанра) от параллельных изменений
+         */
+        private LockMode lockMode = LockMode.OPTIMISTIC;
+        /**
+         * Сколько раз пытаться применить изменение при конфликте версий, 1 - без повторов
+         */
+        private int maxAttempts = 1;
+        /**
+         * Наибольшая пауза перед повтором, сама пауза выбирается случайно, чтобы повторы не совпадали
+         */
+        private Duration retryBackoff = Duration.ofMillis(10);
+    }
+
+    @Data
+    public static class AnalyticsCache {
+        /**
+         * Запоминать агрегаты по книгам до первого изменения книг
+         */
+        private boolean enabled = true;
+        /**
+         * Максимальное количество запомненных отчетов (каждый лимит top-N - отдельный отчет)
+         */
+        private long maxSize = 100;
+        private Duration ttl = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class Jdbc {
+        /**
+         * Количество строк, которое драйвер читает за один раз при потоковом обходе результата
+         */
+        private int fetchSize = 500;
+        /**
+         * Сколько id передается в одном in (...) при выборке книг по списку id
+         */
+        private int inChunkSize = 500;
+        /**
+         * Снимать ли метрики запросов через обертки над JdbcOperations и NamedParameterJdbcOperations
+         */
+        private boolean metricsEnabled = true;
+        /**
+         * Запросы дольше этого времени пишутся в лог как медленные
+         */
+        private Duration slowQueryThreshold = Duration.ofMillis(200);
+    }
+
+    @Data
+    public static class WriteBehind {
+        /**
+         * Включает отложенную запись: create и update в консоли ставятся в очередь и не ждут коммита
+         */
+        private boolean enabled = false;
+        private int queueCapacity = 10_000;
+        /**
+         * Максимальное количество операций в одной транзакции
+         */
+        private int batchSize = 200;
+        /**
+         * Сколько операция может ждать добора пачки перед записью
+         */
+        private Duration flushInterval = Duration.ofMillis(50);
+        /**
+         * Сколько вызывающий поток ждет места в заполненной очереди, прежде чем операция будет отклонена
+         */
+        private Duration offerTimeout = Duration.ofSeconds(5);
+        /**
+         * Сколько при остановке приложения ждать записи оставшихся в очереди операций
+         */
+        private Duration shutdownTimeout = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Script {
+        /**
+         * Сколько команд скрипта выполняется одновременно, имеет смысл держать не больше размера пула соединений
+         */
+        private int parallelism = 8;
+        /**
+         * Выполнять команды в виртуальных потоках, если их поддерживает среда выполнения (Java 21+)
+         */
+        private boolean virtualThreads = true;
+    }
+
+    @Data
+    public static class ReadModel {
+        /**
+         * Читать книги из денормализованной таблицы book_view и поддерживать ее при изменениях книг
+         */
+        private boolean enabled = false;
+    }
+
+    @Data
+    public static class Export {
+        /**
+         * Через сколько выгруженных книг писать прогресс в лог
+         */
+        private long progressInterval = 100_000;
+    }
+
+    @Data
+    public static class Routing {
+        /**
+         * Читающие транзакции (readOnly) идут на реплики, остальные - на основную базу
+         */
+        private boolean enabled = false;
+        private ReplicaPolicy policy = ReplicaPolicy.ROUND_ROBIN;
+        /**
+         * Сколько после записи читающие транзакции того же потока идут на основную базу,
+         * чтобы видеть свои изменения при отставании реплик; 0 - не закреплять
+         */
+        private Duration readYourWritesWindow = Duration.ofSeconds(2);
+        private List<Replica> replicas = new ArrayList<>();
+    }
+
+    @Data
+    public static class ChangeFeed {
+        /**
+         * Писать изменения книг в журнал book_changes и рассылать их слушателям после коммита
+         */
+        private boolean enabled = false;
+        /**
+         * Сколько пачек изменений (по одной на транзакцию) ждут рассылки, при переполнении пачка не рассылается
+         */
+        private int queueCapacity = 1000;
+        /**
+         * Сколько при остановке приложения ждать рассылки оставшихся пачек
+         */
+        private Duration shutdownTimeout = Duration.ofSeconds(5);
+        /**
+         * Сколько курсор журнала ждет запись для пропуска в номерах, прежде чем считать ее транзакцию
+         * откатившейся; должно быть больше самой долгой пишущей транзакции
+         */
+        private Duration gapTimeout = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Startup {
+        /**
+         * Выполнить одну команду оболочки вместо интерактивного режима и завершить приложение
+         */
+        private String command;
+        /**
+         * Не выполнять скрипты spring.sql.init, если их содержимое не менялось с прошлого запуска
+         * на этой базе (хэши хранятся в таблице sql_init_scripts)
+         */
+        private boolean skipUnchangedScripts = false;
+        /**
+         * Писать в лог отчет о времени запуска по фазам после готовности приложения
+         */
+        private boolean logReport = false;
+        /**
+         * Сколько самых долгих по созданию бинов показывать в отчете о запуске
+         */
+        private int reportTopBeans = 10;
+    }
+
+    @Data
+    public static class Replica {
+        private String url;
+        private String username = "sa";
+        private String password = "";
+        private int maximumPoolSize = 10;
+    }
+}
@@ -0,0 +1,63 @@
+package ru.otus.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import ru.otus.datasource.ReplicaRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+
+/**
+ * Основная база и реплики для чтения. Основной пул настраивается как обычно через spring.datasource,
+ * реплики - через library.routing.replicas. DAO и менеджер транзакций получают основной (@Primary)
+ * DataSource: ленивую обертку над маршрутизатором
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "library.routing", name = "enabled", havingValue = "true")
+public class RoutingDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             LibraryProperties libraryProperties,
+                                                             MeterRegistry meterRegistry) {
+        final var routing = libraryProperties.getRouting();
+        final var replicas = new ArrayList<HikariDataSource>();
+        for (int i = 0; i < routing.getReplicas().size(); i++) {
+            final var replica = routing.getReplicas().get(i);
+            final var config = new HikariConfig();
+            config.setPoolName(primaryDataSource.getPoolName() + "-replica-" + (i + 1));
+            config.setJdbcUrl(replica.getUrl());
+            config.setUsername(replica.getUsername());
+            config.setPassword(replica.getPassword());
+            config.setMaximumPoolSize(replica.getMaximumPoolSize());
+            config.setMinimumIdle(Math.min(primaryDataSource.getMinimumIdle(), replica.getMaximumPoolSize()));
+            config.setConnectionTimeout(primaryDataSource.getConnectionTimeout());
+            config.setReadOnly(true);
+            config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.add(new HikariDataSource(config));
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, routing.getPolicy(),
+                routing.getReadYourWritesWindow(), meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
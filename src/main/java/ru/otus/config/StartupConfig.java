@@ -0,0 +1,45 @@
+package ru.otus.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.otus.datasource.CachedScriptDatabaseInitializer;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Заменяет инициализацию базы из автоконфигурации на пропускающую скрипты, которые не менялись
+ * с прошлого запуска. Расположение скриптов и остальные настройки берутся из spring.sql.init; при замене
+ * автоконфигурация spring.sql.init отключается целиком, поэтому ее настройки подключаются здесь
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "library.startup", name = "skip-unchanged-scripts", havingValue = "true")
+@EnableConfigurationProperties(SqlInitializationProperties.class)
+public class StartupConfig {
+    @Bean
+    public CachedScriptDatabaseInitializer cachedScriptDatabaseInitializer(DataSource dataSource,
+                                                                           SqlInitializationProperties properties) {
+        final var settings = new DatabaseInitializationSettings();
+        settings.setSchemaLocations(locations(properties.getSchemaLocations(), "schema", properties.getPlatform()));
+        settings.setDataLocations(locations(properties.getDataLocations(), "data", properties.getPlatform()));
+        settings.setContinueOnError(properties.isContinueOnError());
+        settings.setSeparator(properties.getSeparator());
+        settings.setEncoding(properties.getEncoding());
+        settings.setMode(properties.getMode());
+        return new CachedScriptDatabaseInitializer(dataSource, settings);
+    }
+
+    /**
+     * Расположения по умолчанию те же, что у автоконфигурации: schema-${platform}.sql и schema.sql
+     */
+    private static List<String> locations(List<String> locations, String fallback, String platform) {
+        if (locations != null) {
+            return locations;
+        }
+        return List.of("optional:classpath*:" + fallback + "-" + platform + ".sql", "optional:classpath*:" + fallback + ".sql");
+    }
+}
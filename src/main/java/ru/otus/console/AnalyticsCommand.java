@@ -0,0 +1,75 @@
+package ru.otus.console;
+
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+import ru.otus.dto.CountByName;
+import ru.otus.service.AnalyticsService;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+@ShellComponent
+public class AnalyticsCommand {
+    private static final String ERROR_MESSAGE_PREFIX = "Ошибка при выполении команды: ";
+
+    private final AnalyticsService analyticsService;
+
+    public AnalyticsCommand(AnalyticsService analyticsService) {
+        this.analyticsService = analyticsService;
+    }
+
+    @ShellMethod("Количество книг у каждого автора")
+    public String booksPerAuthor() {
+        return report(analyticsService::forEachBooksPerAuthor);
+    }
+
+    @ShellMethod("Количество книг в каждом жанре")
+    public String booksPerGenre() {
+        return report(analyticsService::forEachBooksPerGenre);
+    }
+
+    /**
+     * Авторы с наибольшим количеством книг:
+     * <p>top-authors --limit 10</p>
+     */
+    @ShellMethod("Авторы с наибольшим количеством книг")
+    public String topAuthors(@ShellOption(defaultValue = "10") int limit) {
+        try {
+            return format(analyticsService.topAuthors(limit));
+        } catch (Exception ex) {
+            return ERROR_MESSAGE_PREFIX + ex.getMessage();
+        }
+    }
+
+    @ShellMethod("Жанры с наибольшим количеством книг")
+    public String topGenres(@ShellOption(defaultValue = "10") int limit) {
+        try {
+            return format(analyticsService.topGenres(limit));
+        } catch (Exception ex) {
+            return ERROR_MESSAGE_PREFIX + ex.getMessage();
+        }
+    }
+
+    private String report(Consumer<Consumer<CountByName>> query) {
+        try {
+            final var result = new StringBuilder();
+            query.accept(count -> result.append(count).append(System.lineSeparator()));
+            result.append("всего книг: ").append(analyticsService.countBooks());
+            return result.toString();
+        } catch (Exception ex) {
+            return ERROR_MESSAGE_PREFIX + ex.getMessage();
+        }
+    }
+
+    private String format(List<CountByName> counts) {
+        if (counts.isEmpty()) {
+            return "книг нет";
+        }
+        final var result = new StringBuilder();
+        for (int i = 0; i < counts.size(); i++) {
+            result.append(i + 1).append(". ").append(counts.get(i)).append(System.lineSeparator());
+        }
+        return result.toString().stripTrailing();
+    }
+}
@@ -0,0 +1,73 @@
+package ru.otus.console;
+
+import com.google.common.cache.CacheStats;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import ru.otus.dao.cache.CachedAuthorDAO;
+import ru.otus.dao.cache.CachedBookDAO;
+import ru.otus.dao.cache.CachedGenreDAO;
+import ru.otus.dao.cache.ReferenceCache;
+
+@ShellComponent
+public class CacheCommand {
+    private static final String DISABLED_MESSAGE = "кэш справочников отключен (library.reference-cache.enabled)";
+    private static final String BOOKS_DISABLED_MESSAGE = "кэш книг отключен (library.book-cache.enabled)";
+
+    private final ObjectProvider<CachedAuthorDAO> authorDAO;
+    private final ObjectProvider<CachedGenreDAO> genreDAO;
+    private final ObjectProvider<CachedBookDAO> bookDAO;
+
+    public CacheCommand(ObjectProvider<CachedAuthorDAO> authorDAO,
+                        ObjectProvider<CachedGenreDAO> genreDAO,
+                        ObjectProvider<CachedBookDAO> bookDAO) {
+        this.authorDAO = authorDAO;
+        this.genreDAO = genreDAO;
+        this.bookDAO = bookDAO;
+    }
+
+    @ShellMethod(value = "Статистика кэша авторов, жанров и книг", key = "cache-stats")
+    public String cacheStats() {
+        final var authors = authorDAO.getIfAvailable();
+        final var genres = genreDAO.getIfAvailable();
+        final var books = bookDAO.getIfAvailable();
+        final var result = new StringBuilder();
+        if (authors == null || genres == null) {
+            result.append(DISABLED_MESSAGE);
+        } else {
+            result.append(format("авторы", authors.getCache())).append(System.lineSeparator())
+                    .append(format("жанры", genres.getCache()));
+        }
+        result.append(System.lineSeparator());
+        if (books == null) {
+            result.append(BOOKS_DISABLED_MESSAGE);
+        } else {
+            result.append(format("книги", books.getCache().size(), books.getCache().stats()));
+        }
+        return result.toString();
+    }
+
+    @ShellMethod(value = "Очистить кэш авторов, жанров и книг", key = "cache-evict")
+    public String cacheEvict() {
+        final var authors = authorDAO.getIfAvailable();
+        final var genres = genreDAO.getIfAvailable();
+        final var books = bookDAO.getIfAvailable();
+        if (authors != null && genres != null) {
+            authors.getCache().invalidateAll();
+            genres.getCache().invalidateAll();
+        }
+        if (books != null) {
+            books.getCache().invalidateAll();
+        }
+        return "done.";
+    }
+
+    private String format(String name, ReferenceCache<?> cache) {
+        return format(name, cache.size(), cache.stats());
+    }
+
+    private String format(String name, long size, CacheStats stats) {
+        return String.format("%s: записей=%d, попаданий=%d, промахов=%d, доля попаданий=%.2f, вытеснено=%d",
+                name, size, stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount());
+    }
+}
@@ -0,0 +1,74 @@
+package ru.otus.console;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+import ru.otus.event.BookChange;
+import ru.otus.service.BookChangeFeed;
+import ru.otus.service.impl.BookChangeFeedImpl;
+
+import java.util.stream.Collectors;
+
+@ShellComponent
+public class ChangeFeedCommand {
+    private static final String DISABLED_MESSAGE = "лента изменений отключена (library.change-feed.enabled)";
+
+    private final ObjectProvider<BookChangeFeed> changeFeed;
+    private final MeterRegistry meterRegistry;
+
+    public ChangeFeedCommand(ObjectProvider<BookChangeFeed> changeFeed, MeterRegistry meterRegistry) {
+        this.changeFeed = changeFeed;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @ShellMethod(value = "Состояние ленты изменений книг", key = "change-feed")
+    public String changeFeed() {
+        final var feed = changeFeed.getIfAvailable();
+        if (feed == null) {
+            return DISABLED_MESSAGE;
+        }
+        final var published = meterRegistry.find(BookChangeFeedImpl.PUBLISHED_NAME).counter();
+        final var dropped = meterRegistry.find(BookChangeFeedImpl.DROPPED_NAME).counter();
+        final var failed = meterRegistry.find(BookChangeFeedImpl.FAILED_NAME).counter();
+        return String.format("пачек в очереди=%d, разослано изменений=%d, не разослано=%d, ошибок слушателей=%d",
+                feed.getPending(),
+                published == null ? 0 : (long) published.count(),
+                dropped == null ? 0 : (long) dropped.count(),
+                failed == null ? 0 : (long) failed.count());
+    }
+
+    /**
+     * Записи журнала изменений после заданного номера:
+     * <p>changes --after-id 0 --limit 20</p>
+     */
+    @ShellMethod(value = "Журнал изменений книг", key = "changes")
+    public String changes(@ShellOption(defaultValue = "0") long afterId,
+                          @ShellOption(defaultValue = "20") int limit) {
+        final var feed = changeFeed.getIfAvailable();
+        if (feed == null) {
+            return DISABLED_MESSAGE;
+        }
+        final var changes = feed.replay(afterId, limit);
+        if (changes.isEmpty()) {
+            return "изменений с номером больше " + afterId + " нет";
+        }
+        return changes.stream()
+                .map(BookChange::toString)
+                .collect(Collectors.joining(System.lineSeparator()));
+    }
+
+    /**
+     * Удалить из журнала уже обработанные записи:
+     * <p>changes-purge --up-to-id 100</p>
+     */
+    @ShellMethod(value = "Очистка журнала изменений книг", key = "changes-purge")
+    public String changesPurge(@ShellOption long upToId) {
+        final var feed = changeFeed.getIfAvailable();
+        if (feed == null) {
+            return DISABLED_MESSAGE;
+        }
+        return "удалено записей: " + feed.purge(upToId);
+    }
+}
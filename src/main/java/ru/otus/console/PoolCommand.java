@@ -0,0 +1,107 @@
+package ru.otus.console;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import ru.otus.datasource.ReplicaRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@ShellComponent
+public class PoolCommand {
+    private static final String ACQUIRE_TIMER = "hikaricp.connections.acquire";
+    private static final String USAGE_TIMER = "hikaricp.connections.usage";
+    private static final String TIMEOUT_COUNTER = "hikaricp.connections.timeout";
+
+    private final ObjectProvider<DataSource> dataSources;
+    private final MeterRegistry meterRegistry;
+
+    public PoolCommand(ObjectProvider<DataSource> dataSources, MeterRegistry meterRegistry) {
+        this.dataSources = dataSources;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @ShellMethod("Состояние пула соединений")
+    public String pool() {
+        final var report = dataSources.orderedStream()
+                .flatMap(this::pools)
+                .filter(Objects::nonNull)
+                .distinct()
+                .map(this::format)
+                .collect(Collectors.joining(System.lineSeparator()));
+        if (report.isEmpty()) {
+            return "пул соединений HikariCP не используется";
+        }
+        final var routing = dataSources.orderedStream()
+                .filter(ReplicaRoutingDataSource.class::isInstance)
+                .map(dataSource -> formatRouting((ReplicaRoutingDataSource) dataSource))
+                .collect(Collectors.joining(System.lineSeparator()));
+        return routing.isEmpty() ? report : report + System.lineSeparator() + routing;
+    }
+
+    private Stream<HikariDataSource> pools(DataSource dataSource) {
+        if (dataSource instanceof ReplicaRoutingDataSource) {
+            return ((ReplicaRoutingDataSource) dataSource).getReplicas().stream();
+        }
+        return Stream.of(DataSourceUnwrapper.unwrap(dataSource, HikariDataSource.class));
+    }
+
+    private String formatRouting(ReplicaRoutingDataSource dataSource) {
+        return String.format("маршрутизация: политика=%s, реплик=%d, на основную=%d, "
+                        + "на основную после записи=%d, на реплики=%d",
+                dataSource.getPolicy(),
+                dataSource.getReplicas().size(),
+                routedConnections(ReplicaRoutingDataSource.ROUTE_PRIMARY),
+                routedConnections(ReplicaRoutingDataSource.ROUTE_PINNED),
+                routedConnections(ReplicaRoutingDataSource.ROUTE_REPLICA));
+    }
+
+    private long routedConnections(String route) {
+        return (long) meterRegistry.find(ReplicaRoutingDataSource.CONNECTIONS_NAME).tag("route", route).counters()
+                .stream()
+                .mapToDouble(Counter::count)
+                .sum();
+    }
+
+    private String format(HikariDataSource dataSource) {
+        final var pool = dataSource.getHikariPoolMXBean();
+        final var name = dataSource.getPoolName();
+        if (pool == null) {
+            return name + ": пул еще не запущен";
+        }
+        final var timeouts = meterRegistry.find(TIMEOUT_COUNTER).tag("pool", name).counter();
+        return String.format("%s: активных=%d, свободных=%d, всего=%d из %d, ожидают соединения=%d, таймаутов=%d%n"
+                        + "  получение соединения: %s%n"
+                        + "  использование соединения: %s",
+                name,
+                pool.getActiveConnections(),
+                pool.getIdleConnections(),
+                pool.getTotalConnections(),
+                dataSource.getMaximumPoolSize(),
+                pool.getThreadsAwaitingConnection(),
+                timeouts == null ? 0 : (long) timeouts.count(),
+                formatTimer(meterRegistry.find(ACQUIRE_TIMER).tag("pool", name).timer()),
+                formatTimer(meterRegistry.find(USAGE_TIMER).tag("pool", name).timer()));
+    }
+
+    private String formatTimer(Timer timer) {
+        if (timer == null || timer.count() == 0) {
+            return "нет данных";
+        }
+        final var percentiles = new StringBuilder();
+        for (var value : timer.takeSnapshot().percentileValues()) {
+            percentiles.append(String.format(", p%.0f=%.3f мс", value.percentile() * 100, value.value(TimeUnit.MILLISECONDS)));
+        }
+        return String.format("раз=%d, среднее=%.3f мс, макс=%.3f мс%s",
+                timer.count(), timer.mean(TimeUnit.MILLISECONDS), timer.max(TimeUnit.MILLISECONDS), percentiles);
+    }
+}
@@ -0,0 +1,39 @@
+package ru.otus.console;
+
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+import ru.otus.config.LibraryProperties;
+import ru.otus.service.BookScriptService;
+
+import java.nio.file.Path;
+
+@ShellComponent
+public class ScriptCommand {
+    private static final String ERROR_MESSAGE_PREFIX = "Ошибка при выполении команды: ";
+
+    private final BookScriptService bookScriptService;
+    private final LibraryProperties libraryProperties;
+
+    public ScriptCommand(BookScriptService bookScriptService, LibraryProperties libraryProperties) {
+        this.bookScriptService = bookScriptService;
+        this.libraryProperties = libraryProperties;
+    }
+
+    /**
+     * Параллельное выполнение файла с командами find, create, update, delete, по одной на строку:
+     * <p>run-script --file commands.txt --parallelism 8</p>
+     * Команды над одной книгой выполняются в порядке файла, в конце выводится общая скорость
+     */
+    @ShellMethod("Выполнить скрипт из команд параллельно")
+    public String runScript(
+            String file,
+            @ShellOption(defaultValue = "0") int parallelism) {
+        try {
+            final int threads = parallelism > 0 ? parallelism : libraryProperties.getScript().getParallelism();
+            return bookScriptService.run(Path.of(file), threads).toString();
+        } catch (Exception ex) {
+            return ERROR_MESSAGE_PREFIX + ex.getMessage();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ru.otus.console;
+
+import org.jline.reader.Parser;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.shell.Input;
+import org.springframework.shell.ResultHandler;
+import org.springframework.shell.Shell;
+import org.springframework.shell.jline.InteractiveShellApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Выполняет одну команду оболочки из library.startup.command вместо интерактивного режима, например
+ * <p>java -jar app.jar --spring.profiles.active=fast --library.startup.command="find --id 1"</p>
+ * Результат печатается как в консоли, после команды приложение завершается. Ошибка оболочки (неизвестная команда,
+ * неверные параметры) завершает запуск с ошибкой и ненулевым кодом, как при выполнении скрипта через @file
+ */
+@Component
+@Order(InteractiveShellApplicationRunner.PRECEDENCE - 10)
+@ConditionalOnProperty(prefix = "library.startup", name = "command")
+public class SingleCommandRunner implements ApplicationRunner {
+    private final Shell shell;
+    private final ResultHandler<Object> resultHandler;
+    private final Parser parser;
+    private final ConfigurableEnvironment environment;
+    private final String command;
+
+    public SingleCommandRunner(Shell shell,
+                               @Qualifier("main") ResultHandler<Object> resultHandler,
+                               Parser parser,
+                               ConfigurableEnvironment environment,
+                               @Value("${library.startup.command}") String command) {
+        this.shell = shell;
+        this.resultHandler = resultHandler;
+        this.parser = parser;
+        this.environment = environment;
+        this.command = command;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        InteractiveShellApplicationRunner.disable(environment);
+        final var words = parser.parse(command, command.length()).words();
+        final Object result = shell.evaluate(new Input() {
+            @Override
+            public String rawText() {
+                return command;
+            }
+
+            @Override
+            public List<String> words() {
+                return words;
+            }
+        });
+        if (result != Shell.NO_INPUT) {
+            resultHandler.handleResult(result);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package ru.otus.console;
+
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+import ru.otus.metrics.StartupTimelineReport;
+
+@ShellComponent
+public class StartupCommand {
+    private final StartupTimelineReport startupTimelineReport;
+
+    public StartupCommand(StartupTimelineReport startupTimelineReport) {
+        this.startupTimelineReport = startupTimelineReport;
+    }
+
+    /**
+     * Время запуска приложения по фазам и самые долгие по созданию бины:
+     * <p>startup-report --top 10</p>
+     */
+    @ShellMethod(value = "Время запуска по фазам", key = "startup-report")
+    public String startupReport(@ShellOption(defaultValue = "10") int top) {
+        return startupTimelineReport.format(top);
+    }
+}
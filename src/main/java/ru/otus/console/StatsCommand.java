@@ -0,0 +1,47 @@
+package ru.otus.console;
+
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+import ru.otus.metrics.StatementMetrics;
+
+import java.util.Comparator;
+
+@ShellComponent
+public class StatsCommand {
+    private final StatementMetrics statementMetrics;
+
+    public StatsCommand(StatementMetrics statementMetrics) {
+        this.statementMetrics = statementMetrics;
+    }
+
+    /**
+     * Статистика SQL запросов, отсортированная по суммарному времени:
+     * <p>stats --top 5</p>
+     */
+    @ShellMethod("Статистика SQL запросов")
+    public String stats(@ShellOption(defaultValue = "20") int top) {
+        final var statements = statementMetrics.getStatements();
+        if (statements.isEmpty()) {
+            return "запросов еще не было";
+        }
+        final var result = new StringBuilder();
+        statements.stream()
+                .sorted(Comparator.comparing(StatementMetrics.StatementStats::getTotalTime).reversed())
+                .limit(top)
+                .forEach(stats -> result.append(String.format(
+                        "вызовов=%d, всего=%d мс, среднее=%.3f мс, p95=%.3f мс, p99=%.3f мс, макс=%.3f мс, "
+                                + "прочитано строк=%d, изменено строк=%d, ошибок=%d%n  %s%n",
+                        stats.getCount(),
+                        stats.getTotalTime().toMillis(),
+                        stats.getMeanMillis(),
+                        stats.getPercentileMillis(0.95),
+                        stats.getPercentileMillis(0.99),
+                        stats.getMaxMillis(),
+                        stats.getRowsReturned(),
+                        stats.getRowsAffected(),
+                        stats.getErrors(),
+                        stats.getSql())));
+        return result.toString().stripTrailing();
+    }
+}
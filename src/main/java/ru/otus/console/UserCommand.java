@@ -1,20 +1,50 @@
 package ru.otus.console;
 
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.shell.standard.ShellComponent;
 import org.springframework.shell.standard.ShellMethod;
 import org.springframework.shell.standard.ShellOption;
 import org.springframework.util.CollectionUtils;
+import ru.otus.config.LibraryProperties;
+import ru.otus.dto.ExportFormat;
+import ru.otus.dto.SearchMode;
+import ru.otus.entity.Book;
+import ru.otus.service.BookExportService;
+import ru.otus.service.BookImportService;
 import ru.otus.service.BookService;
+import ru.otus.service.BookWriteQueue;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+@Slf4j
 @ShellComponent
 public class UserCommand {
     private static final String ERROR_MESSAGE_PREFIX = "Ошибка при выполении команды: ";
 
     private final BookService bookService;
+    private final BookImportService bookImportService;
+    private final BookExportService bookExportService;
+    private final LibraryProperties libraryProperties;
+    private final ObjectProvider<BookWriteQueue> writeQueue;
 
-    public UserCommand(BookService bookService) {
+    public UserCommand(BookService bookService,
+                       BookImportService bookImportService,
+                       BookExportService bookExportService,
+                       LibraryProperties libraryProperties,
+                       ObjectProvider<BookWriteQueue> writeQueue) {
         this.bookService = bookService;
+        this.bookImportService = bookImportService;
+        this.bookExportService = bookExportService;
+        this.libraryProperties = libraryProperties;
+        this.writeQueue = writeQueue;
     }
 
     @ShellMethod("Найти книгу")
@@ -37,14 +67,106 @@ public class UserCommand {
         return ERROR_MESSAGE_PREFIX + "необходимо задать id или имя книги";
     }
 
+    /**
+     * Выборка книг по списку id за несколько запросов:
+     * <p>find-all --ids 1,2,3</p>
+     * <p>find-all --file ids.txt</p>
+     * В файле id разделяются запятыми, пробелами или переводами строк
+     */
+    @ShellMethod("Найти книги по списку id")
+    public String findAll(
+            @ShellOption(defaultValue = "") String ids,
+            @ShellOption(defaultValue = "") String file) {
+        try {
+            final String source;
+            if (StringUtils.isNoneEmpty(file)) {
+                source = Files.readString(Path.of(file));
+            } else if (StringUtils.isNoneEmpty(ids)) {
+                source = ids;
+            } else {
+                return ERROR_MESSAGE_PREFIX + "необходимо задать ids или file";
+            }
+            final var idList = parseIds(source);
+            final var books = bookService.findAllByIds(idList);
+            if (books.isEmpty()) {
+                return ERROR_MESSAGE_PREFIX + "не найдены книги с переданными id";
+            }
+            return books.stream()
+                    .map(Book::toString)
+                    .collect(Collectors.joining(System.lineSeparator()))
+                    + System.lineSeparator() + "найдено " + books.size() + " из " + idList.size();
+        } catch (IOException ex) {
+            return ERROR_MESSAGE_PREFIX + "не удалось прочитать файл " + file;
+        } catch (Exception ex) {
+            return ERROR_MESSAGE_PREFIX + ex.getMessage();
+        }
+    }
+
+    /**
+     * Поиск по названию книги:
+     * <p>search 'песнь' --mode ignore_case --limit 10</p>
+     * Режимы: exact, prefix, ignore_case (префикс без учета регистра), full_text (по словам названия)
+     */
+    @ShellMethod("Поиск книг по названию")
+    public String search(
+            String query,
+            @ShellOption(defaultValue = "prefix") String mode,
+            @ShellOption(defaultValue = "20") int limit) {
+        try {
+            final var books = bookService.search(query, SearchMode.valueOf(mode.toUpperCase()), limit);
+            if (books.isEmpty()) {
+                return ERROR_MESSAGE_PREFIX + "не найдены книги по запросу " + query;
+            }
+            return books.stream()
+                    .map(Book::toString)
+                    .collect(Collectors.joining(System.lineSeparator()));
+        } catch (Exception ex) {
+            return ERROR_MESSAGE_PREFIX + ex.getMessage();
+        }
+    }
+
+    /**
+     * Постраничный вывод книг в порядке id:
+     * <p>list --after-id 0 --limit 20</p>
+     * Для следующей страницы передаем в after-id последний выведенный id
+     */
+    @ShellMethod("Список книг постранично")
+    public String list(
+            @ShellOption(defaultValue = "0") long afterId,
+            @ShellOption(defaultValue = "20") int limit) {
+        try {
+            final var books = bookService.findPage(afterId, limit);
+            if (books.isEmpty()) {
+                return "книг с id больше " + afterId + " нет";
+            }
+            final var result = new StringBuilder();
+            books.forEach(book -> result.append(book).append(System.lineSeparator()));
+            final var lastId = books.get(books.size() - 1).getId();
+            if (books.size() == limit) {
+                result.append("следующая страница: list --after-id ").append(lastId).append(" --limit ").append(limit);
+            } else {
+                result.append("конец списка");
+            }
+            return result.toString();
+        } catch (Exception ex) {
+            return ERROR_MESSAGE_PREFIX + ex.getMessage();
+        }
+    }
+
     /**
      * Для создания в консоли используем следующую запись:
      * <p>create 'Сказка о рыбаке и рыбке' 'А.С. Пушкин' 'Сказка'</p>
-     * Предполагаем, что у нас один автор и один жанр у книги
+     * Несколько авторов или жанров перечисляются через ";", первые из них - основные:
+     * <p>create 'Двенадцать стульев' 'И. Ильф; Е. Петров' 'Роман; Сатира'</p>
+     * При включенной отложенной записи книга ставится в очередь, ошибки записи пишутся в лог
      */
     @ShellMethod("Создать книгу")
     public String create(String name, String authorName, String genreName) {
         try {
+            final var queue = writeQueue.getIfAvailable();
+            if (queue != null) {
+                return queued(queue, queue.create(name, authorName, genreName));
+            }
             return bookService.create(name, authorName, genreName).toString();
         } catch (Exception ex) {
             return ERROR_MESSAGE_PREFIX + ex.getMessage();
@@ -58,12 +180,29 @@ public class UserCommand {
             @ShellOption(defaultValue = "") String authorName,
             @ShellOption(defaultValue = "") String genreName) {
         try {
+            final var queue = writeQueue.getIfAvailable();
+            if (queue != null) {
+                return queued(queue, queue.update(id, name, authorName, genreName));
+            }
             return bookService.update(id, name, authorName, genreName).toString();
         } catch (Exception ex) {
             return ERROR_MESSAGE_PREFIX + ex.getMessage();
         }
     }
 
+    /**
+     * Обновить книгу или создать ее с заданным id, если такой нет (одна команда merge):
+     * <p>upsert 10 'Сказка о рыбаке и рыбке' 'А.С. Пушкин' 'Сказка'</p>
+     */
+    @ShellMethod("Создать или обновить книгу с заданным id")
+    public String upsert(long id, String name, String authorName, String genreName) {
+        try {
+            return bookService.upsert(id, name, authorName, genreName).toString();
+        } catch (Exception ex) {
+            return ERROR_MESSAGE_PREFIX + ex.getMessage();
+        }
+    }
+
     @ShellMethod("Удалить книгу")
     public String delete(@ShellOption(defaultValue = "0") long id) {
         if (id == 0) {
@@ -72,4 +211,149 @@ public class UserCommand {
         bookService.delete(id);
         return "done.";
     }
+
+    /**
+     * Удаление набора книг одним запросом (или пачкой запросов для большого списка id).
+     * Задается ровно один из признаков:
+     * <p>delete-all --ids 1,2,3</p>
+     * <p>delete-all --file ids.txt</p>
+     * <p>delete-all --author 'А.С. Пушкин'</p>
+     * <p>delete-all --genre 'Сказка'</p>
+     */
+    @ShellMethod("Удалить книги по списку id, автору или жанру")
+    public String deleteAll(
+            @ShellOption(defaultValue = "") String ids,
+            @ShellOption(defaultValue = "") String file,
+            @ShellOption(defaultValue = "") String author,
+            @ShellOption(defaultValue = "") String genre) {
+        final long criteria = Arrays.stream(new String[]{ids, file, author, genre})
+                .filter(StringUtils::isNoneEmpty)
+                .count();
+        if (criteria != 1) {
+            return ERROR_MESSAGE_PREFIX + "необходимо задать одно из: ids, file, author, genre";
+        }
+        try {
+            final int deleted;
+            if (StringUtils.isNoneEmpty(author)) {
+                deleted = bookService.deleteByAuthor(author);
+            } else if (StringUtils.isNoneEmpty(genre)) {
+                deleted = bookService.deleteByGenre(genre);
+            } else if (StringUtils.isNoneEmpty(file)) {
+                deleted = bookService.deleteAll(parseIds(Files.readString(Path.of(file))));
+            } else {
+                deleted = bookService.deleteAll(parseIds(ids));
+            }
+            return "удалено книг: " + deleted;
+        } catch (IOException ex) {
+            return ERROR_MESSAGE_PREFIX + "не удалось прочитать файл " + file;
+        } catch (Exception ex) {
+            return ERROR_MESSAGE_PREFIX + ex.getMessage();
+        }
+    }
+
+    /**
+     * Перенос всех книг автора на другого автора:
+     * <p>reassign-author 'Дж.Дж. Мартин' 'А.С. Пушкин'</p>
+     */
+    @ShellMethod("Перенести книги автора на другого автора")
+    public String reassignAuthor(String fromAuthorName, String toAuthorName) {
+        try {
+            return "изменено книг: " + bookService.reassignAuthor(fromAuthorName, toAuthorName);
+        } catch (Exception ex) {
+            return ERROR_MESSAGE_PREFIX + ex.getMessage();
+        }
+    }
+
+    /**
+     * Перенос всех книг жанра в другой жанр:
+     * <p>reassign-genre 'Сказка' 'Фэнтези'</p>
+     */
+    @ShellMethod("Перенести книги жанра в другой жанр")
+    public String reassignGenre(String fromGenreName, String toGenreName) {
+        try {
+            return "изменено книг: " + bookService.reassignGenre(fromGenreName, toGenreName);
+        } catch (Exception ex) {
+            return ERROR_MESSAGE_PREFIX + ex.getMessage();
+        }
+    }
+
+    @ShellMethod("Перестроить таблицу book_view для чтения без join")
+    public String readModelRebuild() {
+        try {
+            return "записано книг: " + bookService.rebuildReadModel();
+        } catch (Exception ex) {
+            return ERROR_MESSAGE_PREFIX + ex.getMessage();
+        }
+    }
+
+    /**
+     * Массовая загрузка книг из файла, в каждой строке: название, автор, жанр.
+     * <p>import --file books.tsv --chunk-size 5000</p>
+     * Разделитель по умолчанию определяется по расширению: табуляция для .tsv, запятая для остальных
+     */
+    @ShellMethod(value = "Загрузить книги из CSV/TSV файла", key = "import")
+    public String importBooks(
+            String file,
+            @ShellOption(defaultValue = "") String delimiter,
+            @ShellOption(defaultValue = "0") int chunkSize) {
+        try {
+            final var path = Path.of(file);
+            final char separator;
+            if (StringUtils.isEmpty(delimiter)) {
+                separator = file.endsWith(".tsv") ? '\t' : ',';
+            } else {
+                separator = "\\t".equals(delimiter) ? '\t' : delimiter.charAt(0);
+            }
+            final int size = chunkSize > 0 ? chunkSize : libraryProperties.getBatchImport().getChunkSize();
+            return bookImportService.importFile(path, separator, size).toString();
+        } catch (Exception ex) {
+            return ERROR_MESSAGE_PREFIX + ex.getMessage();
+        }
+    }
+
+    /**
+     * Потоковая выгрузка всех книг в файл.
+     * <p>export --file books.jsonl.gz</p>
+     * Формат по умолчанию определяется по расширению: JSON Lines для .jsonl, CSV для остальных;
+     * файл сжимается gzip, если расширение .gz или задан --gzip
+     */
+    @ShellMethod(value = "Выгрузить все книги в CSV/JSON Lines файл", key = "export")
+    public String exportBooks(
+            String file,
+            @ShellOption(defaultValue = "") String format,
+            @ShellOption(defaultValue = "false") boolean gzip) {
+        try {
+            final var compressed = gzip || file.endsWith(".gz");
+            final var baseName = file.endsWith(".gz") ? file.substring(0, file.length() - 3) : file;
+            final ExportFormat exportFormat;
+            if (StringUtils.isEmpty(format)) {
+                exportFormat = baseName.endsWith(".jsonl") ? ExportFormat.JSONL : ExportFormat.CSV;
+            } else {
+                exportFormat = ExportFormat.valueOf(format.toUpperCase());
+            }
+            return bookExportService.export(Path.of(file), exportFormat, compressed).toString();
+        } catch (Exception ex) {
+            return ERROR_MESSAGE_PREFIX + ex.getMessage();
+        }
+    }
+
+    private String queued(BookWriteQueue queue, CompletableFuture<Book> future) {
+        if (future.isCompletedExceptionally()) {
+            return ERROR_MESSAGE_PREFIX + future.handle((book, ex) -> ex.getMessage()).join();
+        }
+        future.whenComplete((book, ex) -> {
+            if (ex != null) {
+                log.warn("Ошибка отложенной записи книги: {}", ex.getMessage());
+            }
+        });
+        return "поставлено в очередь записи, ожидают записи: " + queue.getPending();
+    }
+
+    private List<Long> parseIds(String source) {
+        return Arrays.stream(source.split("[,\\s]+"))
+                .filter(StringUtils::isNoneEmpty)
+                .map(Long::valueOf)
+                .distinct()
+                .collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,83 @@
+package ru.otus.console;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+import ru.otus.service.BookWriteQueue;
+import ru.otus.service.impl.BookWriteQueueImpl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@ShellComponent
+public class WriteQueueCommand {
+    private static final String ERROR_MESSAGE_PREFIX = "Ошибка при выполении команды: ";
+    private static final String DISABLED_MESSAGE = "отложенная запись отключена (library.write-behind.enabled)";
+
+    private final ObjectProvider<BookWriteQueue> writeQueue;
+    private final MeterRegistry meterRegistry;
+
+    public WriteQueueCommand(ObjectProvider<BookWriteQueue> writeQueue, MeterRegistry meterRegistry) {
+        this.writeQueue = writeQueue;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @ShellMethod(value = "Состояние очереди отложенной записи", key = "write-queue")
+    public String writeQueue() {
+        final var queue = writeQueue.getIfAvailable();
+        if (queue == null) {
+            return DISABLED_MESSAGE;
+        }
+        final var batchSize = meterRegistry.find(BookWriteQueueImpl.BATCH_SIZE_NAME).summary();
+        final var rejected = meterRegistry.find(BookWriteQueueImpl.REJECTED_NAME).counter();
+        final var failed = meterRegistry.find(BookWriteQueueImpl.FAILED_NAME).counter();
+        return String.format("в очереди=%d, пачек=%d, средний размер пачки=%.1f, отклонено=%d, ошибок=%d%n"
+                        + "  запись пачки: %s%n"
+                        + "  от постановки в очередь до коммита: %s",
+                queue.getPending(),
+                batchSize == null ? 0 : batchSize.count(),
+                batchSize == null ? 0 : batchSize.mean(),
+                rejected == null ? 0 : (long) rejected.count(),
+                failed == null ? 0 : (long) failed.count(),
+                formatTimer(meterRegistry.find(BookWriteQueueImpl.FLUSH_TIMER).timer()),
+                formatTimer(meterRegistry.find(BookWriteQueueImpl.LATENCY_TIMER).timer()));
+    }
+
+    /**
+     * Дождаться записи всех операций, поставленных в очередь:
+     * <p>write-queue-flush --timeout-seconds 30</p>
+     */
+    @ShellMethod(value = "Дождаться записи очереди", key = "write-queue-flush")
+    public String writeQueueFlush(@ShellOption(defaultValue = "30") int timeoutSeconds) {
+        final var queue = writeQueue.getIfAvailable();
+        if (queue == null) {
+            return DISABLED_MESSAGE;
+        }
+        try {
+            queue.flush().get(timeoutSeconds, TimeUnit.SECONDS);
+            return "done.";
+        } catch (TimeoutException ex) {
+            return ERROR_MESSAGE_PREFIX + "очередь не записана за " + timeoutSeconds + " с, осталось " + queue.getPending();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return ERROR_MESSAGE_PREFIX + "ожидание прервано";
+        } catch (Exception ex) {
+            return ERROR_MESSAGE_PREFIX + ex.getMessage();
+        }
+    }
+
+    private String formatTimer(Timer timer) {
+        if (timer == null || timer.count() == 0) {
+            return "нет данных";
+        }
+        final var percentiles = new StringBuilder();
+        for (var value : timer.takeSnapshot().percentileValues()) {
+            percentiles.append(String.format(", p%.0f=%.3f мс", value.percentile() * 100, value.value(TimeUnit.MILLISECONDS)));
+        }
+        return String.format("раз=%d, среднее=%.3f мс, макс=%.3f мс%s",
+                timer.count(), timer.mean(TimeUnit.MILLISECONDS), timer.max(TimeUnit.MILLISECONDS), percentiles);
+    }
+}
@@ -0,0 +1,14 @@
+package ru.otus.dao;
+
+import ru.otus.dto.CountByName;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface AnalyticsDAO {
+    long countBooks();
+    void forEachBooksPerAuthor(Consumer<CountByName> consumer);
+    void forEachBooksPerGenre(Consumer<CountByName> consumer);
+    List<CountByName> topAuthors(int limit);
+    List<CountByName> topGenres(int limit);
+}
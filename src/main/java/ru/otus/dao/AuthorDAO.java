@@ -5,5 +5,13 @@ import ru.otus.entity.Author;
 import java.util.Optional;
 
 public interface AuthorDAO {
+    Optional<Author> findById(long id);
     Optional<Author> findByName(String name);
+    long save(Author author);
+
+    /**
+     * Автор с таким именем, при отсутствии создается; параллельные вызовы с одним именем
+     * получают одну и ту же запись
+     */
+    Author getOrCreate(String name);
 }
@@ -0,0 +1,13 @@
+package ru.otus.dao;
+
+import ru.otus.event.BookChange;
+
+import java.util.List;
+
+/**
+ * Чтение и очистка журнала изменений книг book_changes; пишет в журнал BookDAO в транзакции изменения
+ */
+public interface BookChangeDAO {
+    List<BookChange> findAfter(long afterChangeId, int limit);
+    int deleteUpTo(long changeId);
+}
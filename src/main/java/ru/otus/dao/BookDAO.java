@@ -1,14 +1,31 @@
 package ru.otus.dao;
 
+import ru.otus.dto.SearchMode;
 import ru.otus.entity.Book;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface BookDAO {
     Optional<Book> findById(long id);
+    Optional<Book> findByIdForUpdate(long id, boolean lock);
+    List<Book> findAllByIds(Collection<Long> ids);
     List<Book> findByName(String name);
+    List<Book> search(String query, SearchMode mode, int limit);
+    List<Book> findPage(long afterId, int limit);
+    void forEach(long afterId, Consumer<Book> consumer);
     long save(Book book);
-    void update(Book book);
-    void delete(long id);
+    int saveAll(List<Book> books);
+    boolean update(Book book);
+    boolean updateIfVersion(Book book);
+    void upsert(Book book);
+    int delete(long id);
+    int deleteAllByIds(Collection<Long> ids);
+    int deleteByAuthor(long authorId);
+    int deleteByGenre(long genreId);
+    int reassignAuthor(long fromAuthorId, long toAuthorId);
+    int reassignGenre(long fromGenreId, long toGenreId);
+    int rebuildReadModel();
 }
@@ -5,5 +5,13 @@ import ru.otus.entity.Genre;
 import java.util.Optional;
 
 public interface GenreDAO {
+    Optional<Genre> findById(long id);
     Optional<Genre> findByName(String name);
+    long save(Genre genre);
+
+    /**
+     * Жанр с таким именем, при отсутствии создается; параллельные вызовы с одним именем
+     * получают одну и ту же запись
+     */
+    Genre getOrCreate(String name);
 }
@@ -0,0 +1,61 @@
+package ru.otus.dao.cache;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import ru.otus.config.LibraryProperties;
+import ru.otus.dao.AuthorDAO;
+import ru.otus.dao.impl.AuthorDAOJdbc;
+import ru.otus.entity.Author;
+
+import java.util.Optional;
+
+@Primary
+@Repository
+@ConditionalOnProperty(prefix = "library.reference-cache", name = "enabled", matchIfMissing = true)
+public class CachedAuthorDAO implements AuthorDAO {
+    private final AuthorDAOJdbc authorDAO;
+    private final ReferenceCache<Author> cache;
+
+    public CachedAuthorDAO(AuthorDAOJdbc authorDAO, LibraryProperties libraryProperties) {
+        final var properties = libraryProperties.getReferenceCache();
+        this.authorDAO = authorDAO;
+        this.cache = new ReferenceCache<>(properties.getMaxSize(), properties.getTtl(), Author::getId, Author::getName);
+    }
+
+    @Override
+    public Optional<Author> findById(long id) {
+        return cache.getById(id, authorDAO::findById);
+    }
+
+    @Override
+    public Optional<Author> findByName(String name) {
+        return cache.getByName(name, authorDAO::findByName);
+    }
+
+    @Override
+    public long save(Author author) {
+        final var id = authorDAO.save(author);
+        cache.invalidate(id, author.getName());
+        return id;
+    }
+
+    /**
+     * Созданное значение попадает в кэш только после фиксации транзакции, чтобы откат не оставил в кэше
+     * несуществующий id
+     */
+    @Override
+    public Author getOrCreate(String name) {
+        final var cached = cache.getByName(name, authorDAO::findByName);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        final var author = authorDAO.getOrCreate(name);
+        cache.putAfterCommit(author);
+        return author;
+    }
+
+    public ReferenceCache<Author> getCache() {
+        return cache;
+    }
+}
@@ -0,0 +1,287 @@
+package ru.otus.dao.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.otus.config.LibraryProperties;
+import ru.otus.dao.BookDAO;
+import ru.otus.dao.impl.BookDAOJdbc;
+import ru.otus.dto.SearchMode;
+import ru.otus.entity.Author;
+import ru.otus.entity.Book;
+import ru.otus.entity.Genre;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Кэш собранных книг по id поверх BookDAOJdbc (library.book-cache.enabled). Ограничен по размеру
+ * (вытесняются давно не используемые записи) и по времени жизни, безопасен для многопоточного доступа.
+ * Книги изменяемые, поэтому в кэш кладется и из кэша отдается копия.
+ * Изменения книги, а также удаление и перенос книг автора или жанра сбрасывают затронутые записи сразу
+ * и еще раз по завершении транзакции. Каждый сброс увеличивает поколение полосы id, к которой относится книга
+ * (массовый - всех полос), а чтение из БД кладет книгу в кэш, только если поколение ее полосы не изменилось
+ * с начала чтения. Так книга, прочитанная параллельным читателем до коммита изменения, не попадает в кэш
+ * после сброса в старом виде. Сброс чужой книги той же полосы лишь пропускает одно кэширование
+ */
+@Primary
+@Repository
+@ConditionalOnProperty(prefix = "library.book-cache", name = "enabled", havingValue = "true")
+public class CachedBookDAO implements BookDAO {
+    public static final String CACHE_NAME = "books";
+    private static final int GENERATION_STRIPES = 64;
+
+    private final BookDAOJdbc bookDAO;
+    private final Cache<Long, Book> cache;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    public CachedBookDAO(BookDAOJdbc bookDAO, LibraryProperties libraryProperties, MeterRegistry meterRegistry) {
+        final var properties = libraryProperties.getBookCache();
+        this.bookDAO = bookDAO;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(properties.getMaxSize())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    @Override
+    public Optional<Book> findById(long id) {
+        final var cached = cache.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(copy(cached));
+        }
+        final long generation = generations.get(stripe(id));
+        final var loaded = bookDAO.findById(id);
+        loaded.ifPresent(book -> cacheIfCurrent(book, generation));
+        return loaded;
+    }
+
+    /**
+     * Мимо кэша: книга читается для изменения и должна быть в текущей версии
+     */
+    @Override
+    public Optional<Book> findByIdForUpdate(long id, boolean lock) {
+        return bookDAO.findByIdForUpdate(id, lock);
+    }
+
+    @Override
+    public List<Book> findAllByIds(Collection<Long> ids) {
+        final var distinctIds = new LinkedHashSet<>(ids);
+        final var cached = cache.getAllPresent(distinctIds);
+        final var missing = new ArrayList<Long>(distinctIds.size() - cached.size());
+        for (Long id : distinctIds) {
+            if (!cached.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+        final Map<Long, Book> loaded = new HashMap<>();
+        if (!missing.isEmpty()) {
+            final var loadGenerations = new long[GENERATION_STRIPES];
+            for (int i = 0; i < GENERATION_STRIPES; i++) {
+                loadGenerations[i] = generations.get(i);
+            }
+            for (Book book : bookDAO.findAllByIds(missing)) {
+                cacheIfCurrent(book, loadGenerations[stripe(book.getId())]);
+                loaded.put(book.getId(), book);
+            }
+        }
+        final var books = new ArrayList<Book>(cached.size() + loaded.size());
+        for (Long id : distinctIds) {
+            final var book = cached.get(id);
+            if (book != null) {
+                books.add(copy(book));
+            } else if (loaded.containsKey(id)) {
+                books.add(loaded.get(id));
+            }
+        }
+        return books;
+    }
+
+    @Override
+    public List<Book> findByName(String name) {
+        return bookDAO.findByName(name);
+    }
+
+    @Override
+    public List<Book> search(String query, SearchMode mode, int limit) {
+        return bookDAO.search(query, mode, limit);
+    }
+
+    @Override
+    public List<Book> findPage(long afterId, int limit) {
+        return bookDAO.findPage(afterId, limit);
+    }
+
+    @Override
+    public void forEach(long afterId, Consumer<Book> consumer) {
+        bookDAO.forEach(afterId, consumer);
+    }
+
+    @Override
+    public long save(Book book) {
+        return bookDAO.save(book);
+    }
+
+    @Override
+    public int saveAll(List<Book> books) {
+        return bookDAO.saveAll(books);
+    }
+
+    @Override
+    public boolean update(Book book) {
+        invalidate(List.of(book.getId()));
+        return bookDAO.update(book);
+    }
+
+    @Override
+    public boolean updateIfVersion(Book book) {
+        invalidate(List.of(book.getId()));
+        return bookDAO.updateIfVersion(book);
+    }
+
+    @Override
+    public void upsert(Book book) {
+        invalidate(List.of(book.getId()));
+        bookDAO.upsert(book);
+    }
+
+    @Override
+    public int delete(long id) {
+        invalidate(List.of(id));
+        return bookDAO.delete(id);
+    }
+
+    @Override
+    public int deleteAllByIds(Collection<Long> ids) {
+        invalidate(List.copyOf(ids));
+        return bookDAO.deleteAllByIds(ids);
+    }
+
+    @Override
+    public int deleteByAuthor(long authorId) {
+        invalidateIf(book -> hasAuthor(book, authorId));
+        return bookDAO.deleteByAuthor(authorId);
+    }
+
+    @Override
+    public int deleteByGenre(long genreId) {
+        invalidateIf(book -> hasGenre(book, genreId));
+        return bookDAO.deleteByGenre(genreId);
+    }
+
+    @Override
+    public int reassignAuthor(long fromAuthorId, long toAuthorId) {
+        invalidateIf(book -> hasAuthor(book, fromAuthorId));
+        return bookDAO.reassignAuthor(fromAuthorId, toAuthorId);
+    }
+
+    @Override
+    public int reassignGenre(long fromGenreId, long toGenreId) {
+        invalidateIf(book -> hasGenre(book, fromGenreId));
+        return bookDAO.reassignGenre(fromGenreId, toGenreId);
+    }
+
+    @Override
+    public int rebuildReadModel() {
+        return bookDAO.rebuildReadModel();
+    }
+
+    public Cache<Long, Book> getCache() {
+        return cache;
+    }
+
+    /**
+     * Кладет копию книги, прочитанной при поколении generation ее полосы. Если поколение уже другое, книга
+     * не кладется; если сменилось между проверкой и записью, запись убирается: сброс увеличивает поколение
+     * до удаления из кэша, поэтому одна из двух проверок его видит
+     */
+    private void cacheIfCurrent(Book book, long generation) {
+        final int stripe = stripe(book.getId());
+        if (generations.get(stripe) != generation) {
+            return;
+        }
+        final var copy = copy(book);
+        cache.put(book.getId(), copy);
+        if (generations.get(stripe) != generation) {
+            cache.asMap().remove(book.getId(), copy);
+        }
+    }
+
+    private void invalidate(List<Long> ids) {
+        evict(ids);
+        afterCommit(() -> evict(ids));
+    }
+
+    private void evict(List<Long> ids) {
+        for (Long id : ids) {
+            generations.incrementAndGet(stripe(id));
+        }
+        cache.invalidateAll(ids);
+    }
+
+    /**
+     * Сбрасывает книги по условию на связанные автора или жанр; проходит по всему кэшу, поэтому только для массовых операций
+     */
+    private void invalidateIf(Predicate<Book> predicate) {
+        evictIf(predicate);
+        afterCommit(() -> evictIf(predicate));
+    }
+
+    private void evictIf(Predicate<Book> predicate) {
+        for (int i = 0; i < GENERATION_STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+        cache.asMap().values().removeIf(predicate);
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    private static int stripe(long id) {
+        return (int) Math.floorMod(id, GENERATION_STRIPES);
+    }
+
+    private static boolean hasAuthor(Book book, long authorId) {
+        return book.getAuthors().stream().anyMatch(author -> author.getId() == authorId);
+    }
+
+    private static boolean hasGenre(Book book, long genreId) {
+        return book.getGenres().stream().anyMatch(genre -> genre.getId() == genreId);
+    }
+
+    private static Book copy(Book book) {
+        final var copy = new Book(
+                book.getId(),
+                book.getName(),
+                book.getAuthors().stream().map(author -> new Author(author.getId(), author.getName())).collect(Collectors.toList()),
+                book.getGenres().stream().map(genre -> new Genre(genre.getId(), genre.getName())).collect(Collectors.toList())
+        );
+        copy.setVersion(book.getVersion());
+        return copy;
+    }
+}
@@ -0,0 +1,61 @@
+package ru.otus.dao.cache;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import ru.otus.config.LibraryProperties;
+import ru.otus.dao.GenreDAO;
+import ru.otus.dao.impl.GenreDAOJdbc;
+import ru.otus.entity.Genre;
+
+import java.util.Optional;
+
+@Primary
+@Repository
+@ConditionalOnProperty(prefix = "library.reference-cache", name = "enabled", matchIfMissing = true)
+public class CachedGenreDAO implements GenreDAO {
+    private final GenreDAOJdbc genreDAO;
+    private final ReferenceCache<Genre> cache;
+
+    public CachedGenreDAO(GenreDAOJdbc genreDAO, LibraryProperties libraryProperties) {
+        final var properties = libraryProperties.getReferenceCache();
+        this.genreDAO = genreDAO;
+        this.cache = new ReferenceCache<>(properties.getMaxSize(), properties.getTtl(), Genre::getId, Genre::getName);
+    }
+
+    @Override
+    public Optional<Genre> findById(long id) {
+        return cache.getById(id, genreDAO::findById);
+    }
+
+    @Override
+    public Optional<Genre> findByName(String name) {
+        return cache.getByName(name, genreDAO::findByName);
+    }
+
+    @Override
+    public long save(Genre genre) {
+        final var id = genreDAO.save(genre);
+        cache.invalidate(id, genre.getName());
+        return id;
+    }
+
+    /**
+     * Созданное значение попадает в кэш только после фиксации транзакции, чтобы откат не оставил в кэше
+     * несуществующий id
+     */
+    @Override
+    public Genre getOrCreate(String name) {
+        final var cached = cache.getByName(name, genreDAO::findByName);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        final var genre = genreDAO.getOrCreate(name);
+        cache.putAfterCommit(genre);
+        return genre;
+    }
+
+    public ReferenceCache<Genre> getCache() {
+        return cache;
+    }
+}
@@ -0,0 +1,97 @@
+package ru.otus.dao.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Ограниченный по размеру и времени жизни кэш справочника (авторы, жанры) с доступом по имени и по id.
+ * Отсутствующие в БД значения не кэшируются.
+ */
+public class ReferenceCache<T> {
+    private final Cache<String, T> byName;
+    private final Cache<Long, T> byId;
+    private final ToLongFunction<T> idOf;
+    private final Function<T, String> nameOf;
+
+    public ReferenceCache(long maxSize, Duration ttl, ToLongFunction<T> idOf, Function<T, String> nameOf) {
+        this.byName = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.byId = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.idOf = idOf;
+        this.nameOf = nameOf;
+    }
+
+    public Optional<T> getByName(String name, Function<String, Optional<T>> loader) {
+        final var cached = byName.getIfPresent(name);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        final var loaded = loader.apply(name);
+        loaded.ifPresent(this::put);
+        return loaded;
+    }
+
+    public Optional<T> getById(long id, Function<Long, Optional<T>> loader) {
+        final var cached = byId.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        final var loaded = loader.apply(id);
+        loaded.ifPresent(this::put);
+        return loaded;
+    }
+
+    public void put(T value) {
+        byName.put(nameOf.apply(value), value);
+        byId.put(idOf.applyAsLong(value), value);
+    }
+
+    /**
+     * Кладет значение в кэш после фиксации текущей транзакции, вне транзакции - сразу
+     */
+    public void putAfterCommit(T value) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put(value);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(value);
+            }
+        });
+    }
+
+    public void invalidate(long id, String name) {
+        byId.invalidate(id);
+        byName.invalidate(name);
+    }
+
+    public void invalidateAll() {
+        byId.invalidateAll();
+        byName.invalidateAll();
+    }
+
+    public long size() {
+        return byId.size();
+    }
+
+    public CacheStats stats() {
+        return byName.stats().plus(byId.stats());
+    }
+}
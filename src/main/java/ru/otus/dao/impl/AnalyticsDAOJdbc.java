@@ -0,0 +1,97 @@
+package ru.otus.dao.impl;
+
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import ru.otus.dao.AnalyticsDAO;
+import ru.otus.dto.CountByName;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Агрегаты по книгам, которые считаются в БД одним запросом с group by: в приложение приходит
+ * по одной строке на автора или жанр, а не книги
+ */
+@Repository
+public class AnalyticsDAOJdbc implements AnalyticsDAO {
+    private static final PreparedQuery COUNT_BOOKS = PreparedQuery.of("select count(*) from books");
+    private static final PreparedQuery BOOKS_PER_AUTHOR = PreparedQuery.of(
+            "select a.author_id, a.author_name, coalesce(c.books, 0) from authors a " +
+            "left join (select author_id, count(*) books from book_authors group by author_id) c " +
+            "on c.author_id = a.author_id " +
+            "order by a.author_name, a.author_id");
+    private static final PreparedQuery BOOKS_PER_GENRE = PreparedQuery.of(
+            "select g.genre_id, g.genre_name, coalesce(c.books, 0) from genres g " +
+            "left join (select genre_id, count(*) books from book_genres group by genre_id) c " +
+            "on c.genre_id = g.genre_id " +
+            "order by g.genre_name, g.genre_id");
+    // книги группируются по author_id без join, имена подтягиваются только для limit строк результата
+    private static final PreparedQuery TOP_AUTHORS = PreparedQuery.of(
+            "select a.author_id, a.author_name, c.books from " +
+            "(select author_id, count(*) books from book_authors group by author_id " +
+            "order by books desc, author_id limit :limit) c " +
+            "inner join authors a on a.author_id = c.author_id " +
+            "order by c.books desc, a.author_id");
+    private static final PreparedQuery TOP_GENRES = PreparedQuery.of(
+            "select g.genre_id, g.genre_name, c.books from " +
+            "(select genre_id, count(*) books from book_genres group by genre_id " +
+            "order by books desc, genre_id limit :limit) c " +
+            "inner join genres g on g.genre_id = c.genre_id " +
+            "order by c.books desc, g.genre_id");
+
+    private static final RowMapper<CountByName> COUNT_MAPPER = (resultSet, i) -> new CountByName(
+            resultSet.getLong(1),
+            resultSet.getString(2),
+            resultSet.getLong(3)
+    );
+    private static final ResultSetExtractor<Long> COUNT_EXTRACTOR =
+            resultSet -> resultSet.next() ? resultSet.getLong(1) : 0L;
+
+    private final JdbcOperations jdbcOperations;
+
+    public AnalyticsDAOJdbc(JdbcOperations jdbcOperations) {
+        this.jdbcOperations = jdbcOperations;
+    }
+
+    @Override
+    public long countBooks() {
+        final Long count = jdbcOperations.query(COUNT_BOOKS.bind(), COUNT_EXTRACTOR);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Все авторы, в том числе без книг, в порядке имени
+     */
+    @Override
+    public void forEachBooksPerAuthor(Consumer<CountByName> consumer) {
+        jdbcOperations.query(BOOKS_PER_AUTHOR.bind(), handler(consumer));
+    }
+
+    /**
+     * Все жанры, в том числе без книг, в порядке названия
+     */
+    @Override
+    public void forEachBooksPerGenre(Consumer<CountByName> consumer) {
+        jdbcOperations.query(BOOKS_PER_GENRE.bind(), handler(consumer));
+    }
+
+    /**
+     * Авторы с наибольшим количеством книг
+     */
+    @Override
+    public List<CountByName> topAuthors(int limit) {
+        return jdbcOperations.query(TOP_AUTHORS.bind(limit), COUNT_MAPPER);
+    }
+
+    @Override
+    public List<CountByName> topGenres(int limit) {
+        return jdbcOperations.query(TOP_GENRES.bind(limit), COUNT_MAPPER);
+    }
+
+    private RowCallbackHandler handler(Consumer<CountByName> consumer) {
+        return resultSet -> consumer.accept(COUNT_MAPPER.mapRow(resultSet, 0));
+    }
+}
@@ -1,33 +1,83 @@
 package ru.otus.dao.impl;
 
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.CollectionUtils;
 import ru.otus.dao.AuthorDAO;
 import ru.otus.entity.Author;
 import ru.otus.mapper.AuthorRowMapper;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Repository
 public class AuthorDAOJdbc implements AuthorDAO {
+    private static final PreparedQuery FIND_BY_ID = PreparedQuery.of(
+            "select author_id, author_name from authors where author_id = :id");
+    private static final PreparedQuery FIND_BY_NAME = PreparedQuery.of(
+            "select author_id, author_name from authors where author_name = :name");
+    private static final PreparedQuery INSERT = PreparedQuery.withGeneratedKeys(
+            "insert into authors(author_name) values (:name)", "author_id");
+    // insert только при отсутствии имени: существующая строка не переписывается и не блокируется, как в merge
+    private static final PreparedQuery INSERT_IF_ABSENT = PreparedQuery.withGeneratedKeys(
+            "insert into authors(author_name) select :name from dual " +
+            "where not exists (select 1 from authors where author_name = :name)", "author_id");
 
-    private final NamedParameterJdbcOperations namedParameterJdbcOperations;
+    private final JdbcOperations jdbcOperations;
     private final AuthorRowMapper authorRowMapper;
 
-    public AuthorDAOJdbc(NamedParameterJdbcOperations namedParameterJdbcOperations, AuthorRowMapper authorRowMapper) {
-        this.namedParameterJdbcOperations = namedParameterJdbcOperations;
+    public AuthorDAOJdbc(JdbcOperations jdbcOperations, AuthorRowMapper authorRowMapper) {
+        this.jdbcOperations = jdbcOperations;
         this.authorRowMapper = authorRowMapper;
     }
 
+    @Override
+    public Optional<Author> findById(long id) {
+        return getOne(jdbcOperations.query(FIND_BY_ID.bind(id), authorRowMapper));
+    }
+
     @Override
     public Optional<Author> findByName(String name) {
-         String FIND_BY_NAME ="select author_id, author_name from authors where author_name = :name";
-        Map<String, Object> params = new HashMap<>();
-        params.put("name", name);
-        final var authors = namedParameterJdbcOperations.query(FIND_BY_NAME, params, authorRowMapper);
+        return getOne(jdbcOperations.query(FIND_BY_NAME.bind(name), authorRowMapper));
+    }
+
+    @Override
+    public long save(Author author) {
+        final var keyHolder = new GeneratedKeyHolder();
+        jdbcOperations.update(INSERT.bind(author.getName()), keyHolder);
+        final var key = keyHolder.getKeyAs(Long.class);
+        return key == null ? 0 : key;
+    }
+
+    /**
+     * Сначала поиск по имени - обычный случай для уже известных значений. Если имени нет, insert проверяет
+     * его отсутствие сам; при параллельной вставке того же имени уникальный индекс по author_name
+     * дожидается завершения чужой транзакции и отвечает ошибкой дубликата, после чего запись
+     * победителя читается повторно - один раз, без цикла повторов
+     */
+    @Override
+    public Author getOrCreate(String name) {
+        final var existing = findByName(name);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        try {
+            final var keyHolder = new GeneratedKeyHolder();
+            if (jdbcOperations.update(INSERT_IF_ABSENT.bind(name), keyHolder) > 0) {
+                return new Author(Objects.requireNonNull(keyHolder.getKeyAs(Long.class)), name);
+            }
+        } catch (DuplicateKeyException e) {
+            // запись создана параллельной транзакцией, она уже завершилась
+        }
+        return findByName(name).orElseThrow(() -> new IncorrectResultSizeDataAccessException(
+                "не найден автор после вставки: " + name, 1, 0));
+    }
+
+    private Optional<Author> getOne(List<Author> authors) {
         if (CollectionUtils.isEmpty(authors)) {
             return Optional.empty();
         }
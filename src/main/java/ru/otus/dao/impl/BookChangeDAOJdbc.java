@@ -0,0 +1,44 @@
+package ru.otus.dao.impl;
+
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.stereotype.Repository;
+import ru.otus.dao.BookChangeDAO;
+import ru.otus.event.BookChange;
+
+import java.util.List;
+
+@Repository
+public class BookChangeDAOJdbc implements BookChangeDAO {
+    private static final PreparedQuery FIND_AFTER = PreparedQuery.of(
+            "select change_id, book_id, change_type from book_changes " +
+            "where change_id > :after_id order by change_id limit :limit")
+            .parameters("after_id", "limit");
+    private static final PreparedQuery DELETE_UP_TO = PreparedQuery.of(
+            "delete from book_changes where change_id <= :change_id");
+
+    private final JdbcOperations jdbcOperations;
+
+    public BookChangeDAOJdbc(JdbcOperations jdbcOperations) {
+        this.jdbcOperations = jdbcOperations;
+    }
+
+    /**
+     * Записи журнала после afterChangeId в порядке номеров, не больше limit
+     */
+    @Override
+    public List<BookChange> findAfter(long afterChangeId, int limit) {
+        return jdbcOperations.query(FIND_AFTER.bind(afterChangeId, limit), (resultSet, i) -> new BookChange(
+                resultSet.getLong(1),
+                resultSet.getLong(2),
+                BookChange.Type.valueOf(resultSet.getString(3))
+        ));
+    }
+
+    /**
+     * Удаляет записи журнала по changeId включительно, например уже обработанные всеми слушателями
+     */
+    @Override
+    public int deleteUpTo(long changeId) {
+        return jdbcOperations.update(DELETE_UP_TO.bind(changeId));
+    }
+}
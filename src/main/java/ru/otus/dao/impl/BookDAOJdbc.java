@@ -1,108 +1,703 @@
 package ru.otus.dao.impl;
 
-import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import com.google.common.collect.Lists;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.CollectionUtils;
+import ru.otus.config.LibraryProperties;
 import ru.otus.dao.BookDAO;
+import ru.otus.dto.SearchMode;
 import ru.otus.entity.Book;
+import ru.otus.event.BookChange;
+import ru.otus.mapper.BookLinksHandler;
+import ru.otus.mapper.BookResultSetExtractor;
 import ru.otus.mapper.BookRowMapper;
+import ru.otus.service.BookChangeFeed;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+/**
+ * При library.read-model.enabled книги читаются из денормализованной таблицы book_view без join
+ * с авторами и жанрами, а все изменения книг в этом DAO сразу переносятся в book_view.
+ * Поиск (search) всегда идет по books: индексы по названию без учета регистра и полнотекстовый есть только там.
+ * Все запросы разбираются один раз при создании DAO, см. {@link PreparedQuery}.
+ * Основные автор и жанр книги читаются вместе с ней, полные списки из book_authors/book_genres
+ * дочитываются запросом на таблицу связей на всю страницу книг.
+ * При library.change-feed.enabled каждое изменение книг пишется в журнал book_changes в той же транзакции,
+ * записи журнала передаются ленте изменений для рассылки после коммита
+ */
 @Repository
 public class BookDAOJdbc implements BookDAO {
+    private static final String SELECT_JOIN =
+            "select b.book_id" +
+            ", b.book_name" +
+            ", b.author_id" +
+            ", b.genre_id" +
+            ", b.version" +
+            ", a.author_id" +
+            ", a.author_name" +
+            ", g.genre_name from books b " +
+            "inner join authors a on b.author_id = a.author_id " +
+            "inner join genres g on b.genre_id = g.genre_id ";
+    private static final String SELECT_VIEW =
+            "select b.book_id" +
+            ", b.book_name" +
+            ", b.author_id" +
+            ", b.author_name" +
+            ", b.genre_id" +
+            ", b.genre_name" +
+            ", b.version from book_view b ";
+    private static final String VIEW_MERGE =
+            "merge into book_view(book_id, book_name, author_id, author_name, genre_id, genre_name, version) key (book_id) " +
+            "select b.book_id, b.book_name, a.author_id, a.author_name, g.genre_id, g.genre_name, b.version from books b " +
+            "inner join authors a on b.author_id = a.author_id " +
+            "inner join genres g on b.genre_id = g.genre_id ";
 
-    private final NamedParameterJdbcOperations namedParameterJdbcOperations;
+    private static final PreparedQuery SEARCH_EXACT = PreparedQuery.of(
+            SELECT_JOIN + "where b.book_name = :query order by b.book_id limit :limit")
+            .parameters("query", "limit");
+    private static final PreparedQuery SEARCH_PREFIX = PreparedQuery.of(
+            SELECT_JOIN + "where b.book_name like :query order by b.book_name limit :limit")
+            .parameters("query", "limit");
+    private static final PreparedQuery SEARCH_IGNORE_CASE = PreparedQuery.of(
+            SELECT_JOIN + "where b.book_name_ci like :query order by b.book_name_ci limit :limit")
+            .parameters("query", "limit");
+    private static final PreparedQuery SEARCH_FULL_TEXT = PreparedQuery.of(
+            "select b.book_id" +
+            ", b.book_name" +
+            ", b.author_id" +
+            ", b.genre_id" +
+            ", b.version" +
+            ", a.author_id" +
+            ", a.author_name" +
+            ", g.genre_name from FT_SEARCH_DATA(:query, :limit, 0) ft " +
+            "inner join books b on b.book_id = ft.keys[1] " +
+            "inner join authors a on b.author_id = a.author_id " +
+            "inner join genres g on b.genre_id = g.genre_id " +
+            "where ft.\"TABLE\" = 'BOOKS' " +
+            "order by b.book_id")
+            .parameters("query", "limit");
+    private static final PreparedQuery INSERT = PreparedQuery.withGeneratedKeys(
+            "insert into books(book_name, author_id, genre_id) values (:name, :author_id, :genre_id)", "book_id")
+            .parameters("name", "author_id", "genre_id");
+    private static final PreparedQuery UPDATE = PreparedQuery.of(
+            "update books set book_name = :name, author_id = :author_id, genre_id = :genre_id" +
+            ", version = version + 1 where book_id = :id")
+            .parameters("name", "author_id", "genre_id", "id");
+    private static final PreparedQuery UPDATE_IF_VERSION = PreparedQuery.of(
+            "update books set book_name = :name, author_id = :author_id, genre_id = :genre_id" +
+            ", version = version + 1 where book_id = :id and version = :version")
+            .parameters("name", "author_id", "genre_id", "id", "version");
+    // книга для изменения читается из books и при library.read-model.enabled: book_view может отставать
+    private static final PreparedQuery FIND_BY_ID_FOR_UPDATE = PreparedQuery.of(SELECT_JOIN + "where b.book_id = :id");
+    private static final PreparedQuery LOCK_BY_ID = PreparedQuery.of(
+            "select book_id from books where book_id = :id for update");
+    private static final PreparedQuery MERGE = PreparedQuery.of(
+            "merge into books b using dual on b.book_id = :id " +
+            "when matched then update set book_name = :name, author_id = :author_id, genre_id = :genre_id" +
+            ", version = b.version + 1 " +
+            "when not matched then insert (book_id, book_name, author_id, genre_id) " +
+            "values (:id, :name, :author_id, :genre_id)")
+            .parameters("id", "name", "author_id", "genre_id");
+    private static final PreparedQuery DELETE_BY_ID = PreparedQuery.of("delete from books where book_id = :id");
+    private static final PreparedQuery DELETE_BY_AUTHOR = PreparedQuery.of(
+            "delete from books where book_id in (select book_id from book_authors where author_id = :author_id)");
+    private static final PreparedQuery DELETE_BY_GENRE = PreparedQuery.of(
+            "delete from books where book_id in (select book_id from book_genres where genre_id = :genre_id)");
+    // версия растет у всех книг автора или жанра, в том числе у тех, где он не основной
+    private static final PreparedQuery REASSIGN_AUTHOR = PreparedQuery.of(
+            "update books set author_id = case author_id when :from_id then :to_id else author_id end" +
+            ", version = version + 1 " +
+            "where book_id in (select book_id from book_authors where author_id = :from_id)")
+            .parameters("from_id", "to_id");
+    private static final PreparedQuery REASSIGN_GENRE = PreparedQuery.of(
+            "update books set genre_id = case genre_id when :from_id then :to_id else genre_id end" +
+            ", version = version + 1 " +
+            "where book_id in (select book_id from book_genres where genre_id = :from_id)")
+            .parameters("from_id", "to_id");
+
+    private static final PreparedQuery VIEW_MERGE_ALL = PreparedQuery.of(VIEW_MERGE);
+    private static final PreparedQuery VIEW_MERGE_BY_ID = PreparedQuery.of(VIEW_MERGE + "where b.book_id = :id");
+    private static final PreparedQuery VIEW_MERGE_AFTER_ID = PreparedQuery.of(
+            VIEW_MERGE + "where b.book_id > :after_id");
+    private static final PreparedQuery VIEW_DELETE_ALL = PreparedQuery.of("delete from book_view");
+    private static final PreparedQuery VIEW_DELETE_BY_ID = PreparedQuery.of(
+            "delete from book_view where book_id = :id");
+    private static final PreparedQuery VIEW_DELETE_BY_AUTHOR = PreparedQuery.of(
+            "delete from book_view where book_id in (select book_id from book_authors where author_id = :author_id)");
+    private static final PreparedQuery VIEW_DELETE_BY_GENRE = PreparedQuery.of(
+            "delete from book_view where book_id in (select book_id from book_genres where genre_id = :genre_id)");
+    private static final PreparedQuery VIEW_REASSIGN_AUTHOR = PreparedQuery.of(
+            "update book_view set author_id = case author_id when :from_id then :to_id else author_id end" +
+            ", author_name = case author_id when :from_id " +
+            "then (select author_name from authors where author_id = :to_id) else author_name end" +
+            ", version = version + 1 " +
+            "where book_id in (select book_id from book_authors where author_id = :from_id)")
+            .parameters("from_id", "to_id");
+    private static final PreparedQuery VIEW_REASSIGN_GENRE = PreparedQuery.of(
+            "update book_view set genre_id = case genre_id when :from_id then :to_id else genre_id end" +
+            ", genre_name = case genre_id when :from_id " +
+            "then (select genre_name from genres where genre_id = :to_id) else genre_name end" +
+            ", version = version + 1 " +
+            "where book_id in (select book_id from book_genres where genre_id = :from_id)")
+            .parameters("from_id", "to_id");
+
+    private static final PreparedQuery AUTHORS_BY_RANGE = PreparedQuery.of(
+            authorsSelect("between :first_id and :last_id")).parameters("first_id", "last_id");
+    private static final PreparedQuery GENRES_BY_RANGE = PreparedQuery.of(
+            genresSelect("between :first_id and :last_id")).parameters("first_id", "last_id");
+    private static final String INSERT_AUTHOR_LINK =
+            "insert into book_authors(book_id, author_id, position) values (?, ?, ?)";
+    private static final String INSERT_GENRE_LINK =
+            "insert into book_genres(book_id, genre_id, position) values (?, ?, ?)";
+    private static final PreparedQuery DELETE_AUTHOR_LINKS = PreparedQuery.of(
+            "delete from book_authors where book_id = :id");
+    private static final PreparedQuery DELETE_GENRE_LINKS = PreparedQuery.of(
+            "delete from book_genres where book_id = :id");
+    // у книги, где уже есть новый автор или жанр, старая связь удаляется, у остальных - переносится
+    private static final PreparedQuery REASSIGN_AUTHOR_DROP_DUPLICATES = PreparedQuery.of(
+            "delete from book_authors where book_id in (select book_id from book_authors where author_id = :to_id) " +
+            "and author_id = :from_id")
+            .parameters("from_id", "to_id");
+    private static final PreparedQuery REASSIGN_AUTHOR_LINKS = PreparedQuery.of(
+            "update book_authors set author_id = :to_id where author_id = :from_id")
+            .parameters("from_id", "to_id");
+    private static final PreparedQuery REASSIGN_GENRE_DROP_DUPLICATES = PreparedQuery.of(
+            "delete from book_genres where book_id in (select book_id from book_genres where genre_id = :to_id) " +
+            "and genre_id = :from_id")
+            .parameters("from_id", "to_id");
+    private static final PreparedQuery REASSIGN_GENRE_LINKS = PreparedQuery.of(
+            "update book_genres set genre_id = :to_id where genre_id = :from_id")
+            .parameters("from_id", "to_id");
+    // если удалена связь с position = 0, ее место занимает новый автор или жанр - он уже основной в books
+    private static final PreparedQuery REASSIGN_AUTHOR_MAIN_POSITION = PreparedQuery.of(
+            "update book_authors ba set position = 0 where author_id = :to_id and position > 0 " +
+            "and not exists (select 1 from book_authors m where m.book_id = ba.book_id and m.position = 0)");
+    private static final PreparedQuery REASSIGN_GENRE_MAIN_POSITION = PreparedQuery.of(
+            "update book_genres bg set position = 0 where genre_id = :to_id and position > 0 " +
+            "and not exists (select 1 from book_genres m where m.book_id = bg.book_id and m.position = 0)");
+
+    // у записей журнала читаются номер и id книги: для insert ... select это единственный способ узнать книги
+    private static final PreparedQuery CHANGE_INSERT = PreparedQuery.withGeneratedKeys(
+            "insert into book_changes(book_id, change_type) values (:book_id, :type)", "change_id", "book_id")
+            .parameters("book_id", "type");
+    private static final PreparedQuery CHANGES_DELETED_BY_AUTHOR = PreparedQuery.withGeneratedKeys(
+            changesSelect(BookChange.Type.DELETED, "book_authors where author_id = :author_id"), "change_id", "book_id");
+    private static final PreparedQuery CHANGES_DELETED_BY_GENRE = PreparedQuery.withGeneratedKeys(
+            changesSelect(BookChange.Type.DELETED, "book_genres where genre_id = :genre_id"), "change_id", "book_id");
+    private static final PreparedQuery CHANGES_UPDATED_BY_AUTHOR = PreparedQuery.withGeneratedKeys(
+            changesSelect(BookChange.Type.UPDATED, "book_authors where author_id = :author_id"), "change_id", "book_id");
+    private static final PreparedQuery CHANGES_UPDATED_BY_GENRE = PreparedQuery.withGeneratedKeys(
+            changesSelect(BookChange.Type.UPDATED, "book_genres where genre_id = :genre_id"), "change_id", "book_id");
+
+    private final JdbcOperations jdbcOperations;
     private final BookRowMapper bookRowMapper;
+    private final int inChunkSize;
+    private final boolean readModel;
+    private final PreparedQuery findById;
+    private final PreparedQuery findByName;
+    private final PreparedQuery findPage;
+    private final PreparedQuery streamAll;
+    private final PreparedQuery findAllByIds;
+    private final PreparedQuery deleteAllByIds;
+    private final PreparedQuery viewDeleteAllByIds;
+    private final PreparedQuery authorsByIds;
+    private final PreparedQuery genresByIds;
+    private final PreparedQuery changesDeletedByIds;
+    private final BookChangeFeed changeFeed;
 
-    public BookDAOJdbc(NamedParameterJdbcOperations namedParameterJdbcOperations, BookRowMapper bookRowMapper) {
-        this.namedParameterJdbcOperations = namedParameterJdbcOperations;
+    /**
+     * changeFeed - лента изменений, null при выключенном library.change-feed.enabled: журнал тогда не пишется
+     */
+    public BookDAOJdbc(JdbcOperations jdbcOperations,
+                       BookRowMapper bookRowMapper,
+                       LibraryProperties libraryProperties,
+                       @Nullable BookChangeFeed changeFeed) {
+        this.jdbcOperations = jdbcOperations;
         this.bookRowMapper = bookRowMapper;
+        this.inChunkSize = libraryProperties.getJdbc().getInChunkSize();
+        this.readModel = libraryProperties.getReadModel().isEnabled();
+        this.changeFeed = changeFeed;
+        final int fetchSize = libraryProperties.getJdbc().getFetchSize();
+        final String selectBooks = readModel ? SELECT_VIEW : SELECT_JOIN;
+        // in (?, ?, ...) ровно на inChunkSize значений, неполные пачки дополняются в padChunk
+        final String inIds = "in (" + String.join(", ", Collections.nCopies(inChunkSize, "?")) + ")";
+        this.findById = PreparedQuery.of(selectBooks + "where b.book_id = :id");
+        this.findByName = PreparedQuery.of(selectBooks + "where b.book_name = :name");
+        this.findPage = PreparedQuery.of(selectBooks + "where b.book_id > :after_id order by b.book_id limit :limit")
+                .parameters("after_id", "limit");
+        this.streamAll = PreparedQuery.forwardOnly(selectBooks + "where b.book_id > ? order by b.book_id", fetchSize);
+        this.findAllByIds = PreparedQuery.of(selectBooks + "where b.book_id " + inIds);
+        this.deleteAllByIds = PreparedQuery.of("delete from books where book_id " + inIds);
+        this.viewDeleteAllByIds = PreparedQuery.of("delete from book_view where book_id " + inIds);
+        this.authorsByIds = PreparedQuery.of(authorsSelect(inIds));
+        this.genresByIds = PreparedQuery.of(genresSelect(inIds));
+        this.changesDeletedByIds = PreparedQuery.withGeneratedKeys(
+                changesSelect(BookChange.Type.DELETED, "books where book_id " + inIds), "change_id", "book_id");
+    }
+
+    /**
+     * insert записей журнала по книгам из выборки from ... where ...
+     */
+    private static String changesSelect(BookChange.Type type, String fromWhere) {
+        return "insert into book_changes(book_id, change_type) select book_id, '" + type + "' from " + fromWhere;
+    }
+
+    /**
+     * Авторы книг для {@link BookLinksHandler#authors()} в порядке ключа book_authors, без сортировки.
+     * left join, а не inner: без статистики H2 начинает inner join со справочника и перебирает его целиком,
+     * left join читает связи по ключу; автор связи есть всегда по внешнему ключу
+     */
+    private static String authorsSelect(String bookIdCondition) {
+        return "select ba.book_id, a.author_id, a.author_name " +
+               "from book_authors ba left join authors a on a.author_id = ba.author_id " +
+               "where ba.book_id " + bookIdCondition + " order by ba.book_id, ba.position";
+    }
+
+    private static String genresSelect(String bookIdCondition) {
+        return "select bg.book_id, g.genre_id, g.genre_name " +
+               "from book_genres bg left join genres g on g.genre_id = bg.genre_id " +
+               "where bg.book_id " + bookIdCondition + " order by bg.book_id, bg.position";
     }
 
     @Override
     public Optional<Book> findById(long id) {
-        String FIND_BY_ID =
-                "select b.book_id" +
-                 ", b.book_name" +
-                 ", b.author_id" +
-                 ", b.genre_id" +
-                 ", a.author_id" +
-                 ", a.author_name" +
-                 ", g.genre_name from books b " +
-                 "inner join authors a on b.author_id = a.author_id " +
-                 "inner join genres g on b.genre_id = g.genre_id " +
-                 "where b.book_id = :id";
-        Map<String, Object> params = new HashMap<>();
-        params.put("id", id);
-        return getOne(
-                namedParameterJdbcOperations.query(FIND_BY_ID, params, bookRowMapper)
-        );
+        return getOne(withLinksInRange(jdbcOperations.query(findById.bind(id), bookRowMapper)));
+    }
+
+    /**
+     * Книга для изменения; с lock строка books сначала блокируется select ... for update до конца транзакции,
+     * и параллельные изменения книги ждут ее. Блокируется только books: авторы и жанры остаются доступны
+     * изменениям других книг. Книга и ее версия всегда читаются из books, а не из book_view: копия могла
+     * отстать после работы с выключенным library.read-model.enabled, и update по версии никогда бы не прошел
+     */
+    @Override
+    public Optional<Book> findByIdForUpdate(long id, boolean lock) {
+        if (lock && jdbcOperations.query(LOCK_BY_ID.bind(id), (resultSet, i) -> resultSet.getLong(1)).isEmpty()) {
+            return Optional.empty();
+        }
+        return getOne(withLinksInRange(jdbcOperations.query(FIND_BY_ID_FOR_UPDATE.bind(id), bookRowMapper)));
+    }
+
+    /**
+     * Книги по списку id: один запрос с in (...) на каждые library.jdbc.in-chunk-size id.
+     * Последняя пачка дополняется повтором последнего id до полного размера, чтобы текст запроса
+     * не зависел от количества id и разбор запроса брался из кэша. Результат в порядке переданных id,
+     * отсутствующие id пропускаются, повторы схлопываются
+     */
+    @Override
+    public List<Book> findAllByIds(Collection<Long> ids) {
+        final var distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        if (distinctIds.isEmpty()) {
+            return List.of();
+        }
+        final var extractor = new BookResultSetExtractor();
+        final Map<Long, Book> booksById = new HashMap<>();
+        for (List<Long> chunk : Lists.partition(distinctIds, inChunkSize)) {
+            final var books = jdbcOperations.query(findAllByIds.bind(padChunk(chunk).toArray()), extractor);
+            if (books != null) {
+                books.forEach(book -> booksById.put(book.getId(), book));
+            }
+        }
+        final var books = new ArrayList<Book>(booksById.size());
+        for (Long id : distinctIds) {
+            final var book = booksById.get(id);
+            if (book != null) {
+                books.add(book);
+            }
+        }
+        return withLinks(books);
     }
 
     @Override
     public List<Book> findByName(String name) {
-        String FIND_BY_NAME =
-                "select b.book_id" +
-                ", b.book_name" +
-                ", b.author_id" +
-                ", b.genre_id" +
-                ", a.author_id" +
-                ", a.author_name" +
-                ", g.genre_name from books b " +
-                "inner join authors a on b.author_id = a.author_id " +
-                "inner join genres g on b.genre_id = g.genre_id " +
-                "where b.book_name = :name";
-        Map<String, Object> params = new HashMap<>();
-        params.put("name", name);
-        return namedParameterJdbcOperations.query(FIND_BY_NAME, params, bookRowMapper);
+        return withLinks(jdbcOperations.query(findByName.bind(name), new BookResultSetExtractor()));
+    }
+
+    @Override
+    public List<Book> search(String query, SearchMode mode, int limit) {
+        final PreparedStatementCreator statement;
+        switch (mode) {
+            case EXACT:
+                statement = SEARCH_EXACT.bind(query, limit);
+                break;
+            case PREFIX:
+                statement = SEARCH_PREFIX.bind(escapeLike(query) + "%", limit);
+                break;
+            case IGNORE_CASE:
+                statement = SEARCH_IGNORE_CASE.bind(escapeLike(query) + "%", limit);
+                break;
+            case FULL_TEXT:
+                statement = SEARCH_FULL_TEXT.bind(query, limit);
+                break;
+            default:
+                throw new IllegalArgumentException("неизвестный режим поиска " + mode);
+        }
+        return withLinks(jdbcOperations.query(statement, new BookResultSetExtractor()));
+    }
+
+    @Override
+    public List<Book> findPage(long afterId, int limit) {
+        return withLinksInRange(jdbcOperations.query(findPage.bind(afterId, limit), new BookResultSetExtractor()));
+    }
+
+    /**
+     * Обходит все книги с id больше afterId в порядке id, не собирая их в список.
+     * Курсор только вперед: встроенная H2 отдает строки по мере чтения только с LAZY_QUERY_EXECUTION=1 в url,
+     * без него весь результат собирается в памяти до первой строки, а library.jdbc.fetch-size не действует.
+     * Авторы и жанры дочитываются одним запросом по диапазону id на каждые library.jdbc.in-chunk-size книг
+     * на том же соединении, пока курсор открыт
+     */
+    @Override
+    public void forEach(long afterId, Consumer<Book> consumer) {
+        final var batch = new ArrayList<Book>(inChunkSize);
+        jdbcOperations.query(streamAll.bind(afterId), BookResultSetExtractor.forEach(book -> {
+            batch.add(book);
+            if (batch.size() == inChunkSize) {
+                withLinksInRange(batch).forEach(consumer);
+                batch.clear();
+            }
+        }));
+        withLinksInRange(batch).forEach(consumer);
     }
 
     @Override
     public long save(Book book) {
-        String INSERT = "insert into books(book_name, author_id, genre_id) values (:name, :author_id, :genre_id)";
-        Map<String, Object> params = paramsByBook(book);
         final var keyHolder = new GeneratedKeyHolder();
-        namedParameterJdbcOperations.update(
-                INSERT,
-                new MapSqlParameterSource(params),
-                keyHolder
-        );
+        jdbcOperations.update(INSERT.bind(book.getName(), book.getAuthor().getId(), book.getGenre().getId()), keyHolder);
         final var key = keyHolder.getKeyAs(Long.class);
-        return key == null ? 0 : key;
+        if (key == null) {
+            return 0;
+        }
+        insertLinks(List.of(book), List.of(key));
+        syncView(key);
+        recordChange(BookChange.Type.CREATED, key);
+        return key;
+    }
+
+    /**
+     * Книги вставляются одним пакетом с получением сгенерированных id, затем связи с авторами и жанрами -
+     * по одному пакету на таблицу
+     */
+    @Override
+    public int saveAll(List<Book> books) {
+        if (books.isEmpty()) {
+            return 0;
+        }
+        final List<Long> ids = jdbcOperations.execute(INSERT.prepare(), (PreparedStatementCallback<List<Long>>) statement -> {
+            for (Book book : books) {
+                INSERT.setValues(statement, book.getName(), book.getAuthor().getId(), book.getGenre().getId());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            final var keys = new ArrayList<Long>(books.size());
+            try (var resultSet = statement.getGeneratedKeys()) {
+                while (resultSet.next()) {
+                    keys.add(resultSet.getLong(1));
+                }
+            }
+            return keys;
+        });
+        if (ids == null || ids.size() != books.size()) {
+            throw new IllegalStateException("не получены id новых книг");
+        }
+        insertLinks(books, ids);
+        if (readModel) {
+            // merge не дает дублей, если в диапазон после первой новой книги попали книги параллельной вставки
+            jdbcOperations.update(VIEW_MERGE_AFTER_ID.bind(ids.get(0) - 1));
+        }
+        recordCreated(ids);
+        return ids.size();
+    }
+
+    /**
+     * Записывает книгу независимо от ее версии в БД, версия в БД увеличивается.
+     * Связи книги заменяются удалением и вставкой после update строки books: ее блокировка упорядочивает
+     * параллельные обновления одной книги, поэтому вызывается в транзакции
+     */
+    @Override
+    public boolean update(Book book) {
+        final boolean updated = jdbcOperations.update(UPDATE.bind(
+                book.getName(), book.getAuthor().getId(), book.getGenre().getId(), book.getId())) > 0;
+        if (updated) {
+            replaceLinks(book);
+            syncView(book.getId());
+            recordChange(BookChange.Type.UPDATED, book.getId());
+        }
+        return updated;
     }
 
+    /**
+     * Записывает книгу, только если ее версия в БД не изменилась с момента чтения (book.version), и увеличивает
+     * версию в БД и в book. false - книгу с той же версией не нашли: ее изменили или удалили после чтения
+     */
     @Override
-    public void update(Book book) {
-        String UPDATE_PARAMS_BY_ID =
-                "update books set book_name = :name, author_id = :author_id, genre_id = :genre_id where book_id = :id";
-        Map<String, Object> params = paramsByBook(book);
-        namedParameterJdbcOperations.update(
-                UPDATE_PARAMS_BY_ID,
-                params
-        );
+    public boolean updateIfVersion(Book book) {
+        final boolean updated = jdbcOperations.update(UPDATE_IF_VERSION.bind(
+                book.getName(), book.getAuthor().getId(), book.getGenre().getId(), book.getId(), book.getVersion())) > 0;
+        if (updated) {
+            book.setVersion(book.getVersion() + 1);
+            replaceLinks(book);
+            syncView(book.getId());
+            recordChange(BookChange.Type.UPDATED, book.getId());
+        }
+        return updated;
     }
 
     @Override
-    public void delete(long id) {
-        String DELETE_BY_ID = "delete from books where book_id = :id";
-        Map<String, Object> params = new HashMap<>();
-        params.put("id", id);
-        namedParameterJdbcOperations.update(DELETE_BY_ID, params);
+    public void upsert(Book book) {
+        jdbcOperations.update(MERGE.bind(book.getId(), book.getName(), book.getAuthor().getId(), book.getGenre().getId()));
+        replaceLinks(book);
+        syncView(book.getId());
+        // merge не сообщает, вставил он строку или изменил, в журнале upsert - всегда изменение
+        recordChange(BookChange.Type.UPDATED, book.getId());
+    }
+
+    /**
+     * Удаляет книгу, возвращает количество удаленных книг: 0, если книги с таким id нет
+     */
+    @Override
+    public int delete(long id) {
+        final int deleted = jdbcOperations.update(DELETE_BY_ID.bind(id));
+        if (readModel) {
+            jdbcOperations.update(VIEW_DELETE_BY_ID.bind(id));
+        }
+        if (deleted > 0) {
+            recordChange(BookChange.Type.DELETED, id);
+        }
+        return deleted;
+    }
+
+    /**
+     * Удаление по списку id пачками по library.jdbc.in-chunk-size, возвращает количество удаленных книг
+     */
+    @Override
+    public int deleteAllByIds(Collection<Long> ids) {
+        final var distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        int deleted = 0;
+        for (List<Long> chunk : Lists.partition(distinctIds, inChunkSize)) {
+            final var padded = padChunk(chunk).toArray();
+            recordChanges(changesDeletedByIds.bind(padded), BookChange.Type.DELETED);
+            deleted += jdbcOperations.update(deleteAllByIds.bind(padded));
+            if (readModel) {
+                jdbcOperations.update(viewDeleteAllByIds.bind(padded));
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Удаляет книги, среди авторов которых есть authorId; book_view чистится до книг, пока есть связи
+     */
+    @Override
+    public int deleteByAuthor(long authorId) {
+        if (readModel) {
+            jdbcOperations.update(VIEW_DELETE_BY_AUTHOR.bind(authorId));
+        }
+        recordChanges(CHANGES_DELETED_BY_AUTHOR.bind(authorId), BookChange.Type.DELETED);
+        return jdbcOperations.update(DELETE_BY_AUTHOR.bind(authorId));
+    }
+
+    @Override
+    public int deleteByGenre(long genreId) {
+        if (readModel) {
+            jdbcOperations.update(VIEW_DELETE_BY_GENRE.bind(genreId));
+        }
+        recordChanges(CHANGES_DELETED_BY_GENRE.bind(genreId), BookChange.Type.DELETED);
+        return jdbcOperations.update(DELETE_BY_GENRE.bind(genreId));
+    }
+
+    /**
+     * Заменяет автора во всех его книгах, возвращает количество таких книг. Книги и book_view меняются
+     * до связей: затронутые книги находятся по еще не перенесенным связям. Если у книги уже был новый автор,
+     * старая связь удаляется, а новый автор при необходимости переходит на position = 0, как в books
+     */
+    @Override
+    public int reassignAuthor(long fromAuthorId, long toAuthorId) {
+        jdbcOperations.update(REASSIGN_AUTHOR.bind(fromAuthorId, toAuthorId));
+        if (readModel) {
+            jdbcOperations.update(VIEW_REASSIGN_AUTHOR.bind(fromAuthorId, toAuthorId));
+        }
+        recordChanges(CHANGES_UPDATED_BY_AUTHOR.bind(fromAuthorId), BookChange.Type.UPDATED);
+        final int dropped = jdbcOperations.update(REASSIGN_AUTHOR_DROP_DUPLICATES.bind(fromAuthorId, toAuthorId));
+        if (dropped > 0) {
+            jdbcOperations.update(REASSIGN_AUTHOR_MAIN_POSITION.bind(toAuthorId));
+        }
+        return dropped + jdbcOperations.update(REASSIGN_AUTHOR_LINKS.bind(fromAuthorId, toAuthorId));
+    }
+
+    @Override
+    public int reassignGenre(long fromGenreId, long toGenreId) {
+        jdbcOperations.update(REASSIGN_GENRE.bind(fromGenreId, toGenreId));
+        if (readModel) {
+            jdbcOperations.update(VIEW_REASSIGN_GENRE.bind(fromGenreId, toGenreId));
+        }
+        recordChanges(CHANGES_UPDATED_BY_GENRE.bind(fromGenreId), BookChange.Type.UPDATED);
+        final int dropped = jdbcOperations.update(REASSIGN_GENRE_DROP_DUPLICATES.bind(fromGenreId, toGenreId));
+        if (dropped > 0) {
+            jdbcOperations.update(REASSIGN_GENRE_MAIN_POSITION.bind(toGenreId));
+        }
+        return dropped + jdbcOperations.update(REASSIGN_GENRE_LINKS.bind(fromGenreId, toGenreId));
+    }
+
+    /**
+     * Полностью перестраивает book_view по books, нужно после работы с выключенным library.read-model.enabled
+     */
+    @Override
+    public int rebuildReadModel() {
+        jdbcOperations.update(VIEW_DELETE_ALL.bind());
+        return jdbcOperations.update(VIEW_MERGE_ALL.bind());
+    }
+
+    /**
+     * Переносит текущее состояние книги в book_view одним merge ... select с join
+     */
+    private void syncView(long id) {
+        if (readModel) {
+            jdbcOperations.update(VIEW_MERGE_BY_ID.bind(id));
+        }
+    }
+
+    private void recordChange(BookChange.Type type, long bookId) {
+        if (changeFeed != null) {
+            recordChanges(CHANGE_INSERT.bind(bookId, type.name()), type);
+        }
+    }
+
+    /**
+     * Записи журнала о созданных книгах одним пакетным insert
+     */
+    private void recordCreated(List<Long> ids) {
+        if (changeFeed == null) {
+            return;
+        }
+        changeFeed.publish(jdbcOperations.execute(CHANGE_INSERT.prepare(), (PreparedStatementCallback<List<BookChange>>) statement -> {
+            for (Long id : ids) {
+                CHANGE_INSERT.setValues(statement, id, BookChange.Type.CREATED.name());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            return readChanges(statement, BookChange.Type.CREATED);
+        }));
+    }
+
+    /**
+     * Выполняет insert в журнал и передает его записи ленте изменений
+     */
+    private void recordChanges(PreparedStatementCreator insert, BookChange.Type type) {
+        if (changeFeed == null) {
+            return;
+        }
+        changeFeed.publish(jdbcOperations.execute(insert, (PreparedStatementCallback<List<BookChange>>) statement -> {
+            statement.executeUpdate();
+            return readChanges(statement, type);
+        }));
+    }
+
+    private static List<BookChange> readChanges(PreparedStatement statement, BookChange.Type type) throws SQLException {
+        final var changes = new ArrayList<BookChange>();
+        try (var keys = statement.getGeneratedKeys()) {
+            while (keys.next()) {
+                changes.add(new BookChange(keys.getLong(1), keys.getLong(2), type));
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Дочитывает авторов и жанры книг, идущих подряд по id без пропусков между ними (страница, порция обхода):
+     * по запросу на таблицу связей по диапазону от первого до последнего id, он дешевле списка in
+     */
+    private List<Book> withLinksInRange(List<Book> books) {
+        if (CollectionUtils.isEmpty(books)) {
+            return books;
+        }
+        final var handler = new BookLinksHandler(books);
+        final long firstId = books.get(0).getId();
+        final long lastId = books.get(books.size() - 1).getId();
+        jdbcOperations.query(AUTHORS_BY_RANGE.bind(firstId, lastId), handler.authors());
+        jdbcOperations.query(GENRES_BY_RANGE.bind(firstId, lastId), handler.genres());
+        handler.apply(books);
+        return books;
+    }
+
+    /**
+     * Дочитывает авторов и жанры книг в произвольном порядке: по запросу на таблицу связей на каждые
+     * library.jdbc.in-chunk-size книг, а не запрос на книгу
+     */
+    private List<Book> withLinks(List<Book> books) {
+        if (CollectionUtils.isEmpty(books) || books.size() == 1) {
+            return withLinksInRange(books);
+        }
+        final var handler = new BookLinksHandler(books);
+        final var ids = new ArrayList<Long>(books.size());
+        books.forEach(book -> ids.add(book.getId()));
+        for (List<Long> chunk : Lists.partition(ids, inChunkSize)) {
+            final var values = padChunk(chunk).toArray();
+            jdbcOperations.query(authorsByIds.bind(values), handler.authors());
+            jdbcOperations.query(genresByIds.bind(values), handler.genres());
+        }
+        handler.apply(books);
+        return books;
+    }
+
+    private void replaceLinks(Book book) {
+        jdbcOperations.update(DELETE_AUTHOR_LINKS.bind(book.getId()));
+        jdbcOperations.update(DELETE_GENRE_LINKS.bind(book.getId()));
+        insertLinks(List.of(book), List.of(book.getId()));
+    }
+
+    /**
+     * Связи книг с авторами и жанрами, по одному пакетному insert на таблицу; ids - id книг в том же порядке
+     */
+    private void insertLinks(List<Book> books, List<Long> ids) {
+        final var authorLinks = new ArrayList<Object[]>(books.size());
+        final var genreLinks = new ArrayList<Object[]>(books.size());
+        for (int i = 0; i < books.size(); i++) {
+            final var book = books.get(i);
+            final var id = ids.get(i);
+            for (int position = 0; position < book.getAuthors().size(); position++) {
+                authorLinks.add(new Object[]{id, book.getAuthors().get(position).getId(), position});
+            }
+            for (int position = 0; position < book.getGenres().size(); position++) {
+                genreLinks.add(new Object[]{id, book.getGenres().get(position).getId(), position});
+            }
+        }
+        jdbcOperations.batchUpdate(INSERT_AUTHOR_LINK, authorLinks);
+        jdbcOperations.batchUpdate(INSERT_GENRE_LINK, genreLinks);
+    }
+
+    private List<Long> padChunk(List<Long> chunk) {
+        if (chunk.size() == inChunkSize) {
+            return chunk;
+        }
+        final var padded = new ArrayList<Long>(inChunkSize);
+        padded.addAll(chunk);
+        final var last = chunk.get(chunk.size() - 1);
+        while (padded.size() < inChunkSize) {
+            padded.add(last);
+        }
+        return padded;
     }
 
-    private Map<String, Object> paramsByBook(Book book) {
-        Map<String, Object> params = new HashMap<>();
-        params.put("id", book.getId());
-        params.put("name", book.getName());
-        params.put("author_id", book.getAuthor().getId());
-        params.put("genre_id", book.getGenre().getId());
-        return params;
+    private String escapeLike(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
     }
 
     private Optional<Book> getOne(List<Book> books) {
@@ -0,0 +1,32 @@
+package ru.otus.dao.impl;
+
+import org.h2.fulltext.FullText;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Функция H2 для идемпотентного создания полнотекстового индекса: FT_CREATE_INDEX падает, если индекс
+ * по таблице уже есть, поэтому в скриптах для постоянной базы вызывается
+ * {@code CALL FT_CREATE_INDEX_IF_MISSING('PUBLIC', 'BOOKS', 'BOOK_NAME')}
+ */
+public final class FullTextIndex {
+    private FullTextIndex() {
+    }
+
+    public static void createIfMissing(Connection connection, String schema, String table, String columns)
+            throws SQLException {
+        try (var statement = connection.prepareStatement(
+                "select count(*) from FT.INDEXES where \"SCHEMA\" = ? and \"TABLE\" = ?")) {
+            statement.setString(1, schema);
+            statement.setString(2, table);
+            try (var resultSet = statement.executeQuery()) {
+                resultSet.next();
+                if (resultSet.getLong(1) > 0) {
+                    return;
+                }
+            }
+        }
+        FullText.createIndex(connection, schema, table, columns);
+    }
+}
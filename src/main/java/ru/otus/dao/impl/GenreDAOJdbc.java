@@ -1,35 +1,83 @@
 package ru.otus.dao.impl;
 
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 import ru.otus.dao.GenreDAO;
 import ru.otus.entity.Genre;
 import ru.otus.mapper.GenreRowMapper;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Component
 public class GenreDAOJdbc implements GenreDAO {
+    private static final PreparedQuery FIND_BY_ID = PreparedQuery.of(
+            "select genre_id, genre_name from genres where genre_id = :id");
+    private static final PreparedQuery FIND_BY_NAME = PreparedQuery.of(
+            "select genre_id, genre_name from genres where genre_name = :name");
+    private static final PreparedQuery INSERT = PreparedQuery.withGeneratedKeys(
+            "insert into genres(genre_name) values (:name)", "genre_id");
+    // insert только при отсутствии имени: существующая строка не переписывается и не блокируется, как в merge
+    private static final PreparedQuery INSERT_IF_ABSENT = PreparedQuery.withGeneratedKeys(
+            "insert into genres(genre_name) select :name from dual " +
+            "where not exists (select 1 from genres where genre_name = :name)", "genre_id");
 
-    private final NamedParameterJdbcOperations namedParameterJdbcOperations;
+    private final JdbcOperations jdbcOperations;
     private final GenreRowMapper genreRowMapper;
 
-    public GenreDAOJdbc(NamedParameterJdbcOperations namedParameterJdbcOperations, GenreRowMapper genreRowMapper) {
-        this.namedParameterJdbcOperations = namedParameterJdbcOperations;
+    public GenreDAOJdbc(JdbcOperations jdbcOperations, GenreRowMapper genreRowMapper) {
+        this.jdbcOperations = jdbcOperations;
         this.genreRowMapper = genreRowMapper;
     }
 
+    @Override
+    public Optional<Genre> findById(long id) {
+        return getOne(jdbcOperations.query(FIND_BY_ID.bind(id), genreRowMapper));
+    }
+
     @Override
     public Optional<Genre> findByName(String name) {
-        String FIND_BY_NAME =
-                "select genre_id, genre_name from genres where genre_name = :name";
+        return getOne(jdbcOperations.query(FIND_BY_NAME.bind(name), genreRowMapper));
+    }
+
+    @Override
+    public long save(Genre genre) {
+        final var keyHolder = new GeneratedKeyHolder();
+        jdbcOperations.update(INSERT.bind(genre.getName()), keyHolder);
+        final var key = keyHolder.getKeyAs(Long.class);
+        return key == null ? 0 : key;
+    }
+
+    /**
+     * Сначала поиск по имени - обычный случай для уже известных значений. Если имени нет, insert проверяет
+     * его отсутствие сам; при параллельной вставке того же имени уникальный индекс по genre_name
+     * дожидается завершения чужой транзакции и отвечает ошибкой дубликата, после чего запись
+     * победителя читается повторно - один раз, без цикла повторов
+     */
+    @Override
+    public Genre getOrCreate(String name) {
+        final var existing = findByName(name);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        try {
+            final var keyHolder = new GeneratedKeyHolder();
+            if (jdbcOperations.update(INSERT_IF_ABSENT.bind(name), keyHolder) > 0) {
+                return new Genre(Objects.requireNonNull(keyHolder.getKeyAs(Long.class)), name);
+            }
+        } catch (DuplicateKeyException e) {
+            // запись создана параллельной транзакцией, она уже завершилась
+        }
+        return findByName(name).orElseThrow(() -> new IncorrectResultSizeDataAccessException(
+                "не найден жанр после вставки: " + name, 1, 0));
+    }
 
-        Map<String, Object> params = new HashMap<>();
-        params.put("name", name);
-        final var genres = namedParameterJdbcOperations.query(FIND_BY_NAME, params, genreRowMapper);
+    private Optional<Genre> getOne(List<Genre> genres) {
         if (CollectionUtils.isEmpty(genres)) {
             return Optional.empty();
         }
@@ -0,0 +1,170 @@
+package ru.otus.dao.impl;
+
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.core.namedparam.EmptySqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Запрос, разобранный один раз при создании DAO: именованные параметры заменены на ?, для каждого ? известен
+ * номер значения. Значения передаются массивом: для запроса с ? - по порядку ?, для запроса с одним именем -
+ * одним значением, для запроса с несколькими именами - в порядке, объявленном рядом с текстом запроса через
+ * {@link #parameters}; объявленные имена сверяются с именами запроса при создании DAO. На вызов не создаются
+ * ни Map параметров, ни новый текст запроса, ни фабрика statement. Текст запроса на каждом вызове один и тот же,
+ * и H2 берет разобранный запрос из кэша соединения (QUERY_CACHE_SIZE)
+ */
+final class PreparedQuery {
+    private final String sql;
+    // имя параметра для каждого ?, у запроса с ? список пуст
+    private final List<String> placeholderNames;
+    private final Set<String> names;
+    // номер значения для каждого ?; null, пока у запроса с несколькими именами не объявлен порядок значений
+    private final int[] valueIndexes;
+    private final int valueCount;
+    private final String[] generatedKeyColumns;
+    private final int fetchSize;
+
+    private PreparedQuery(String namedSql, String[] generatedKeyColumns, int fetchSize) {
+        final var parsedSql = NamedParameterUtils.parseSqlStatement(namedSql);
+        this.sql = NamedParameterUtils.substituteNamedParameters(parsedSql, null);
+        this.placeholderNames = NamedParameterUtils.buildSqlParameterList(parsedSql, EmptySqlParameterSource.INSTANCE)
+                .stream()
+                .map(SqlParameter::getName)
+                .collect(Collectors.toUnmodifiableList());
+        this.names = Collections.unmodifiableSet(new LinkedHashSet<>(placeholderNames));
+        if (placeholderNames.isEmpty()) {
+            final int count = NamedParameterUtils.buildValueArray(parsedSql, EmptySqlParameterSource.INSTANCE, null).length;
+            this.valueIndexes = IntStream.range(0, count).toArray();
+            this.valueCount = count;
+        } else {
+            this.valueIndexes = names.size() == 1 ? new int[placeholderNames.size()] : null;
+            this.valueCount = names.size();
+        }
+        this.generatedKeyColumns = generatedKeyColumns;
+        this.fetchSize = fetchSize;
+    }
+
+    private PreparedQuery(PreparedQuery query, int[] valueIndexes) {
+        this.sql = query.sql;
+        this.placeholderNames = query.placeholderNames;
+        this.names = query.names;
+        this.valueIndexes = valueIndexes;
+        this.valueCount = query.valueCount;
+        this.generatedKeyColumns = query.generatedKeyColumns;
+        this.fetchSize = query.fetchSize;
+    }
+
+    static PreparedQuery of(String namedSql) {
+        return new PreparedQuery(namedSql, null, 0);
+    }
+
+    /**
+     * insert, после которого читаются сгенерированные значения колонок generatedKeyColumns
+     */
+    static PreparedQuery withGeneratedKeys(String namedSql, String... generatedKeyColumns) {
+        return new PreparedQuery(namedSql, generatedKeyColumns, 0);
+    }
+
+    /**
+     * select с курсором только вперед, строки подтягиваются из БД порциями по fetchSize
+     */
+    static PreparedQuery forwardOnly(String namedSql, int fetchSize) {
+        return new PreparedQuery(namedSql, null, fetchSize);
+    }
+
+    /**
+     * Тот же запрос, значения которого передаются в порядке order. Нужны все имена запроса по одному разу,
+     * иначе IllegalArgumentException
+     */
+    PreparedQuery parameters(String... order) {
+        final var declared = List.of(order);
+        if (declared.size() != names.size() || !names.equals(Set.copyOf(declared))) {
+            throw new IllegalArgumentException("объявлены параметры " + declared + ", в запросе " + names + ": " + sql);
+        }
+        return new PreparedQuery(this, placeholderNames.stream().mapToInt(declared::indexOf).toArray());
+    }
+
+    String getSql() {
+        return sql;
+    }
+
+    PreparedStatementCreator bind(Object... values) {
+        return new BoundStatementCreator(check(values));
+    }
+
+    /**
+     * Statement без значений параметров, они выставляются через {@link #setValues}, например для пакета
+     * с получением сгенерированных ключей
+     */
+    PreparedStatementCreator prepare() {
+        return new BoundStatementCreator(null);
+    }
+
+    /**
+     * Выставляет значения в уже созданный statement, например в пакетном update
+     */
+    void setValues(PreparedStatement statement, Object... values) throws SQLException {
+        setArray(statement, check(values));
+    }
+
+    private void setArray(PreparedStatement statement, Object[] values) throws SQLException {
+        for (int i = 0; i < valueIndexes.length; i++) {
+            StatementCreatorUtils.setParameterValue(statement, i + 1, SqlTypeValue.TYPE_UNKNOWN, values[valueIndexes[i]]);
+        }
+    }
+
+    private Object[] check(Object[] values) {
+        if (valueIndexes == null) {
+            throw new IllegalStateException("не объявлен порядок значений параметров " + names + ": " + sql);
+        }
+        if (values.length != valueCount) {
+            throw new IllegalArgumentException(
+                    "ожидалось значений параметров: " + valueCount + ", передано: " + values.length + " для " + sql);
+        }
+        return values;
+    }
+
+    private class BoundStatementCreator implements PreparedStatementCreator, SqlProvider {
+        private final Object[] values;
+
+        BoundStatementCreator(Object[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public PreparedStatement createPreparedStatement(Connection connection) throws SQLException {
+            final PreparedStatement statement;
+            if (generatedKeyColumns != null) {
+                statement = connection.prepareStatement(sql, generatedKeyColumns);
+            } else {
+                statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            }
+            if (fetchSize > 0) {
+                statement.setFetchSize(fetchSize);
+            }
+            if (values != null) {
+                setArray(statement, values);
+            }
+            return statement;
+        }
+
+        @Override
+        public String getSql() {
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ru.otus.datasource;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.jdbc.init.DataSourceScriptDatabaseInitializer;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.context.ApplicationStartupAware;
+import org.springframework.core.io.Resource;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Инициализация базы скриптами spring.sql.init, которая пропускает скрипты, уже выполненные на этой базе
+ * с тем же содержимым. Хэш SHA-256 содержимого набора скриптов хранится в таблице sql_init_scripts
+ * по их расположению. Если схема выполнялась заново, скрипты данных выполняются тоже, даже без изменений.
+ * Имеет смысл для постоянной базы: база в памяти создается пустой, и скрипты выполняются всегда
+ */
+@Slf4j
+public class CachedScriptDatabaseInitializer extends DataSourceScriptDatabaseInitializer implements ApplicationStartupAware {
+    public static final String STEP_NAME = "library.sql-init.scripts";
+
+    private static final String CREATE_TABLE = "create table if not exists sql_init_scripts("
+            + "locations varchar(1000) primary key, hash varchar(64) not null, applied_at timestamp not null)";
+    private static final String SELECT_HASH = "select hash from sql_init_scripts where locations = ?";
+    private static final String MERGE_HASH = "merge into sql_init_scripts(locations, hash, applied_at) key (locations) "
+            + "values (?, ?, current_timestamp)";
+
+    private ApplicationStartup applicationStartup = ApplicationStartup.DEFAULT;
+    private boolean applied;
+
+    public CachedScriptDatabaseInitializer(DataSource dataSource, DatabaseInitializationSettings settings) {
+        super(dataSource, settings);
+    }
+
+    @Override
+    public void setApplicationStartup(ApplicationStartup applicationStartup) {
+        this.applicationStartup = applicationStartup;
+    }
+
+    @Override
+    protected void runScripts(List<Resource> resources, boolean continueOnError, String separator, Charset encoding) {
+        if (resources.isEmpty()) {
+            return;
+        }
+        final var locations = resources.stream().map(Resource::getDescription).collect(Collectors.joining(";"));
+        final var step = applicationStartup.start(STEP_NAME).tag("locations", locations);
+        try {
+            final var jdbcTemplate = new JdbcTemplate(getDataSource());
+            jdbcTemplate.execute(CREATE_TABLE);
+            final var hash = hash(resources);
+            final var stored = jdbcTemplate.query(SELECT_HASH, (resultSet, rowNum) -> resultSet.getString(1), locations);
+            if (!applied && stored.contains(hash)) {
+                log.info("Скрипты не менялись с прошлого запуска, пропущены: {}", locations);
+                step.tag("skipped", "true");
+                return;
+            }
+            super.runScripts(resources, continueOnError, separator, encoding);
+            jdbcTemplate.update(MERGE_HASH, locations, hash);
+            applied = true;
+            step.tag("skipped", "false");
+        } finally {
+            step.end();
+        }
+    }
+
+    private static String hash(List<Resource> resources) {
+        final Hasher hasher = Hashing.sha256().newHasher();
+        for (Resource resource : resources) {
+            try (InputStream in = resource.getInputStream()) {
+                hasher.putBytes(in.readAllBytes());
+            } catch (IOException ex) {
+                throw new UncheckedIOException("не удалось прочитать скрипт " + resource.getDescription(), ex);
+            }
+        }
+        return hasher.hash().toString();
+    }
+}
@@ -0,0 +1,12 @@
+package ru.otus.datasource;
+
+public enum ReplicaPolicy {
+    /**
+     * Реплики по очереди
+     */
+    ROUND_ROBIN,
+    /**
+     * Реплика с наименьшим количеством занятых соединений пула, при равенстве - по очереди
+     */
+    LEAST_BUSY
+}
@@ -0,0 +1,156 @@
+package ru.otus.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Соединения читающих транзакций (readOnly) берутся из реплик, все остальные - из основной базы.
+ * Признак readOnly выставляется после получения соединения менеджером транзакций, поэтому источник
+ * должен быть обернут в LazyConnectionDataSourceProxy.
+ * После успешной записи поток на readYourWritesWindow закрепляется за основной базой: его читающие транзакции
+ * видят только что записанные данные, даже если реплика отстает. Закрепление действует только
+ * на поток, выполнивший транзакцию. Пулы реплик принадлежат этому источнику и закрываются вместе с ним
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+    public static final String CONNECTIONS_NAME = "library.routing.connections";
+    public static final String ROUTE_PRIMARY = "primary";
+    public static final String ROUTE_PINNED = "pinned";
+    public static final String ROUTE_REPLICA = "replica";
+
+    private static final String PRIMARY_KEY = "primary";
+
+    private final List<HikariDataSource> replicas;
+    private final ReplicaPolicy policy;
+    private final long readYourWritesNanos;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ThreadLocal<Long> pinnedUntil = new ThreadLocal<>();
+    private final Counter primaryConnections;
+    private final Counter pinnedConnections;
+    private final Counter[] replicaConnections;
+
+    public ReplicaRoutingDataSource(DataSource primary,
+                                    List<HikariDataSource> replicas,
+                                    ReplicaPolicy policy,
+                                    Duration readYourWritesWindow,
+                                    MeterRegistry meterRegistry) {
+        this.replicas = List.copyOf(replicas);
+        this.policy = policy;
+        this.readYourWritesNanos = readYourWritesWindow.toNanos();
+        final Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY_KEY, primary);
+        this.replicaConnections = new Counter[this.replicas.size()];
+        for (int i = 0; i < this.replicas.size(); i++) {
+            targets.put(i, this.replicas.get(i));
+            replicaConnections[i] = connectionsCounter(meterRegistry, ROUTE_REPLICA, this.replicas.get(i).getPoolName());
+        }
+        this.primaryConnections = connectionsCounter(meterRegistry, ROUTE_PRIMARY, PRIMARY_KEY);
+        this.pinnedConnections = connectionsCounter(meterRegistry, ROUTE_PINNED, PRIMARY_KEY);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    public List<HikariDataSource> getReplicas() {
+        return replicas;
+    }
+
+    public ReplicaPolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            pinAfterCommit();
+            primaryConnections.increment();
+            return PRIMARY_KEY;
+        }
+        if (replicas.isEmpty()) {
+            primaryConnections.increment();
+            return PRIMARY_KEY;
+        }
+        if (isPinned()) {
+            pinnedConnections.increment();
+            return PRIMARY_KEY;
+        }
+        final int replica = chooseReplica();
+        replicaConnections[replica].increment();
+        return replica;
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(HikariDataSource::close);
+    }
+
+    private int chooseReplica() {
+        final int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        if (policy == ReplicaPolicy.ROUND_ROBIN) {
+            return start;
+        }
+        int best = start;
+        int bestActive = activeConnections(start);
+        for (int i = 1; i < replicas.size() && bestActive > 0; i++) {
+            final int candidate = (start + i) % replicas.size();
+            final int active = activeConnections(candidate);
+            if (active < bestActive) {
+                best = candidate;
+                bestActive = active;
+            }
+        }
+        return best;
+    }
+
+    private int activeConnections(int replica) {
+        final var pool = replicas.get(replica).getHikariPoolMXBean();
+        return pool == null ? 0 : pool.getActiveConnections();
+    }
+
+    private boolean isPinned() {
+        final Long until = pinnedUntil.get();
+        if (until == null) {
+            return false;
+        }
+        if (System.nanoTime() - until < 0) {
+            return true;
+        }
+        pinnedUntil.remove();
+        return false;
+    }
+
+    /**
+     * Окно отсчитывается от фиксации транзакции: с этого момента изменения могут еще не дойти до реплик
+     */
+    private void pinAfterCommit() {
+        if (readYourWritesNanos <= 0 || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                pinnedUntil.set(System.nanoTime() + readYourWritesNanos);
+            }
+        });
+    }
+
+    private static Counter connectionsCounter(MeterRegistry meterRegistry, String route, String target) {
+        return Counter.builder(CONNECTIONS_NAME)
+                .description("Соединения, выданные маршрутизатором основной базы и реплик")
+                .tag("route", route)
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,18 @@
+package ru.otus.dto;
+
+import lombok.Value;
+
+/**
+ * Количество книг у автора или жанра; неизменяемый, поэтому может отдаваться из кэша без копирования
+ */
+@Value
+public class CountByName {
+    long id;
+    String name;
+    long books;
+
+    @Override
+    public String toString() {
+        return name + " (id=" + id + "): " + books;
+    }
+}
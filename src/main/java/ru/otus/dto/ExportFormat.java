@@ -0,0 +1,12 @@
+package ru.otus.dto;
+
+public enum ExportFormat {
+    /**
+     * Строки {@code название,автор,жанр} - тот же формат, что читает import
+     */
+    CSV,
+    /**
+     * Один JSON объект книги с автором и жанром на строку
+     */
+    JSONL
+}
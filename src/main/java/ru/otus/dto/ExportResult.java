@@ -0,0 +1,26 @@
+package ru.otus.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ExportResult {
+    private String file;
+    private long rows;
+    private long bytes;
+    private long elapsedMillis;
+
+    public double getRowsPerSecond() {
+        if (elapsedMillis <= 0) {
+            return rows;
+        }
+        return rows * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("файл: %s, выгружено книг: %d, размер: %d байт, время: %d мс, скорость: %.1f строк/с",
+                file, rows, bytes, elapsedMillis, getRowsPerSecond());
+    }
+}
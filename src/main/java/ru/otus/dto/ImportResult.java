@@ -0,0 +1,26 @@
+package ru.otus.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ImportResult {
+    private long rowsRead;
+    private long imported;
+    private long skipped;
+    private long elapsedMillis;
+
+    public double getRowsPerSecond() {
+        if (elapsedMillis <= 0) {
+            return imported;
+        }
+        return imported * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("прочитано строк: %d, загружено: %d, пропущено: %d, время: %d мс, скорость: %.1f строк/с",
+                rowsRead, imported, skipped, elapsedMillis, getRowsPerSecond());
+    }
+}
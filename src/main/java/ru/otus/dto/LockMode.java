@@ -0,0 +1,15 @@
+package ru.otus.dto;
+
+/**
+ * Защита изменения книги от параллельных изменений между ее чтением и записью
+ */
+public enum LockMode {
+    /**
+     * Условный update по версии книги; при конфликте изменение повторяется или отклоняется
+     */
+    OPTIMISTIC,
+    /**
+     * Строка книги блокируется select ... for update до конца транзакции, параллельные изменения ждут
+     */
+    PESSIMISTIC
+}
@@ -0,0 +1,36 @@
+package ru.otus.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ScriptResult {
+    private long commands;
+    private long succeeded;
+    private long failed;
+    private long elapsedMillis;
+    private String executor;
+    /**
+     * Первые ошибки в виде "строка N: сообщение"
+     */
+    private List<String> errors;
+
+    public double getCommandsPerSecond() {
+        if (elapsedMillis <= 0) {
+            return commands;
+        }
+        return commands * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        final var result = new StringBuilder(String.format(
+                "команд: %d, успешно: %d, с ошибкой: %d, время: %d мс, скорость: %.1f команд/с, исполнитель: %s",
+                commands, succeeded, failed, elapsedMillis, getCommandsPerSecond(), executor));
+        errors.forEach(error -> result.append(System.lineSeparator()).append("  ").append(error));
+        return result.toString();
+    }
+}
@@ -0,0 +1,24 @@
+package ru.otus.dto;
+
+/**
+ * Режимы поиска книг по названию: EXACT, PREFIX и IGNORE_CASE идут по индексам на books,
+ * FULL_TEXT - по полнотекстовому индексу H2
+ */
+public enum SearchMode {
+    /**
+     * Точное совпадение названия
+     */
+    EXACT,
+    /**
+     * Название начинается с заданной строки
+     */
+    PREFIX,
+    /**
+     * Название начинается с заданной строки без учета регистра
+     */
+    IGNORE_CASE,
+    /**
+     * Все слова запроса встречаются в названии (полнотекстовый индекс H2)
+     */
+    FULL_TEXT
+}
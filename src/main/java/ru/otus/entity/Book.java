@@ -1,21 +1,70 @@
 package ru.otus.entity;
 
-import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
+/**
+ * Книга с авторами и жанрами в порядке указания. Первый автор и первый жанр - основные,
+ * они же хранятся в books.author_id и books.genre_id
+ */
 @Data
 @NoArgsConstructor
-@AllArgsConstructor
 public class Book {
     private long id;
     private String name;
-    private Author author;
-    private Genre genre;
+    private List<Author> authors = List.of();
+    private List<Genre> genres = List.of();
+    /**
+     * Версия строки books на момент чтения, растет на каждом изменении книги
+     */
+    private long version;
 
-    public Book(String name, Author author, Genre genre) {
+    public Book(long id, String name, List<Author> authors, List<Genre> genres) {
+        this.id = id;
         this.name = name;
-        this.author = author;
-        this.genre = genre;
+        this.authors = List.copyOf(authors);
+        this.genres = List.copyOf(genres);
+    }
+
+    public Book(long id, String name, Author author, Genre genre) {
+        this(id, name, listOf(author), listOf(genre));
+    }
+
+    public Book(String name, List<Author> authors, List<Genre> genres) {
+        this(0, name, authors, genres);
+    }
+
+    public Book(String name, Author author, Genre genre) {
+        this(0, name, author, genre);
+    }
+
+    public Author getAuthor() {
+        return authors.isEmpty() ? null : authors.get(0);
+    }
+
+    public void setAuthor(Author author) {
+        this.authors = listOf(author);
+    }
+
+    public Genre getGenre() {
+        return genres.isEmpty() ? null : genres.get(0);
+    }
+
+    public void setGenre(Genre genre) {
+        this.genres = listOf(genre);
+    }
+
+    public void setAuthors(List<Author> authors) {
+        this.authors = List.copyOf(authors);
+    }
+
+    public void setGenres(List<Genre> genres) {
+        this.genres = List.copyOf(genres);
+    }
+
+    private static <T> List<T> listOf(T value) {
+        return value == null ? List.of() : List.of(value);
     }
 }
@@ -0,0 +1,23 @@
+package ru.otus.event;
+
+import lombok.Value;
+
+/**
+ * Запись журнала изменений книг: номер записи в book_changes, id книги и вид изменения.
+ * Состояние книги не передается, слушатель при необходимости читает его сам
+ */
+@Value
+public class BookChange {
+    long changeId;
+    long bookId;
+    Type type;
+
+    public enum Type {
+        CREATED,
+        /**
+         * Изменение книги, в том числе upsert и перенос на другого автора или жанр
+         */
+        UPDATED,
+        DELETED
+    }
+}
@@ -0,0 +1,21 @@
+package ru.otus.event;
+
+import java.util.List;
+
+/**
+ * Слушатель ленты изменений книг. Вызывается из потока рассылки после коммита, по одному разу на транзакцию
+ * со всеми ее изменениями в порядке записи; бины этого типа подписываются автоматически.
+ * Пачки разных транзакций приходят в порядке коммита, а не номеров: продолжать с наибольшего полученного
+ * номера нельзя, дочитывать пропущенное стоит через {@link ru.otus.service.BookChangeCursor}
+ */
+@FunctionalInterface
+public interface BookChangeListener {
+    void onChanges(List<BookChange> changes);
+
+    /**
+     * Пачки с номерами от fromChangeId до toChangeId не разосланы из-за переполнения очереди. В диапазоне
+     * могут быть и разосланные или откатившиеся номера, пропущенные записи дочитываются из журнала
+     */
+    default void onDropped(long fromChangeId, long toChangeId) {
+    }
+}
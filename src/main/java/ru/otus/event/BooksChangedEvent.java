@@ -0,0 +1,20 @@
+package ru.otus.event;
+
+/**
+ * Книги изменились: созданы, изменены, удалены или перенесены на другого автора/жанр.
+ * Публикуется сервисом книг, слушатели внутри транзакции получают его после коммита
+ */
+public class BooksChangedEvent {
+    private final int books;
+
+    public BooksChangedEvent(int books) {
+        this.books = books;
+    }
+
+    /**
+     * Количество затронутых книг
+     */
+    public int getBooks() {
+        return books;
+    }
+}
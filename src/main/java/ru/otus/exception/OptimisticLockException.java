@@ -0,0 +1,10 @@
+package ru.otus.exception;
+
+/**
+ * Книгу изменили или удалили параллельно между ее чтением и записью, изменение не применено
+ */
+public class OptimisticLockException extends RuntimeException {
+    public OptimisticLockException(String message) {
+        super(message);
+    }
+}
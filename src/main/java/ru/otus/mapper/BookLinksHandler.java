@@ -0,0 +1,75 @@
+package ru.otus.mapper;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+import ru.otus.entity.Author;
+import ru.otus.entity.Book;
+import ru.otus.entity.Genre;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сборка авторов и жанров книг из запросов по book_authors и book_genres. Колонки по порядку: book_id,
+ * id и имя автора или жанра; строки одной книги идут в порядке position. Авторы и жанры с одинаковым id
+ * представлены одним экземпляром, в том числе с уже прочитанными основными авторами и жанрами книг
+ */
+public class BookLinksHandler {
+    private final Map<Long, Author> authors = new HashMap<>();
+    private final Map<Long, Genre> genres = new HashMap<>();
+    private final Map<Long, List<Author>> authorsByBook = new HashMap<>();
+    private final Map<Long, List<Genre>> genresByBook = new HashMap<>();
+
+    public BookLinksHandler(Collection<Book> books) {
+        for (Book book : books) {
+            if (book.getAuthor() != null) {
+                authors.putIfAbsent(book.getAuthor().getId(), book.getAuthor());
+            }
+            if (book.getGenre() != null) {
+                genres.putIfAbsent(book.getGenre().getId(), book.getGenre());
+            }
+        }
+    }
+
+    public RowCallbackHandler authors() {
+        return resultSet -> {
+            final long id = resultSet.getLong(2);
+            var author = authors.get(id);
+            if (author == null) {
+                author = new Author(id, resultSet.getString(3));
+                authors.put(id, author);
+            }
+            authorsByBook.computeIfAbsent(resultSet.getLong(1), key -> new ArrayList<>(1)).add(author);
+        };
+    }
+
+    public RowCallbackHandler genres() {
+        return resultSet -> {
+            final long id = resultSet.getLong(2);
+            var genre = genres.get(id);
+            if (genre == null) {
+                genre = new Genre(id, resultSet.getString(3));
+                genres.put(id, genre);
+            }
+            genresByBook.computeIfAbsent(resultSet.getLong(1), key -> new ArrayList<>(1)).add(genre);
+        };
+    }
+
+    /**
+     * Проставляет книгам прочитанных авторов и жанры; у книг без строк связей остаются основные из books
+     */
+    public void apply(Collection<Book> books) {
+        for (Book book : books) {
+            final var bookAuthors = authorsByBook.get(book.getId());
+            if (bookAuthors != null) {
+                book.setAuthors(bookAuthors);
+            }
+            final var bookGenres = genresByBook.get(book.getId());
+            if (bookGenres != null) {
+                book.setGenres(bookGenres);
+            }
+        }
+    }
+}
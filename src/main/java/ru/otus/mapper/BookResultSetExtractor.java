@@ -0,0 +1,94 @@
+package ru.otus.mapper;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import ru.otus.entity.Author;
+import ru.otus.entity.Book;
+import ru.otus.entity.Genre;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Разбор результата запроса книг без поиска колонок по имени на каждой строке: индексы колонок
+ * определяются один раз на ResultSet, а авторы и жанры с одинаковым id в пределах запроса
+ * представлены одним экземпляром. Объект хранит состояние одного запроса, поэтому создается на каждый вызов
+ */
+public class BookResultSetExtractor implements ResultSetExtractor<List<Book>> {
+    private final Map<Long, Author> authors = new HashMap<>();
+    private final Map<Long, Genre> genres = new HashMap<>();
+    private ResultSet columnsOf;
+    private int bookIdColumn;
+    private int bookNameColumn;
+    private int authorIdColumn;
+    private int authorNameColumn;
+    private int genreIdColumn;
+    private int genreNameColumn;
+    private int versionColumn;
+
+    @Override
+    public List<Book> extractData(ResultSet resultSet) throws SQLException {
+        final var books = new ArrayList<Book>();
+        while (resultSet.next()) {
+            books.add(read(resultSet));
+        }
+        return books;
+    }
+
+    /**
+     * Обработчик для потокового обхода: каждая книга передается в consumer и дальше не удерживается
+     */
+    public static RowCallbackHandler forEach(Consumer<Book> consumer) {
+        final var extractor = new BookResultSetExtractor();
+        return resultSet -> consumer.accept(extractor.read(resultSet));
+    }
+
+    public Book read(ResultSet resultSet) throws SQLException {
+        if (columnsOf != resultSet) {
+            resolveColumns(resultSet);
+        }
+        final var book = new Book();
+        book.setId(resultSet.getLong(bookIdColumn));
+        book.setName(resultSet.getString(bookNameColumn));
+        book.setAuthor(author(resultSet));
+        book.setGenre(genre(resultSet));
+        book.setVersion(resultSet.getLong(versionColumn));
+        return book;
+    }
+
+    private Author author(ResultSet resultSet) throws SQLException {
+        final long id = resultSet.getLong(authorIdColumn);
+        var author = authors.get(id);
+        if (author == null) {
+            author = new Author(id, resultSet.getString(authorNameColumn));
+            authors.put(id, author);
+        }
+        return author;
+    }
+
+    private Genre genre(ResultSet resultSet) throws SQLException {
+        final long id = resultSet.getLong(genreIdColumn);
+        var genre = genres.get(id);
+        if (genre == null) {
+            genre = new Genre(id, resultSet.getString(genreNameColumn));
+            genres.put(id, genre);
+        }
+        return genre;
+    }
+
+    private void resolveColumns(ResultSet resultSet) throws SQLException {
+        bookIdColumn = resultSet.findColumn("book_id");
+        bookNameColumn = resultSet.findColumn("book_name");
+        authorIdColumn = resultSet.findColumn("author_id");
+        authorNameColumn = resultSet.findColumn("author_name");
+        genreIdColumn = resultSet.findColumn("genre_id");
+        genreNameColumn = resultSet.findColumn("genre_name");
+        versionColumn = resultSet.findColumn("version");
+        columnsOf = resultSet;
+    }
+}
@@ -24,6 +24,7 @@ public class BookRowMapper implements RowMapper<Book> {
         book.setName(resultSet.getString("book_name"));
         book.setAuthor(authorRowMapper.mapRow(resultSet, i));
         book.setGenre(genreRowMapper.mapRow(resultSet, i));
+        book.setVersion(resultSet.getLong("version"));
         return book;
     }
 }
@@ -0,0 +1,176 @@
+package ru.otus.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+import ru.otus.config.LibraryProperties;
+import ru.otus.datasource.CachedScriptDatabaseInitializer;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Отчет о времени запуска по шагам, которые записал BufferingApplicationStartup (см. Main): фазы запуска
+ * Spring Boot, этапы обновления контекста, самые долгие по созданию бины и скрипты инициализации базы.
+ * Время до готовности замеряется по ApplicationStartedEvent, то есть до запуска оболочки. При ленивой
+ * инициализации часть бинов создается уже после него, при первом обращении: в отчете они показаны
+ * отдельной строкой. Длительности фаз публикуются в Micrometer как library.startup.phase,
+ * время до готовности - как library.startup.time
+ */
+@Slf4j
+@Component
+public class StartupTimelineReport {
+    public static final String PHASE_TIMER = "library.startup.phase";
+    public static final String STARTUP_TIMER = "library.startup.time";
+
+    private static final String REFRESH_STEP = "spring.context.refresh";
+    private static final String INSTANTIATE_STEP = "spring.beans.instantiate";
+    private static final String BEAN_NAME_TAG = "beanName";
+
+    private final ApplicationStartup applicationStartup;
+    private final MeterRegistry meterRegistry;
+    private final LibraryProperties libraryProperties;
+
+    private volatile Snapshot snapshot;
+
+    public StartupTimelineReport(ApplicationStartup applicationStartup,
+                                 MeterRegistry meterRegistry,
+                                 LibraryProperties libraryProperties) {
+        this.applicationStartup = applicationStartup;
+        this.meterRegistry = meterRegistry;
+        this.libraryProperties = libraryProperties;
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void onStarted() {
+        if (!(applicationStartup instanceof BufferingApplicationStartup)) {
+            return;
+        }
+        final var timeline = ((BufferingApplicationStartup) applicationStartup).getBufferedTimeline();
+        final var current = new Snapshot(Duration.between(timeline.getStartTime(), Instant.now()),
+                ManagementFactory.getRuntimeMXBean().getUptime());
+        snapshot = current;
+        for (var event : topLevel(timeline.getEvents())) {
+            if (INSTANTIATE_STEP.equals(event.getStartupStep().getName())) {
+                continue;
+            }
+            Timer.builder(PHASE_TIMER).tag("phase", event.getStartupStep().getName())
+                    .register(meterRegistry).record(event.getDuration());
+        }
+        Timer.builder(STARTUP_TIMER).register(meterRegistry).record(current.startedIn);
+        if (libraryProperties.getStartup().isLogReport()) {
+            log.info("Время запуска:\n{}", format(libraryProperties.getStartup().getReportTopBeans()));
+        }
+    }
+
+    public String format(int topBeans) {
+        final var current = snapshot;
+        if (current == null) {
+            return "время запуска не записывалось: приложение запущено не через Main";
+        }
+        final var events = ((BufferingApplicationStartup) applicationStartup).getBufferedTimeline().getEvents();
+        final var result = new StringBuilder(String.format("до готовности к командам: %d мс, с запуска JVM: %d мс%n",
+                current.startedIn.toMillis(), current.jvmUptimeMillis));
+        result.append("фазы:\n");
+        var lazyInstantiated = Duration.ZERO;
+        int lazyBeans = 0;
+        for (var event : topLevel(events)) {
+            final var step = event.getStartupStep();
+            if (INSTANTIATE_STEP.equals(step.getName())) {
+                lazyInstantiated = lazyInstantiated.plus(event.getDuration());
+                lazyBeans++;
+                continue;
+            }
+            appendLine(result, "  ", step.getName(), event.getDuration());
+            if (REFRESH_STEP.equals(step.getName())) {
+                appendRefresh(result, events, step.getId());
+            }
+        }
+        if (lazyBeans > 0) {
+            appendLine(result, "  ", "ленивое создание бинов после запуска (" + lazyBeans + ")", lazyInstantiated);
+        }
+        final var beans = events.stream()
+                .filter(event -> INSTANTIATE_STEP.equals(event.getStartupStep().getName()))
+                .sorted(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration).reversed())
+                .limit(topBeans)
+                .collect(Collectors.toList());
+        if (!beans.isEmpty()) {
+            result.append("самые долгие бины (вместе с зависимостями):\n");
+            beans.forEach(event -> appendLine(result, "  ", tag(event.getStartupStep(), BEAN_NAME_TAG), event.getDuration()));
+        }
+        final var scripts = events.stream()
+                .filter(event -> CachedScriptDatabaseInitializer.STEP_NAME.equals(event.getStartupStep().getName()))
+                .collect(Collectors.toList());
+        if (!scripts.isEmpty()) {
+            result.append("скрипты инициализации базы:\n");
+            scripts.forEach(event -> appendLine(result, "  ",
+                    tag(event.getStartupStep(), "locations")
+                            + ("true".equals(tag(event.getStartupStep(), "skipped")) ? " (пропущены)" : ""),
+                    event.getDuration()));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Этапы обновления контекста; создание бинов верхнего уровня выводится одной строкой
+     */
+    private static void appendRefresh(StringBuilder result, List<StartupTimeline.TimelineEvent> events, long refreshId) {
+        var instantiated = Duration.ZERO;
+        int beans = 0;
+        for (var event : events) {
+            final var step = event.getStartupStep();
+            if (!Objects.equals(step.getParentId(), refreshId)) {
+                continue;
+            }
+            if (INSTANTIATE_STEP.equals(step.getName())) {
+                instantiated = instantiated.plus(event.getDuration());
+                beans++;
+            } else {
+                appendLine(result, "    ", step.getName(), event.getDuration());
+            }
+        }
+        appendLine(result, "    ", "создание бинов (" + beans + ")", instantiated);
+    }
+
+    private static void appendLine(StringBuilder result, String indent, String name, Duration duration) {
+        result.append(String.format("%s%-60s %6d мс%n", indent, name, duration.toMillis()));
+    }
+
+    private static String tag(StartupStep step, String key) {
+        for (var tag : step.getTags()) {
+            if (key.equals(tag.getKey())) {
+                return tag.getValue();
+            }
+        }
+        return "";
+    }
+
+    private static List<StartupTimeline.TimelineEvent> topLevel(List<StartupTimeline.TimelineEvent> events) {
+        return events.stream()
+                .filter(event -> event.getStartupStep().getParentId() == null)
+                .sorted(Comparator.comparing(StartupTimeline.TimelineEvent::getStartTime))
+                .collect(Collectors.toList());
+    }
+
+    private static class Snapshot {
+        private final Duration startedIn;
+        private final long jvmUptimeMillis;
+
+        Snapshot(Duration startedIn, long jvmUptimeMillis) {
+            this.startedIn = startedIn;
+            this.jvmUptimeMillis = jvmUptimeMillis;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package ru.otus.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.otus.config.LibraryProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики SQL запросов в разрезе текста запроса: количество вызовов, гистограмма времени выполнения,
+ * количество прочитанных и измененных строк, ошибки. Все счетчики регистрируются в Micrometer.
+ * Запросы дольше library.jdbc.slow-query-threshold пишутся в лог
+ */
+@Slf4j
+@Component
+public class StatementMetrics {
+    public static final String TIMER_NAME = "library.jdbc.statement";
+    public static final String ROWS_RETURNED_NAME = "library.jdbc.statement.rows.returned";
+    public static final String ROWS_AFFECTED_NAME = "library.jdbc.statement.rows.affected";
+    public static final String ERRORS_NAME = "library.jdbc.statement.errors";
+
+    private final MeterRegistry meterRegistry;
+    private final long slowQueryThresholdNanos;
+    private final Map<String, StatementStats> statements = new ConcurrentHashMap<>();
+
+    public StatementMetrics(MeterRegistry meterRegistry, LibraryProperties libraryProperties) {
+        this.meterRegistry = meterRegistry;
+        this.slowQueryThresholdNanos = libraryProperties.getJdbc().getSlowQueryThreshold().toNanos();
+    }
+
+    public void record(String sql, long elapsedNanos, long rowsReturned, long rowsAffected, boolean failed) {
+        final var stats = statements.computeIfAbsent(normalize(sql), this::register);
+        stats.timer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (rowsReturned > 0) {
+            stats.rowsReturned.record(rowsReturned);
+        }
+        if (rowsAffected > 0) {
+            stats.rowsAffected.increment(rowsAffected);
+        }
+        if (failed) {
+            stats.errors.increment();
+        }
+        if (elapsedNanos >= slowQueryThresholdNanos) {
+            log.warn("Медленный запрос: {} мс, строк прочитано {}, изменено {}: {}",
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos), rowsReturned, rowsAffected, stats.sql);
+        }
+    }
+
+    public Collection<StatementStats> getStatements() {
+        return new ArrayList<>(statements.values());
+    }
+
+    private StatementStats register(String sql) {
+        return new StatementStats(
+                sql,
+                Timer.builder(TIMER_NAME)
+                        .tag("sql", sql)
+                        .publishPercentiles(0.5, 0.95, 0.99)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry),
+                DistributionSummary.builder(ROWS_RETURNED_NAME)
+                        .tag("sql", sql)
+                        .register(meterRegistry),
+                Counter.builder(ROWS_AFFECTED_NAME)
+                        .tag("sql", sql)
+                        .register(meterRegistry),
+                Counter.builder(ERRORS_NAME)
+                        .tag("sql", sql)
+                        .register(meterRegistry)
+        );
+    }
+
+    private static String normalize(String sql) {
+        return sql.replaceAll("\\s+", " ").trim();
+    }
+
+    public static class StatementStats {
+        private final String sql;
+        private final Timer timer;
+        private final DistributionSummary rowsReturned;
+        private final Counter rowsAffected;
+        private final Counter errors;
+
+        StatementStats(String sql, Timer timer, DistributionSummary rowsReturned, Counter rowsAffected, Counter errors) {
+            this.sql = sql;
+            this.timer = timer;
+            this.rowsReturned = rowsReturned;
+            this.rowsAffected = rowsAffected;
+            this.errors = errors;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getCount() {
+            return timer.count();
+        }
+
+        public Duration getTotalTime() {
+            return Duration.ofNanos((long) timer.totalTime(TimeUnit.NANOSECONDS));
+        }
+
+        public double getMeanMillis() {
+            return timer.mean(TimeUnit.MILLISECONDS);
+        }
+
+        public double getMaxMillis() {
+            return timer.max(TimeUnit.MILLISECONDS);
+        }
+
+        public double getPercentileMillis(double percentile) {
+            for (var value : timer.takeSnapshot().percentileValues()) {
+                if (value.percentile() == percentile) {
+                    return value.value(TimeUnit.MILLISECONDS);
+                }
+            }
+            return Double.NaN;
+        }
+
+        public long getRowsReturned() {
+            return (long) rowsReturned.totalAmount();
+        }
+
+        public long getRowsAffected() {
+            return (long) rowsAffected.count();
+        }
+
+        public long getErrors() {
+            return (long) errors.count();
+        }
+    }
+}
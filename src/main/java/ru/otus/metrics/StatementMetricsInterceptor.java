@@ -0,0 +1,185 @@
+package ru.otus.metrics;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Перехватывает вызовы {@link NamedParameterJdbcOperations} и {@link JdbcOperations}, у которых первым
+ * аргументом передан текст запроса или {@link SqlProvider}, и передает время выполнения
+ * и количество строк в {@link StatementMetrics}. Прочитанные строки считаются через {@link RowCallbackHandler},
+ * а для остальных query* - по результату: размер списка или одна строка для одного значения.
+ * В execute с {@link PreparedStatementCallback} statement передается через обертку, которая суммирует
+ * измененные строки по executeUpdate и executeBatch; результат callback строками не считается
+ */
+public class StatementMetricsInterceptor implements MethodInterceptor {
+    private final StatementMetrics statementMetrics;
+
+    private StatementMetricsInterceptor(StatementMetrics statementMetrics) {
+        this.statementMetrics = statementMetrics;
+    }
+
+    public static NamedParameterJdbcOperations instrument(NamedParameterJdbcOperations target,
+                                                          StatementMetrics statementMetrics) {
+        final var proxyFactory = new ProxyFactory(target);
+        proxyFactory.setInterfaces(NamedParameterJdbcOperations.class);
+        proxyFactory.addAdvice(new StatementMetricsInterceptor(statementMetrics));
+        return (NamedParameterJdbcOperations) proxyFactory.getProxy();
+    }
+
+    public static JdbcOperations instrument(JdbcOperations target, StatementMetrics statementMetrics) {
+        final var proxyFactory = new ProxyFactory(target);
+        proxyFactory.setInterfaces(JdbcOperations.class);
+        proxyFactory.addAdvice(new StatementMetricsInterceptor(statementMetrics));
+        return (JdbcOperations) proxyFactory.getProxy();
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        final var args = invocation.getArguments();
+        if ("getJdbcOperations".equals(invocation.getMethod().getName())) {
+            return instrument((JdbcOperations) invocation.proceed(), statementMetrics);
+        }
+        final var sql = sqlOf(args);
+        if (sql == null) {
+            return invocation.proceed();
+        }
+        CountingRowCallbackHandler rowCounter = null;
+        CountingStatementCallback<?> statementCounter = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof RowCallbackHandler) {
+                rowCounter = new CountingRowCallbackHandler((RowCallbackHandler) args[i]);
+                args[i] = rowCounter;
+            } else if (args[i] instanceof PreparedStatementCallback) {
+                statementCounter = new CountingStatementCallback<>((PreparedStatementCallback<?>) args[i]);
+                args[i] = statementCounter;
+            }
+        }
+        final long start = System.nanoTime();
+        Object result = null;
+        boolean failed = true;
+        try {
+            result = invocation.proceed();
+            failed = false;
+            return result;
+        } finally {
+            final long elapsed = System.nanoTime() - start;
+            final var method = invocation.getMethod().getName();
+            final boolean modifying = "update".equals(method) || "batchUpdate".equals(method);
+            final long rowsReturned;
+            if (rowCounter != null) {
+                rowsReturned = rowCounter.rows;
+            } else {
+                rowsReturned = method.startsWith("query") ? rowsReturned(result) : 0;
+            }
+            final long rowsAffected;
+            if (statementCounter != null) {
+                rowsAffected = statementCounter.rows;
+            } else {
+                rowsAffected = modifying ? rowsAffected(result) : 0;
+            }
+            statementMetrics.record(sql, elapsed, rowsReturned, rowsAffected, failed);
+        }
+    }
+
+    private static String sqlOf(Object[] args) {
+        if (args.length == 0) {
+            return null;
+        }
+        if (args[0] instanceof String) {
+            return (String) args[0];
+        }
+        if (args[0] instanceof SqlProvider) {
+            return ((SqlProvider) args[0]).getSql();
+        }
+        return null;
+    }
+
+    private static long rowsReturned(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        return result != null ? 1 : 0;
+    }
+
+    private static long rowsAffected(Object result) {
+        if (result instanceof Integer || result instanceof Long) {
+            return Math.max(((Number) result).longValue(), 0);
+        }
+        if (result instanceof int[]) {
+            long rows = 0;
+            for (int count : (int[]) result) {
+                rows += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+            }
+            return rows;
+        }
+        if (result instanceof long[]) {
+            long rows = 0;
+            for (long count : (long[]) result) {
+                rows += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+            }
+            return rows;
+        }
+        return 0;
+    }
+
+    private static class CountingRowCallbackHandler implements RowCallbackHandler {
+        private final RowCallbackHandler delegate;
+        private long rows;
+
+        CountingRowCallbackHandler(RowCallbackHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void processRow(ResultSet resultSet) throws SQLException {
+            rows++;
+            delegate.processRow(resultSet);
+        }
+    }
+
+    private static class CountingStatementCallback<T> implements PreparedStatementCallback<T> {
+        private final PreparedStatementCallback<T> delegate;
+        private long rows;
+
+        CountingStatementCallback(PreparedStatementCallback<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public T doInPreparedStatement(PreparedStatement statement) throws SQLException {
+            final InvocationHandler counter = (proxy, method, methodArgs) -> {
+                final Object result;
+                try {
+                    result = method.invoke(statement, methodArgs);
+                } catch (InvocationTargetException ex) {
+                    throw ex.getCause();
+                }
+                if (method.getName().startsWith("execute")) {
+                    rows += rowsAffected(result);
+                }
+                return result;
+            };
+            return delegate.doInPreparedStatement((PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, counter));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package ru.otus.service;
+
+import ru.otus.dao.BookChangeDAO;
+import ru.otus.event.BookChange;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Позиция одного слушателя в журнале book_changes для дочитывания без пропусков. Номера записей выдаются
+ * при записи, а не при коммите, поэтому запись долгой транзакции может стать видна после записей с большими
+ * номерами. Курсор помнит номер, до которого журнал прочитан без пропусков (position), и уже полученные
+ * номера после него: каждое чтение идет с position, а полученные записи отбрасываются. Пропуск в номерах
+ * ждет своей записи gapTimeout с момента, когда его заметили, после чего считается откатом и position
+ * переходит через него. Гарантия: каждая запись отдается один раз, если ее транзакция закоммичена не позже
+ * gapTimeout после того, как стала видна запись с большим номером; запись более долгой транзакции
+ * пропускается. Изменения из рассылки отмечаются через {@link #markSeen} и повторно не отдаются.
+ * Методы синхронизированы: рассылка и дочитывание могут идти из разных потоков
+ */
+public class BookChangeCursor {
+    private final BookChangeDAO bookChangeDAO;
+    private final long gapTimeoutNanos;
+    private final NavigableSet<Long> seen = new TreeSet<>();
+    // первый номер каждого пропуска между position и полученными номерами -> когда пропуск заметили
+    private final TreeMap<Long, Long> gapsNoticed = new TreeMap<>();
+    private long position;
+
+    public BookChangeCursor(BookChangeDAO bookChangeDAO, long afterChangeId, long gapTimeoutNanos) {
+        this.bookChangeDAO = bookChangeDAO;
+        this.position = afterChangeId;
+        this.gapTimeoutNanos = gapTimeoutNanos;
+    }
+
+    /**
+     * Еще не полученные записи журнала после position в порядке номеров, не больше limit
+     */
+    public synchronized List<BookChange> next(int limit) {
+        final var changes = new ArrayList<BookChange>();
+        for (var change : bookChangeDAO.findAfter(position, seen.size() + limit)) {
+            if (changes.size() < limit && seen.add(change.getChangeId())) {
+                changes.add(change);
+            }
+        }
+        settle();
+        return changes;
+    }
+
+    /**
+     * Отмечает изменения, полученные из рассылки, чтобы {@link #next} их не отдавал
+     */
+    public synchronized void markSeen(List<BookChange> changes) {
+        for (var change : changes) {
+            if (change.getChangeId() > position) {
+                seen.add(change.getChangeId());
+            }
+        }
+        settle();
+    }
+
+    /**
+     * Номер, до которого журнал прочитан без пропусков: с него можно продолжить после перезапуска
+     */
+    public synchronized long getPosition() {
+        return position;
+    }
+
+    /**
+     * Сдвигает position через полученные номера и через пропуски старше gapTimeout, замечает новые пропуски
+     */
+    private void settle() {
+        final long now = System.nanoTime();
+        long expected = position + 1;
+        for (long id : seen) {
+            if (id > expected) {
+                gapsNoticed.putIfAbsent(expected, now);
+            }
+            expected = id + 1;
+        }
+        while (!seen.isEmpty()) {
+            final long first = seen.first();
+            if (first == position + 1) {
+                seen.pollFirst();
+                position = first;
+                continue;
+            }
+            final Long noticed = gapsNoticed.get(position + 1);
+            if (noticed == null || now - noticed < gapTimeoutNanos) {
+                break;
+            }
+            position = first - 1;
+        }
+        gapsNoticed.headMap(position, true).clear();
+        gapsNoticed.entrySet().removeIf(gap -> seen.contains(gap.getKey()));
+    }
+}
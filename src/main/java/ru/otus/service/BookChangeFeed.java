@@ -0,0 +1,44 @@
+package ru.otus.service;
+
+import ru.otus.event.BookChange;
+import ru.otus.event.BookChangeListener;
+
+import java.util.List;
+
+/**
+ * Лента изменений книг внутри приложения (library.change-feed.enabled). Изменения транзакции рассылаются
+ * слушателям одной пачкой после ее коммита; при откате не рассылаются. Рассылка не гарантирована: при
+ * переполнении очереди пачка пропускается, о чем слушатели узнают через {@link BookChangeListener#onDropped}.
+ * Те же изменения записаны в журнал book_changes: слушатель, пропустивший часть ленты (перезапуск,
+ * переполнение очереди), дочитывает их через {@link #cursor} со своей сохраненной позиции
+ */
+public interface BookChangeFeed {
+    /**
+     * Изменения, записанные в журнал в текущей транзакции; без транзакции рассылаются сразу
+     */
+    void publish(List<BookChange> changes);
+
+    void subscribe(BookChangeListener listener);
+
+    void unsubscribe(BookChangeListener listener);
+
+    /**
+     * Записи журнала после afterChangeId, не больше limit, как они видны сейчас. Номера выдаются при записи,
+     * а не при коммите, поэтому запись долгой транзакции может появиться позже записей с большими номерами:
+     * для дочитывания без пропусков нужен {@link #cursor}
+     */
+    List<BookChange> replay(long afterChangeId, int limit);
+
+    /**
+     * Курсор для дочитывания журнала после afterChangeId без пропусков записей поздно закоммиченных
+     * транзакций, пропуски номеров ждут library.change-feed.gap-timeout
+     */
+    BookChangeCursor cursor(long afterChangeId);
+
+    /**
+     * Удаляет из журнала записи по changeId включительно
+     */
+    int purge(long upToChangeId);
+
+    int getPending();
+}
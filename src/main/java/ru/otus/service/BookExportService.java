@@ -0,0 +1,10 @@
+package ru.otus.service;
+
+import ru.otus.dto.ExportFormat;
+import ru.otus.dto.ExportResult;
+
+import java.nio.file.Path;
+
+public interface BookExportService {
+    ExportResult export(Path file, ExportFormat format, boolean gzip);
+}
@@ -0,0 +1,9 @@
+package ru.otus.service;
+
+import ru.otus.dto.ImportResult;
+
+import java.nio.file.Path;
+
+public interface BookImportService {
+    ImportResult importFile(Path file, char delimiter, int chunkSize);
+}
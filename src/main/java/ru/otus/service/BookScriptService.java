@@ -0,0 +1,9 @@
+package ru.otus.service;
+
+import ru.otus.dto.ScriptResult;
+
+import java.nio.file.Path;
+
+public interface BookScriptService {
+    ScriptResult run(Path file, int parallelism);
+}
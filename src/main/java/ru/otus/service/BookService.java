@@ -1,14 +1,34 @@
 package ru.otus.service;
 
+import ru.otus.dto.SearchMode;
 import ru.otus.entity.Book;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface BookService {
+    /**
+     * Разделитель имен в строке с несколькими авторами или жанрами книги
+     */
+    String NAMES_SEPARATOR = ";";
+
     List<Book> findByName(String name);
     Optional<Book> findById(long id);
+    List<Book> findAllByIds(Collection<Long> ids);
+    List<Book> search(String query, SearchMode mode, int limit);
+    List<Book> findPage(long afterId, int limit);
+    void forEach(long afterId, Consumer<Book> consumer);
     Book create(String name, String author, String genre);
+    int createAll(List<Book> books);
     Book update(long id, String name, String author, String genre);
+    Book upsert(long id, String name, String author, String genre);
     void delete(long id);
+    int deleteAll(Collection<Long> ids);
+    int deleteByAuthor(String authorName);
+    int deleteByGenre(String genreName);
+    int reassignAuthor(String fromAuthorName, String toAuthorName);
+    int reassignGenre(String fromGenreName, String toGenreName);
+    int rebuildReadModel();
 }
@@ -0,0 +1,21 @@
+package ru.otus.service;
+
+import ru.otus.entity.Book;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Отложенная запись изменений книг: операции ставятся в очередь и применяются фоновым потоком
+ * пачками, по одной транзакции на пачку. Future завершается после коммита транзакции
+ */
+public interface BookWriteQueue {
+    CompletableFuture<Book> create(String name, String author, String genre);
+    CompletableFuture<Book> update(long id, String name, String author, String genre);
+
+    /**
+     * Future завершается, когда записаны все операции, поставленные в очередь до вызова
+     */
+    CompletableFuture<Void> flush();
+
+    int getPending();
+}
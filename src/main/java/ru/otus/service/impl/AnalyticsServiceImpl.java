@@ -0,0 +1,121 @@
+package ru.otus.service.impl;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.otus.config.LibraryProperties;
+import ru.otus.dao.AnalyticsDAO;
+import ru.otus.dto.CountByName;
+import ru.otus.event.BooksChangedEvent;
+import ru.otus.service.AnalyticsService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Агрегаты по книгам. При library.analytics-cache.enabled результаты запоминаются до первого изменения книг
+ * (BooksChangedEvent после коммита) или до истечения ttl; без кэша группировки по авторам и жанрам
+ * передаются в consumer по мере чтения из БД.
+ * Результат, посчитанный параллельно с изменением книг, в кэш не кладется: изменение увеличивает
+ * номер поколения, и запрос, начатый в старом поколении, отдает результат только вызывающему
+ */
+@Service
+public class AnalyticsServiceImpl implements AnalyticsService {
+    private static final String COUNT_KEY = "count";
+    private static final String AUTHORS_KEY = "authors";
+    private static final String GENRES_KEY = "genres";
+    private static final String TOP_AUTHORS_KEY = "top-authors:";
+    private static final String TOP_GENRES_KEY = "top-genres:";
+
+    private final AnalyticsDAO analyticsDAO;
+    private final Cache<String, Object> cache;
+    private final AtomicLong generation = new AtomicLong();
+
+    public AnalyticsServiceImpl(AnalyticsDAO analyticsDAO, LibraryProperties libraryProperties) {
+        final var properties = libraryProperties.getAnalyticsCache();
+        this.analyticsDAO = analyticsDAO;
+        this.cache = properties.isEnabled()
+                ? CacheBuilder.newBuilder()
+                        .maximumSize(properties.getMaxSize())
+                        .expireAfterWrite(properties.getTtl())
+                        .build()
+                : null;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countBooks() {
+        return cached(COUNT_KEY, analyticsDAO::countBooks);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachBooksPerAuthor(Consumer<CountByName> consumer) {
+        if (cache == null) {
+            analyticsDAO.forEachBooksPerAuthor(consumer);
+            return;
+        }
+        cached(AUTHORS_KEY, () -> collect(analyticsDAO::forEachBooksPerAuthor)).forEach(consumer);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachBooksPerGenre(Consumer<CountByName> consumer) {
+        if (cache == null) {
+            analyticsDAO.forEachBooksPerGenre(consumer);
+            return;
+        }
+        cached(GENRES_KEY, () -> collect(analyticsDAO::forEachBooksPerGenre)).forEach(consumer);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<CountByName> topAuthors(int limit) {
+        Preconditions.checkArgument(limit > 0, "лимит должен быть больше нуля");
+        return cached(TOP_AUTHORS_KEY + limit, () -> List.copyOf(analyticsDAO.topAuthors(limit)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<CountByName> topGenres(int limit) {
+        Preconditions.checkArgument(limit > 0, "лимит должен быть больше нуля");
+        return cached(TOP_GENRES_KEY + limit, () -> List.copyOf(analyticsDAO.topGenres(limit)));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksChanged(BooksChangedEvent event) {
+        generation.incrementAndGet();
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T cached(String key, Supplier<T> loader) {
+        if (cache == null) {
+            return loader.get();
+        }
+        final var value = cache.getIfPresent(key);
+        if (value != null) {
+            return (T) value;
+        }
+        final long before = generation.get();
+        final T loaded = loader.get();
+        if (generation.get() == before) {
+            cache.put(key, loaded);
+        }
+        return loaded;
+    }
+
+    private List<CountByName> collect(Consumer<Consumer<CountByName>> query) {
+        final var result = new ArrayList<CountByName>();
+        query.accept(result::add);
+        return List.copyOf(result);
+    }
+}
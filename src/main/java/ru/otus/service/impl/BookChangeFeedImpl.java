@@ -0,0 +1,239 @@
+package ru.otus.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.otus.config.LibraryProperties;
+import ru.otus.dao.BookChangeDAO;
+import ru.otus.event.BookChange;
+import ru.otus.event.BookChangeListener;
+import ru.otus.service.BookChangeCursor;
+import ru.otus.service.BookChangeFeed;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лента изменений книг. Изменения транзакции копятся в ее синхронизации и после коммита одной пачкой
+ * ставятся в ограниченную очередь (library.change-feed.queue-capacity пачек), фоновый поток рассылает
+ * пачки слушателям по порядку. Коммитящий поток не ждет ни слушателей, ни места в очереди: при заполненной
+ * очереди пачка не рассылается: поток рассылки сообщает слушателям диапазон ее номеров через
+ * {@link BookChangeListener#onDropped}, и они дочитывают пропущенное из журнала book_changes.
+ * Ошибка одного слушателя не мешает остальным
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "library.change-feed", name = "enabled", havingValue = "true")
+public class BookChangeFeedImpl implements BookChangeFeed {
+    public static final String PUBLISHED_NAME = "library.change-feed.published";
+    public static final String DROPPED_NAME = "library.change-feed.dropped";
+    public static final String FAILED_NAME = "library.change-feed.failed";
+    public static final String QUEUE_SIZE_NAME = "library.change-feed.queue.size";
+
+    private final BookChangeDAO bookChangeDAO;
+    private final ObjectProvider<BookChangeListener> listenerBeans;
+    private final List<BookChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<List<BookChange>> queue;
+    private final long shutdownTimeoutMillis;
+    private final long gapTimeoutNanos;
+    private final Counter published;
+    private final Counter dropped;
+    private final Counter failed;
+    private final Thread worker;
+    private volatile boolean running = true;
+    // диапазон номеров не разосланных пачек, еще не переданный слушателям; пустой, пока from > to
+    private long droppedFrom = Long.MAX_VALUE;
+    private long droppedTo = Long.MIN_VALUE;
+    // бины-слушатели подписываются при первой рассылке: при создании ленты они могут быть еще не готовы
+    private boolean beansSubscribed;
+
+    public BookChangeFeedImpl(BookChangeDAO bookChangeDAO,
+                              ObjectProvider<BookChangeListener> listenerBeans,
+                              MeterRegistry meterRegistry,
+                              LibraryProperties libraryProperties) {
+        final var properties = libraryProperties.getChangeFeed();
+        this.bookChangeDAO = bookChangeDAO;
+        this.listenerBeans = listenerBeans;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.shutdownTimeoutMillis = properties.getShutdownTimeout().toMillis();
+        this.gapTimeoutNanos = properties.getGapTimeout().toNanos();
+        this.published = Counter.builder(PUBLISHED_NAME).register(meterRegistry);
+        this.dropped = Counter.builder(DROPPED_NAME).register(meterRegistry);
+        this.failed = Counter.builder(FAILED_NAME).register(meterRegistry);
+        Gauge.builder(QUEUE_SIZE_NAME, queue, BlockingQueue::size).register(meterRegistry);
+        this.worker = new Thread(this::run, "book-change-feed");
+        this.worker.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.join(shutdownTimeoutMillis);
+        if (worker.isAlive()) {
+            log.warn("Лента изменений не разослана за {} мс, осталось пачек: {}", shutdownTimeoutMillis, queue.size());
+            worker.interrupt();
+        }
+    }
+
+    @Override
+    public void publish(List<BookChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(List.copyOf(changes));
+            return;
+        }
+        transactionChanges().changes.addAll(changes);
+    }
+
+    @Override
+    public void subscribe(BookChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void unsubscribe(BookChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public List<BookChange> replay(long afterChangeId, int limit) {
+        return bookChangeDAO.findAfter(afterChangeId, limit);
+    }
+
+    @Override
+    public BookChangeCursor cursor(long afterChangeId) {
+        return new BookChangeCursor(bookChangeDAO, afterChangeId, gapTimeoutNanos);
+    }
+
+    @Override
+    public int purge(long upToChangeId) {
+        return bookChangeDAO.deleteUpTo(upToChangeId);
+    }
+
+    @Override
+    public int getPending() {
+        return queue.size();
+    }
+
+    /**
+     * Синхронизация текущей транзакции с ее изменениями, при первом изменении в транзакции регистрируется.
+     * Ищется среди синхронизаций транзакции, поэтому у вложенной REQUIRES_NEW транзакции своя пачка
+     */
+    private TransactionChanges transactionChanges() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof TransactionChanges && ((TransactionChanges) synchronization).isOf(this)) {
+                return (TransactionChanges) synchronization;
+            }
+        }
+        final var transactionChanges = new TransactionChanges();
+        TransactionSynchronizationManager.registerSynchronization(transactionChanges);
+        return transactionChanges;
+    }
+
+    private void enqueue(List<BookChange> batch) {
+        if (queue.offer(batch)) {
+            return;
+        }
+        final long from = batch.get(0).getChangeId();
+        final long to = batch.get(batch.size() - 1).getChangeId();
+        dropped.increment(batch.size());
+        synchronized (this) {
+            droppedFrom = Math.min(droppedFrom, from);
+            droppedTo = Math.max(droppedTo, to);
+        }
+        log.warn("Очередь ленты изменений заполнена, не разосланы изменения {}..{}, слушатели дочитают их из журнала",
+                from, to);
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                final var batch = queue.poll(100, TimeUnit.MILLISECONDS);
+                deliverDropped();
+                if (batch != null) {
+                    deliver(batch);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Сообщает слушателям накопленный диапазон не разосланных пачек, из потока рассылки
+     */
+    private void deliverDropped() {
+        final long from;
+        final long to;
+        synchronized (this) {
+            if (droppedFrom > droppedTo) {
+                return;
+            }
+            from = droppedFrom;
+            to = droppedTo;
+            droppedFrom = Long.MAX_VALUE;
+            droppedTo = Long.MIN_VALUE;
+        }
+        for (var listener : subscribedListeners()) {
+            try {
+                listener.onDropped(from, to);
+            } catch (RuntimeException ex) {
+                failed.increment();
+                log.warn("Слушатель ленты изменений {} завершился ошибкой", listener, ex);
+            }
+        }
+    }
+
+    private List<BookChangeListener> subscribedListeners() {
+        if (!beansSubscribed) {
+            listenerBeans.orderedStream().forEach(listeners::add);
+            beansSubscribed = true;
+        }
+        return listeners;
+    }
+
+    private void deliver(List<BookChange> batch) {
+        for (var listener : subscribedListeners()) {
+            try {
+                listener.onChanges(batch);
+            } catch (RuntimeException ex) {
+                failed.increment();
+                log.warn("Слушатель ленты изменений {} завершился ошибкой", listener, ex);
+            }
+        }
+        published.increment(batch.size());
+    }
+
+    private class TransactionChanges implements TransactionSynchronization {
+        private final List<BookChange> changes = new ArrayList<>();
+
+        private boolean isOf(BookChangeFeedImpl feed) {
+            return BookChangeFeedImpl.this == feed;
+        }
+
+        @Override
+        public void afterCommit() {
+            enqueue(List.copyOf(changes));
+        }
+    }
+}
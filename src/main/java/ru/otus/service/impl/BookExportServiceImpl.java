@@ -0,0 +1,197 @@
+package ru.otus.service.impl;
+
+import com.google.common.base.Preconditions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.otus.config.LibraryProperties;
+import ru.otus.dto.ExportFormat;
+import ru.otus.dto.ExportResult;
+import ru.otus.entity.Author;
+import ru.otus.entity.Book;
+import ru.otus.entity.Genre;
+import ru.otus.service.BookExportService;
+import ru.otus.service.BookService;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Потоковая выгрузка всех книг в файл: книги читаются через {@link BookService#forEach} (курсор только вперед)
+ * и сразу пишутся в буферизованный writer. Память не зависит от количества книг, пока H2 выполняет запросы
+ * лениво (LAZY_QUERY_EXECUTION=1 в url источника данных), иначе результат курсора целиком лежит в памяти H2.
+ * Прогресс пишется в лог каждые library.export.progress-interval книг
+ */
+@Slf4j
+@Service
+public class BookExportServiceImpl implements BookExportService {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char QUOTE = '"';
+
+    private final BookService bookService;
+    private final long progressInterval;
+
+    public BookExportServiceImpl(BookService bookService, LibraryProperties libraryProperties) {
+        this.bookService = bookService;
+        this.progressInterval = libraryProperties.getExport().getProgressInterval();
+        Preconditions.checkArgument(progressInterval > 0,
+                "library.export.progress-interval должен быть больше нуля");
+    }
+
+    @Override
+    public ExportResult export(Path file, ExportFormat format, boolean gzip) {
+        final long start = System.nanoTime();
+        final long[] rows = {0};
+        try (var writer = newWriter(file, gzip)) {
+            final var line = new StringBuilder(256);
+            bookService.forEach(0, book -> {
+                line.setLength(0);
+                if (format == ExportFormat.CSV) {
+                    appendCsv(line, book);
+                } else {
+                    appendJson(line, book);
+                }
+                line.append('\n');
+                try {
+                    writer.append(line);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (++rows[0] % progressInterval == 0) {
+                    log.info("Выгружено книг: {}, {} мс", rows[0], (System.nanoTime() - start) / 1_000_000);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("не удалось записать файл " + file, e);
+        }
+        final long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        try {
+            return new ExportResult(file.toString(), rows[0], Files.size(file), elapsedMillis);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Writer newWriter(Path file, boolean gzip) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        if (gzip) {
+            out = new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    private void appendCsv(StringBuilder line, Book book) {
+        appendCsvField(line, book.getName());
+        line.append(',');
+        appendCsvField(line, joinNames(book.getAuthors(), Author::getName));
+        line.append(',');
+        appendCsvField(line, joinNames(book.getGenres(), Genre::getName));
+    }
+
+    /**
+     * Несколько авторов или жанров - одним полем через {@link BookService#NAMES_SEPARATOR}, как их читает импорт
+     */
+    private static <T> String joinNames(List<T> values, Function<T, String> name) {
+        if (values.size() == 1) {
+            return name.apply(values.get(0));
+        }
+        return values.stream().map(value -> Objects.toString(name.apply(value), "")).collect(Collectors.joining(BookService.NAMES_SEPARATOR));
+    }
+
+    /**
+     * Поле в кавычках, если в нем есть запятая, кавычка или перевод строки; кавычка удваивается.
+     * null пишется пустым полем
+     */
+    private void appendCsvField(StringBuilder line, String value) {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            final char c = value.charAt(i);
+            quote = c == ',' || c == QUOTE || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append(QUOTE);
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == QUOTE) {
+                line.append(QUOTE);
+            }
+            line.append(c);
+        }
+        line.append(QUOTE);
+    }
+
+    private void appendJson(StringBuilder line, Book book) {
+        line.append("{\"id\":").append(book.getId())
+                .append(",\"name\":");
+        appendJsonString(line, book.getName());
+        line.append(",\"authors\":[");
+        for (int i = 0; i < book.getAuthors().size(); i++) {
+            final var author = book.getAuthors().get(i);
+            appendJsonRef(line.append(i == 0 ? "" : ","), author.getId(), author.getName());
+        }
+        line.append("],\"genres\":[");
+        for (int i = 0; i < book.getGenres().size(); i++) {
+            final var genre = book.getGenres().get(i);
+            appendJsonRef(line.append(i == 0 ? "" : ","), genre.getId(), genre.getName());
+        }
+        line.append("]}");
+    }
+
+    private void appendJsonRef(StringBuilder line, long id, String name) {
+        line.append("{\"id\":").append(id).append(",\"name\":");
+        appendJsonString(line, name);
+        line.append('}');
+    }
+
+    private void appendJsonString(StringBuilder line, String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append(QUOTE);
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+            }
+        }
+        line.append(QUOTE);
+    }
+}
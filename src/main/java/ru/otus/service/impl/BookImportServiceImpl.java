@@ -0,0 +1,123 @@
+package ru.otus.service.impl;
+
+import com.google.common.base.Preconditions;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Service;
+import ru.otus.config.LibraryProperties;
+import ru.otus.dao.AuthorDAO;
+import ru.otus.dao.GenreDAO;
+import ru.otus.dto.ImportResult;
+import ru.otus.entity.Author;
+import ru.otus.entity.Book;
+import ru.otus.entity.Genre;
+import ru.otus.service.BookImportService;
+import ru.otus.service.BookService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Потоковая загрузка книг из CSV/TSV файла со строками вида {@code название,автор,жанр}.
+ * Автор и жанр ищутся в БД один раз на каждое уникальное имя, книги пишутся пачками
+ * через {@link BookService#createAll(List)}, каждая пачка - отдельная транзакция.
+ * Строки с неизвестным автором или жанром пропускаются, при library.reference-data.auto-create
+ * отсутствующие авторы и жанры создаются.
+ */
+@Service
+public class BookImportServiceImpl implements BookImportService {
+    private static final String COMMENT_PREFIX = "#";
+
+    private final BookService bookService;
+    private final AuthorDAO authorDAO;
+    private final GenreDAO genreDAO;
+    private final boolean autoCreate;
+
+    public BookImportServiceImpl(BookService bookService,
+                                 AuthorDAO authorDAO,
+                                 GenreDAO genreDAO,
+                                 LibraryProperties libraryProperties) {
+        this.bookService = bookService;
+        this.authorDAO = authorDAO;
+        this.genreDAO = genreDAO;
+        this.autoCreate = libraryProperties.getReferenceData().isAutoCreate();
+    }
+
+    @Override
+    public ImportResult importFile(Path file, char delimiter, int chunkSize) {
+        Preconditions.checkArgument(chunkSize > 0, "размер пачки должен быть больше нуля");
+        final var parser = new DelimitedLineParser(delimiter);
+        final Map<String, Optional<Author>> authors = new HashMap<>();
+        final Map<String, Optional<Genre>> genres = new HashMap<>();
+        final Function<String, Optional<Author>> authorFinder = autoCreate
+                ? name -> Optional.of(authorDAO.getOrCreate(name))
+                : authorDAO::findByName;
+        final Function<String, Optional<Genre>> genreFinder = autoCreate
+                ? name -> Optional.of(genreDAO.getOrCreate(name))
+                : genreDAO::findByName;
+        final var chunk = new ArrayList<Book>(chunkSize);
+        long rowsRead = 0;
+        long imported = 0;
+        long skipped = 0;
+        final long start = System.nanoTime();
+        try (var reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (StringUtils.isBlank(line) || line.startsWith(COMMENT_PREFIX)) {
+                    continue;
+                }
+                rowsRead++;
+                final var fields = parser.parse(line);
+                if (fields.size() < 3 || StringUtils.isAnyEmpty(fields.get(0), fields.get(1), fields.get(2))) {
+                    skipped++;
+                    continue;
+                }
+                final var bookAuthors = lookup(fields.get(1), authors, authorFinder);
+                final var bookGenres = lookup(fields.get(2), genres, genreFinder);
+                if (bookAuthors.isEmpty() || bookGenres.isEmpty()) {
+                    skipped++;
+                    continue;
+                }
+                chunk.add(new Book(fields.get(0), bookAuthors, bookGenres));
+                if (chunk.size() == chunkSize) {
+                    imported += bookService.createAll(chunk);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("не удалось прочитать файл " + file, e);
+        }
+        imported += bookService.createAll(chunk);
+        final long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        return new ImportResult(rowsRead, imported, skipped, elapsedMillis);
+    }
+
+    /**
+     * Авторы или жанры строки через {@link BookService#NAMES_SEPARATOR}; пустой список, если какого-то нет в БД
+     */
+    private static <T> List<T> lookup(String names, Map<String, Optional<T>> cache, Function<String, Optional<T>> finder) {
+        final var found = new ArrayList<T>(1);
+        for (String name : names.split(BookService.NAMES_SEPARATOR)) {
+            final var trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            final var value = cache.computeIfAbsent(trimmed, finder);
+            if (value.isEmpty()) {
+                return List.of();
+            }
+            if (!found.contains(value.get())) {
+                found.add(value.get());
+            }
+        }
+        return found;
+    }
+}
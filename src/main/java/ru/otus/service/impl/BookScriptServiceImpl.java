@@ -0,0 +1,198 @@
+package ru.otus.service.impl;
+
+import com.google.common.base.Preconditions;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Service;
+import ru.otus.config.LibraryProperties;
+import ru.otus.dto.ScriptResult;
+import ru.otus.exception.NotFoundException;
+import ru.otus.service.BookScriptService;
+import ru.otus.service.BookService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Параллельное выполнение скрипта из команд find, create, update, delete (синтаксис как в консоли).
+ * Каждая команда - отдельный вызов BookService со своей транзакцией. Команды над одной книгой
+ * (один id или одно название) выполняются в порядке скрипта, остальные - параллельно.
+ * Связь между командами определяется только по id и названию из самой команды: например,
+ * update книги по id не упорядочивается с find по ее новому названию.
+ * Если среда выполнения поддерживает виртуальные потоки и они разрешены настройкой
+ * library.script.virtual-threads, каждая команда выполняется в своем виртуальном потоке,
+ * иначе в пуле из parallelism потоков. Для виртуальных потоков число одновременно выполняемых команд
+ * ограничивается семафором на parallelism, чтобы не выстраивать тысячи потоков в очередь к пулу соединений
+ */
+@Slf4j
+@Service
+public class BookScriptServiceImpl implements BookScriptService {
+    private static final String COMMENT_PREFIX = "#";
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private final BookService bookService;
+    private final LibraryProperties libraryProperties;
+
+    public BookScriptServiceImpl(BookService bookService, LibraryProperties libraryProperties) {
+        this.bookService = bookService;
+        this.libraryProperties = libraryProperties;
+    }
+
+    @Override
+    public ScriptResult run(Path file, int parallelism) {
+        Preconditions.checkArgument(parallelism > 0, "количество потоков должно быть больше нуля");
+        final var parser = new ScriptLineParser();
+        final Map<String, CompletableFuture<Void>> lastByKey = new HashMap<>();
+        final var futures = new ArrayList<CompletableFuture<Void>>();
+        final var succeeded = new AtomicLong();
+        final var errors = new ConcurrentSkipListMap<Integer, String>();
+        final var permits = new Semaphore(parallelism);
+        final var virtual = libraryProperties.getScript().isVirtualThreads() ? newVirtualThreadExecutor() : null;
+        final var executor = virtual != null ? virtual : Executors.newFixedThreadPool(parallelism);
+        final var executorName = virtual != null ? "виртуальные потоки" : "пул из " + parallelism + " потоков";
+        final long start = System.nanoTime();
+        try (var reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (StringUtils.isBlank(line) || line.trim().startsWith(COMMENT_PREFIX)) {
+                    continue;
+                }
+                final var number = lineNumber;
+                final ScriptLineParser.ScriptLine command;
+                final String key;
+                try {
+                    command = parser.parse(line);
+                    key = bind(command);
+                } catch (RuntimeException ex) {
+                    futures.add(CompletableFuture.completedFuture(null));
+                    errors.put(number, ex.getMessage());
+                    continue;
+                }
+                final Runnable task = () -> {
+                    try {
+                        permits.acquire();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        errors.put(number, "выполнение прервано");
+                        return;
+                    }
+                    try {
+                        execute(command);
+                        succeeded.incrementAndGet();
+                    } catch (RuntimeException ex) {
+                        errors.put(number, ex.getMessage());
+                    } finally {
+                        permits.release();
+                    }
+                };
+                final var previous = lastByKey.get(key);
+                final var future = previous == null
+                        ? CompletableFuture.runAsync(task, executor)
+                        : previous.thenRunAsync(task, executor);
+                lastByKey.put(key, future);
+                futures.add(future);
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            shutdown(executor);
+        }
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        final long commands = futures.size();
+        final List<String> reported = errors.entrySet().stream()
+                .limit(MAX_REPORTED_ERRORS)
+                .map(error -> "строка " + error.getKey() + ": " + error.getValue())
+                .collect(Collectors.toList());
+        return new ScriptResult(commands, succeeded.get(), commands - succeeded.get(), elapsedMillis, executorName, reported);
+    }
+
+    /**
+     * Проверяет команду, сопоставляет ее параметры и возвращает ключ книги, по которому упорядочиваются команды
+     */
+    private String bind(ScriptLineParser.ScriptLine command) {
+        switch (command.getCommand()) {
+            case "find":
+                command.bind("id", "name");
+                return command.getLong("id") > 0 ? "id:" + command.getLong("id") : "name:" + command.get("name");
+            case "create":
+                command.bind("name", "author-name", "genre-name");
+                return "name:" + command.get("name");
+            case "update":
+                command.bind("id", "name", "author-name", "genre-name");
+                return "id:" + command.getLong("id");
+            case "delete":
+                command.bind("id");
+                return "id:" + command.getLong("id");
+            default:
+                throw new IllegalArgumentException("команда не поддерживается в скрипте: " + command.getCommand());
+        }
+    }
+
+    private void execute(ScriptLineParser.ScriptLine command) {
+        switch (command.getCommand()) {
+            case "find":
+                find(command.getLong("id"), command.get("name"));
+                break;
+            case "create":
+                bookService.create(command.get("name"), command.get("author-name"), command.get("genre-name"));
+                break;
+            case "update":
+                bookService.update(command.getLong("id"), command.get("name"),
+                        command.get("author-name"), command.get("genre-name"));
+                break;
+            case "delete":
+                bookService.delete(command.getLong("id"));
+                break;
+            default:
+                throw new IllegalStateException(command.getCommand());
+        }
+    }
+
+    private void find(long id, String name) {
+        if (id > 0) {
+            bookService.findById(id).orElseThrow(() -> new NotFoundException("не найдена книга с id " + id));
+        } else if (bookService.findByName(name).isEmpty()) {
+            throw new NotFoundException("не найдены книги с name " + name);
+        }
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() вызывается через reflection: проект собирается под Java 11,
+     * виртуальные потоки есть в среде выполнения начиная с Java 21
+     */
+    private ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException ex) {
+            log.debug("Виртуальные потоки недоступны, используется пул потоков", ex);
+            return null;
+        }
+    }
+
+    private void shutdown(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -2,29 +2,59 @@ package ru.otus.service.impl;
 
 import com.google.common.base.Preconditions;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.otus.config.LibraryProperties;
 import ru.otus.dao.AuthorDAO;
 import ru.otus.dao.BookDAO;
 import ru.otus.dao.GenreDAO;
+import ru.otus.dto.LockMode;
+import ru.otus.dto.SearchMode;
+import ru.otus.entity.Author;
 import ru.otus.entity.Book;
+import ru.otus.entity.Genre;
+import ru.otus.event.BooksChangedEvent;
 import ru.otus.exception.NotFoundException;
+import ru.otus.exception.OptimisticLockException;
 import ru.otus.service.BookService;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
 public class BookServiceImpl implements BookService {
     private final BookDAO bookDAO;
     private final AuthorDAO authorDAO;
     private final GenreDAO genreDAO;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean autoCreate;
+    private final boolean lockOnUpdate;
+    private final int maxUpdateAttempts;
+    private final long retryBackoffNanos;
 
-    public BookServiceImpl(BookDAO bookDAO, AuthorDAO authorDAO, GenreDAO genreDAO) {
+    public BookServiceImpl(BookDAO bookDAO,
+                           AuthorDAO authorDAO,
+                           GenreDAO genreDAO,
+                           ApplicationEventPublisher eventPublisher,
+                           LibraryProperties libraryProperties) {
         this.bookDAO = bookDAO;
         this.authorDAO = authorDAO;
         this.genreDAO = genreDAO;
+        this.eventPublisher = eventPublisher;
+        this.autoCreate = libraryProperties.getReferenceData().isAutoCreate();
+        final var bookUpdate = libraryProperties.getBookUpdate();
+        Preconditions.checkArgument(bookUpdate.getMaxAttempts() > 0,
+                "library.book-update.max-attempts должен быть больше нуля");
+        this.lockOnUpdate = bookUpdate.getLockMode() == LockMode.PESSIMISTIC;
+        this.maxUpdateAttempts = bookUpdate.getMaxAttempts();
+        this.retryBackoffNanos = bookUpdate.getRetryBackoff().toNanos();
     }
 
     @Override
@@ -39,6 +69,39 @@ public class BookServiceImpl implements BookService {
         return bookDAO.findById(id);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<Book> findAllByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return bookDAO.findAllByIds(ids);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Book> search(String query, SearchMode mode, int limit) {
+        Preconditions.checkArgument(
+                StringUtils.isNoneBlank(query),
+                "строка поиска не может быть пустой"
+        );
+        Preconditions.checkArgument(limit > 0, "лимит должен быть больше нуля");
+        return bookDAO.search(query, mode, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Book> findPage(long afterId, int limit) {
+        Preconditions.checkArgument(limit > 0, "размер страницы должен быть больше нуля");
+        return bookDAO.findPage(afterId, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEach(long afterId, Consumer<Book> consumer) {
+        bookDAO.forEach(afterId, consumer);
+    }
+
     @Override
     @Transactional
     public Book create(String name, String authorName, String genreName) {
@@ -54,21 +117,28 @@ public class BookServiceImpl implements BookService {
                 StringUtils.isNoneEmpty(genreName),
                 "имя жанра не может быть пустым"
         );
-        final var author = authorDAO.findByName(authorName)
-                .orElseThrow(() -> new NotFoundException("отсутствует автор с именем " + authorName));
-        final var genre = genreDAO.findByName(genreName)
-                .orElseThrow(() -> new NotFoundException("отсутствует жанр с именем " + genreName));
-        final var id = bookDAO.save(new Book(name, author, genre));
-        return bookDAO.findById(id).orElseThrow(
-                () -> new NotFoundException(
-                        String.format("Не удалось сохранить книгу: имя=%s, автор=%s, жанр=%s",
-                                name,
-                                authorName,
-                                genreName)
-                )
-        );
+        final var book = new Book(name, findAuthors(authorName), findGenres(genreName));
+        book.setId(bookDAO.save(book));
+        booksChanged(1);
+        return book;
     }
 
+    @Override
+    @Transactional
+    public int createAll(List<Book> books) {
+        if (books.isEmpty()) {
+            return 0;
+        }
+        return booksChanged(bookDAO.saveAll(books));
+    }
+
+    /**
+     * Книга читается, меняется и записывается условным update по прочитанной версии (library.book-update),
+     * в том числе когда заданы и автор, и жанр: безусловный update затер бы параллельное изменение.
+     * Если книгу успели изменить, изменение применяется заново к новому состоянию до max-attempts раз,
+     * затем {@link OptimisticLockException}. В режиме pessimistic строка книги блокируется при чтении
+     * и конфликтов нет. Авторы и жанры ищутся по именам, только если отличаются от прочитанных
+     */
     @Override
     @Transactional
     public Book update(long id, String name, String authorName, String genreName) {
@@ -76,33 +146,166 @@ public class BookServiceImpl implements BookService {
                 StringUtils.isNoneEmpty(name),
                 "имя книги не может быть пустым"
         );
-        final var book = bookDAO.findById(id)
-                .orElseThrow(() -> new NotFoundException("Отсутствует книга с id=" + id));
-        book.setName(name);
-        if (StringUtils.isNoneEmpty(authorName) && !Objects.equals(book.getAuthor().getName(), authorName)) {
-            final var author = authorDAO.findByName(authorName)
-                    .orElseThrow(() -> new NotFoundException("отсутствует автор с именем " + authorName));
-            book.setAuthor(author);
-        }
-        if (StringUtils.isNoneEmpty(genreName) && !Objects.equals(book.getGenre().getName(), genreName)) {
-            final var genre = genreDAO.findByName(genreName)
-                    .orElseThrow(() -> new NotFoundException("отсутствует жанр с именем " + genreName));
-            book.setGenre(genre);
+        for (int attempt = 1; ; attempt++) {
+            final var book = bookDAO.findByIdForUpdate(id, lockOnUpdate)
+                    .orElseThrow(() -> new NotFoundException("Отсутствует книга с id=" + id));
+            book.setName(name);
+            if (StringUtils.isNoneEmpty(authorName) && !splitNames(authorName).equals(
+                    book.getAuthors().stream().map(Author::getName).collect(Collectors.toList()))) {
+                book.setAuthors(findAuthors(authorName));
+            }
+            if (StringUtils.isNoneEmpty(genreName) && !splitNames(genreName).equals(
+                    book.getGenres().stream().map(Genre::getName).collect(Collectors.toList()))) {
+                book.setGenres(findGenres(genreName));
+            }
+            if (bookDAO.updateIfVersion(book)) {
+                booksChanged(1);
+                return book;
+            }
+            if (attempt >= maxUpdateAttempts) {
+                throw new OptimisticLockException(
+                        "Книга с id=" + id + " изменена параллельно, попыток изменения: " + attempt);
+            }
+            pauseBeforeRetry();
         }
-        bookDAO.update(book);
-        return bookDAO.findById(id).orElseThrow(
-                () -> new NotFoundException(
-                        String.format("Не удалось обновить книгу: имя=%s, автор=%s, жанр=%s",
-                                name,
-                                authorName,
-                                genreName)
-                )
+    }
+
+    @Override
+    @Transactional
+    public Book upsert(long id, String name, String authorName, String genreName) {
+        Preconditions.checkArgument(id > 0, "id книги должен быть больше нуля");
+        Preconditions.checkArgument(
+                StringUtils.isNoneEmpty(name),
+                "имя книги не может быть пустым"
+        );
+        Preconditions.checkArgument(
+                StringUtils.isNoneEmpty(authorName),
+                "имя автора не может быть пустым"
         );
+        Preconditions.checkArgument(
+                StringUtils.isNoneEmpty(genreName),
+                "имя жанра не может быть пустым"
+        );
+        final var book = new Book(id, name, findAuthors(authorName), findGenres(genreName));
+        bookDAO.upsert(book);
+        booksChanged(1);
+        return book;
     }
 
     @Override
     @Transactional
     public void delete(long id) {
-        bookDAO.delete(id);
+        booksChanged(bookDAO.delete(id));
+    }
+
+    @Override
+    @Transactional
+    public int deleteAll(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return booksChanged(bookDAO.deleteAllByIds(ids));
+    }
+
+    @Override
+    @Transactional
+    public int deleteByAuthor(String authorName) {
+        return booksChanged(bookDAO.deleteByAuthor(findAuthor(authorName).getId()));
+    }
+
+    @Override
+    @Transactional
+    public int deleteByGenre(String genreName) {
+        return booksChanged(bookDAO.deleteByGenre(findGenre(genreName).getId()));
+    }
+
+    /**
+     * Переносит все книги одного автора на другого одним update, возвращает количество измененных книг
+     */
+    @Override
+    @Transactional
+    public int reassignAuthor(String fromAuthorName, String toAuthorName) {
+        final var from = findAuthor(fromAuthorName);
+        final var to = findAuthor(toAuthorName);
+        if (from.getId() == to.getId()) {
+            return 0;
+        }
+        return booksChanged(bookDAO.reassignAuthor(from.getId(), to.getId()));
+    }
+
+    @Override
+    @Transactional
+    public int reassignGenre(String fromGenreName, String toGenreName) {
+        final var from = findGenre(fromGenreName);
+        final var to = findGenre(toGenreName);
+        if (from.getId() == to.getId()) {
+            return 0;
+        }
+        return booksChanged(bookDAO.reassignGenre(from.getId(), to.getId()));
+    }
+
+    @Override
+    @Transactional
+    public int rebuildReadModel() {
+        return bookDAO.rebuildReadModel();
+    }
+
+    /**
+     * Случайная пауза до library.book-update.retry-backoff, чтобы конфликтующие изменения не повторялись одновременно
+     */
+    private void pauseBeforeRetry() {
+        if (retryBackoffNanos > 0) {
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(retryBackoffNanos) + 1);
+        }
+    }
+
+    /**
+     * Сообщает слушателям (например, кэшу агрегатов) об изменении книг, если что-то изменилось
+     */
+    private int booksChanged(int books) {
+        if (books > 0) {
+            eventPublisher.publishEvent(new BooksChangedEvent(books));
+        }
+        return books;
+    }
+
+    /**
+     * Имена через {@link #NAMES_SEPARATOR} без пробелов по краям и повторов, в порядке указания
+     */
+    private static List<String> splitNames(String names) {
+        return Arrays.stream(names.split(NAMES_SEPARATOR))
+                .map(String::trim)
+                .filter(StringUtils::isNotEmpty)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Авторы книги; при library.reference-data.auto-create отсутствующие создаются
+     */
+    private List<Author> findAuthors(String authorNames) {
+        final var authors = splitNames(authorNames).stream()
+                .map(name -> autoCreate ? authorDAO.getOrCreate(name) : findAuthor(name))
+                .collect(Collectors.toList());
+        Preconditions.checkArgument(!authors.isEmpty(), "имя автора не может быть пустым");
+        return authors;
+    }
+
+    private List<Genre> findGenres(String genreNames) {
+        final var genres = splitNames(genreNames).stream()
+                .map(name -> autoCreate ? genreDAO.getOrCreate(name) : findGenre(name))
+                .collect(Collectors.toList());
+        Preconditions.checkArgument(!genres.isEmpty(), "имя жанра не может быть пустым");
+        return genres;
+    }
+
+    private Author findAuthor(String authorName) {
+        return authorDAO.findByName(authorName)
+                .orElseThrow(() -> new NotFoundException("отсутствует автор с именем " + authorName));
+    }
+
+    private Genre findGenre(String genreName) {
+        return genreDAO.findByName(genreName)
+                .orElseThrow(() -> new NotFoundException("отсутствует жанр с именем " + genreName));
     }
 }
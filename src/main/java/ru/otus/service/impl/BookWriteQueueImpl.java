@@ -0,0 +1,264 @@
+package ru.otus.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.otus.config.LibraryProperties;
+import ru.otus.entity.Book;
+import ru.otus.service.BookService;
+import ru.otus.service.BookWriteQueue;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Очередь отложенной записи. Операции копятся в ограниченной очереди, фоновый поток забирает их пачками
+ * до library.write-behind.batch-size штук, ожидая добора пачки не дольше flush-interval, и применяет
+ * пачку через BookService в одной транзакции. Если транзакция пачки откатилась, операции пачки повторяются
+ * по одной, чтобы ошибка в одной операции не отменяла остальные.
+ * При заполненной очереди вызывающий поток ждет освобождения места не дольше offer-timeout, затем
+ * получает future с RejectedExecutionException. Метрики пачки записываются до завершения ее future, пустые
+ * операции flush и остановки в метрики не попадают и транзакцию не открывают.
+ * При остановке приложения очередь дописывается до конца;
+ * операции, пришедшие после остановки, в том числе ждавшие места в очереди, выполняются или отклоняются,
+ * но их future всегда завершается
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "library.write-behind", name = "enabled", havingValue = "true")
+public class BookWriteQueueImpl implements BookWriteQueue {
+    public static final String FLUSH_TIMER = "library.write-behind.flush";
+    public static final String LATENCY_TIMER = "library.write-behind.latency";
+    public static final String BATCH_SIZE_NAME = "library.write-behind.batch.size";
+    public static final String QUEUE_SIZE_NAME = "library.write-behind.queue.size";
+    public static final String REJECTED_NAME = "library.write-behind.rejected";
+    public static final String FAILED_NAME = "library.write-behind.failed";
+
+    private final BookService bookService;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<Mutation<?>> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutNanos;
+    private final long shutdownTimeoutMillis;
+    private final Timer flushTimer;
+    private final Timer latencyTimer;
+    private final DistributionSummary batchSizeSummary;
+    private final Counter rejected;
+    private final Counter failed;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    public BookWriteQueueImpl(BookService bookService,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              LibraryProperties libraryProperties) {
+        final var properties = libraryProperties.getWriteBehind();
+        this.bookService = bookService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.batchSize = properties.getBatchSize();
+        this.flushIntervalNanos = properties.getFlushInterval().toNanos();
+        this.offerTimeoutNanos = properties.getOfferTimeout().toNanos();
+        this.shutdownTimeoutMillis = properties.getShutdownTimeout().toMillis();
+        this.flushTimer = Timer.builder(FLUSH_TIMER)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.latencyTimer = Timer.builder(LATENCY_TIMER)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.batchSizeSummary = DistributionSummary.builder(BATCH_SIZE_NAME).register(meterRegistry);
+        this.rejected = Counter.builder(REJECTED_NAME).register(meterRegistry);
+        this.failed = Counter.builder(FAILED_NAME).register(meterRegistry);
+        Gauge.builder(QUEUE_SIZE_NAME, queue, BlockingQueue::size).register(meterRegistry);
+        this.worker = new Thread(this::run, "book-write-behind");
+        this.worker.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        // пустая операция будит поток, ожидающий добора пачки; в заполненную очередь она встает, когда поток
+        // разберет место, а до тех пор поток и не ждет: poll на непустой очереди возвращается сразу
+        final long deadline = System.currentTimeMillis() + shutdownTimeoutMillis;
+        queue.offer(Mutation.marker(), shutdownTimeoutMillis, TimeUnit.MILLISECONDS);
+        worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+        if (worker.isAlive()) {
+            log.warn("Очередь записи не дописана за {} мс, осталось операций: {}", shutdownTimeoutMillis, queue.size());
+            worker.interrupt();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Book> create(String name, String author, String genre) {
+        return enqueue(new Mutation<>(service -> service.create(name, author, genre)));
+    }
+
+    @Override
+    public CompletableFuture<Book> update(long id, String name, String author, String genre) {
+        return enqueue(new Mutation<>(service -> service.update(id, name, author, genre)));
+    }
+
+    @Override
+    public CompletableFuture<Void> flush() {
+        return enqueue(Mutation.marker());
+    }
+
+    @Override
+    public int getPending() {
+        return queue.size();
+    }
+
+    private <T> CompletableFuture<T> enqueue(Mutation<T> mutation) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("очередь записи остановлена"));
+        }
+        try {
+            if (!queue.offer(mutation, offerTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                rejected.increment();
+                return CompletableFuture.failedFuture(new RejectedExecutionException("очередь записи заполнена"));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(ex);
+        }
+        // очередь могли остановить, пока операция ждала места: если поток уже разобрал очередь в последний раз,
+        // операцию никто не выполнит. Удалось убрать ее из очереди - она отклоняется, не удалось - ее забрал
+        // поток и сам завершит future
+        if (!running && queue.remove(mutation)) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("очередь записи остановлена"));
+        }
+        return mutation.future;
+    }
+
+    private void run() {
+        final var batch = new ArrayList<Mutation<?>>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                final var first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fill(batch, System.nanoTime() + flushIntervalNanos);
+                flush(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        final var rest = new ArrayList<Mutation<?>>();
+        queue.drainTo(rest);
+        rest.forEach(mutation -> mutation.future.completeExceptionally(
+                new RejectedExecutionException("очередь записи остановлена")));
+    }
+
+    private void fill(List<Mutation<?>> batch, long deadline) throws InterruptedException {
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            final long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                return;
+            }
+            final var next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * Записывает операции пачки и только после записи метрик завершает future всех операций пачки
+     */
+    private void flush(List<Mutation<?>> batch) {
+        final var writes = new ArrayList<Mutation<?>>(batch.size());
+        for (var mutation : batch) {
+            if (!mutation.isMarker()) {
+                writes.add(mutation);
+            }
+        }
+        if (!writes.isEmpty()) {
+            write(writes);
+        }
+        batch.forEach(Mutation::complete);
+    }
+
+    private void write(List<Mutation<?>> writes) {
+        final long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> writes.forEach(mutation -> mutation.apply(bookService)));
+        } catch (RuntimeException batchError) {
+            log.debug("Пачка из {} операций откатилась, повтор по одной", writes.size(), batchError);
+            for (var mutation : writes) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> mutation.apply(bookService));
+                } catch (RuntimeException ex) {
+                    failed.increment();
+                    mutation.error = ex;
+                }
+            }
+        }
+        final long end = System.nanoTime();
+        flushTimer.record(end - start, TimeUnit.NANOSECONDS);
+        batchSizeSummary.record(writes.size());
+        writes.forEach(mutation -> latencyTimer.record(end - mutation.enqueuedNanos, TimeUnit.NANOSECONDS));
+    }
+
+    private static final class Mutation<T> {
+        private final Function<BookService, T> action;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final long enqueuedNanos = System.nanoTime();
+        private T result;
+        private RuntimeException error;
+
+        private Mutation(Function<BookService, T> action) {
+            this.action = action;
+        }
+
+        /**
+         * Пустая операция: ничего не пишет, ее future завершается вместе с пачкой, в которую она попала
+         */
+        private static <T> Mutation<T> marker() {
+            return new Mutation<>(null);
+        }
+
+        private boolean isMarker() {
+            return action == null;
+        }
+
+        private void apply(BookService bookService) {
+            result = action.apply(bookService);
+        }
+
+        private void complete() {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.otus.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разбор одной строки CSV/TSV: поля разделены delimiter, поле может быть заключено в двойные кавычки,
+ * кавычка внутри такого поля экранируется удвоением
+ */
+class DelimitedLineParser {
+    private static final char QUOTE = '"';
+
+    private final char delimiter;
+
+    DelimitedLineParser(char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    List<String> parse(String line) {
+        final var fields = new ArrayList<String>(3);
+        final var field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (quoted) {
+                if (c == QUOTE && i + 1 < line.length() && line.charAt(i + 1) == QUOTE) {
+                    field.append(QUOTE);
+                    i++;
+                } else if (c == QUOTE) {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == QUOTE) {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+}
@@ -0,0 +1,110 @@
+package ru.otus.service.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Разбор строки скрипта в синтаксисе консоли: слова разделены пробелами, слово может быть заключено
+ * в одинарные или двойные кавычки, {@code --name value} - именованный параметр
+ */
+class ScriptLineParser {
+    private static final String OPTION_PREFIX = "--";
+
+    ScriptLine parse(String line) {
+        final var words = split(line);
+        if (words.isEmpty()) {
+            throw new IllegalArgumentException("пустая команда");
+        }
+        final Map<String, String> options = new HashMap<>();
+        final var positional = new ArrayList<String>();
+        for (int i = 1; i < words.size(); i++) {
+            final var word = words.get(i);
+            if (word.startsWith(OPTION_PREFIX) && i + 1 < words.size()) {
+                options.put(word.substring(OPTION_PREFIX.length()), words.get(++i));
+            } else {
+                positional.add(word);
+            }
+        }
+        return new ScriptLine(words.get(0), options, positional);
+    }
+
+    private List<String> split(String line) {
+        final var words = new ArrayList<String>();
+        final var word = new StringBuilder();
+        char quote = 0;
+        boolean inWord = false;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    word.append(c);
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+                inWord = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inWord) {
+                    words.add(word.toString());
+                    word.setLength(0);
+                    inWord = false;
+                }
+            } else {
+                word.append(c);
+                inWord = true;
+            }
+        }
+        if (quote != 0) {
+            throw new IllegalArgumentException("не закрыта кавычка");
+        }
+        if (inWord) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    /**
+     * Команда скрипта. Параметры сопоставляются как в консоли: сначала по имени,
+     * оставшиеся параметры по порядку берутся из позиционных значений
+     */
+    static class ScriptLine {
+        private final String command;
+        private final Map<String, String> arguments = new HashMap<>();
+        private final Map<String, String> options;
+        private final List<String> positional;
+
+        ScriptLine(String command, Map<String, String> options, List<String> positional) {
+            this.command = command;
+            this.options = options;
+            this.positional = positional;
+        }
+
+        String getCommand() {
+            return command;
+        }
+
+        ScriptLine bind(String... parameters) {
+            int next = 0;
+            for (var parameter : parameters) {
+                if (options.containsKey(parameter)) {
+                    arguments.put(parameter, options.get(parameter));
+                } else if (next < positional.size()) {
+                    arguments.put(parameter, positional.get(next++));
+                }
+            }
+            return this;
+        }
+
+        String get(String parameter) {
+            return arguments.getOrDefault(parameter, "");
+        }
+
+        long getLong(String parameter) {
+            final var value = get(parameter);
+            return value.isEmpty() ? 0 : Long.parseLong(value);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+merge into authors(author_id, author_name) key (author_id) values (1, 'А.С. Пушкин');
+merge into authors(author_id, author_name) key (author_id) values (2, 'Дж.Дж. Мартин');
+merge into genres(genre_id, genre_name) key (genre_id) values (1, 'Сказка');
+merge into genres(genre_id, genre_name) key (genre_id) values (2, 'Фэнтези');
@@ -1,4 +1,4 @@
-insert into authors values(1, 'А.С. Пушкин');
-insert into authors values(2, 'Дж.Дж. Мартин');
-insert into genres values (1, 'Сказка');
-insert into genres values (2, 'Фэнтези');
\ No newline at end of file
+insert into authors(author_id, author_name) values (1, 'А.С. Пушкин');
+insert into authors(author_id, author_name) values (2, 'Дж.Дж. Мартин');
+insert into genres(genre_id, genre_name) values (1, 'Сказка');
+insert into genres(genre_id, genre_name) values (2, 'Фэнтези');
\ No newline at end of file
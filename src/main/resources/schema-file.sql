@@ -0,0 +1,104 @@
+-- схема для постоянной базы (профиль file): выполняется при каждом запуске и не удаляет данные
+CREATE TABLE IF NOT EXISTS authors
+(
+    author_id   BIGINT PRIMARY KEY auto_increment,
+    author_name VARCHAR(255)
+);
+-- уникальный индекс заменяет прежний неуникальный; при повторяющихся именах в старой базе
+-- создание индекса упадет, дубликаты нужно объединить вручную
+CREATE UNIQUE INDEX IF NOT EXISTS authors_author_name_uq ON authors (author_name);
+DROP INDEX IF EXISTS authors_author_name_idx;
+
+CREATE TABLE IF NOT EXISTS genres
+(
+    genre_id   BIGINT PRIMARY KEY auto_increment,
+    genre_name VARCHAR(255)
+);
+CREATE UNIQUE INDEX IF NOT EXISTS genres_genre_name_uq ON genres (genre_name);
+DROP INDEX IF EXISTS genres_genre_name_idx;
+
+CREATE TABLE IF NOT EXISTS books
+(
+    book_id   BIGINT PRIMARY KEY auto_increment,
+    book_name VARCHAR(255),
+    author_id BIGINT,
+    genre_id  BIGINT,
+    version   BIGINT DEFAULT 0 NOT NULL,
+    -- копия названия для поиска без учета регистра, индекс по ней работает и для префиксного like
+    book_name_ci VARCHAR_IGNORECASE(255) AS book_name,
+    foreign key (author_id) references authors(author_id),
+    foreign key (genre_id) references genres(genre_id)
+);
+CREATE INDEX IF NOT EXISTS books_book_name_idx ON books (book_name);
+CREATE INDEX IF NOT EXISTS books_book_name_ci_idx ON books (book_name_ci);
+-- база создана до появления версий книг
+ALTER TABLE books ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+
+CREATE TABLE IF NOT EXISTS book_authors
+(
+    book_id   BIGINT,
+    author_id BIGINT,
+    position  INT,
+    -- ключ по порядку: связи страницы книг читаются по нему без сортировки
+    primary key (book_id, position),
+    unique (book_id, author_id),
+    foreign key (book_id) references books(book_id) on delete cascade,
+    foreign key (author_id) references authors(author_id)
+);
+CREATE INDEX IF NOT EXISTS book_authors_author_id_idx ON book_authors (author_id);
+
+CREATE TABLE IF NOT EXISTS book_genres
+(
+    book_id  BIGINT,
+    genre_id BIGINT,
+    position INT,
+    primary key (book_id, position),
+    unique (book_id, genre_id),
+    foreign key (book_id) references books(book_id) on delete cascade,
+    foreign key (genre_id) references genres(genre_id)
+);
+CREATE INDEX IF NOT EXISTS book_genres_genre_id_idx ON book_genres (genre_id);
+-- книги без связей (база создана до появления book_authors/book_genres): основные автор и жанр из books
+INSERT INTO book_authors(book_id, author_id, position)
+SELECT b.book_id, b.author_id, 0
+FROM books b
+WHERE NOT EXISTS(SELECT 1 FROM book_authors ba WHERE ba.book_id = b.book_id);
+INSERT INTO book_genres(book_id, genre_id, position)
+SELECT b.book_id, b.genre_id, 0
+FROM books b
+WHERE NOT EXISTS(SELECT 1 FROM book_genres bg WHERE bg.book_id = b.book_id);
+
+CREATE TABLE IF NOT EXISTS book_view
+(
+    book_id     BIGINT PRIMARY KEY,
+    book_name   VARCHAR(255),
+    author_id   BIGINT,
+    author_name VARCHAR(255),
+    genre_id    BIGINT,
+    genre_name  VARCHAR(255),
+    version     BIGINT DEFAULT 0 NOT NULL
+);
+ALTER TABLE book_view ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+CREATE INDEX IF NOT EXISTS book_view_book_name_idx ON book_view (book_name);
+CREATE INDEX IF NOT EXISTS book_view_author_id_idx ON book_view (author_id);
+CREATE INDEX IF NOT EXISTS book_view_genre_id_idx ON book_view (genre_id);
+-- книги, которых нет в book_view (например, база создана до ее появления); измененные при выключенном
+-- library.read-model.enabled книги этим не исправляются, для них есть команда read-model-rebuild
+INSERT INTO book_view(book_id, book_name, author_id, author_name, genre_id, genre_name, version)
+SELECT b.book_id, b.book_name, a.author_id, a.author_name, g.genre_id, g.genre_name, b.version
+FROM books b
+         INNER JOIN authors a ON b.author_id = a.author_id
+         INNER JOIN genres g ON b.genre_id = g.genre_id
+WHERE NOT EXISTS(SELECT 1 FROM book_view v WHERE v.book_id = b.book_id);
+
+CREATE TABLE IF NOT EXISTS book_changes
+(
+    change_id   BIGINT PRIMARY KEY auto_increment,
+    book_id     BIGINT      NOT NULL,
+    change_type VARCHAR(16) NOT NULL
+);
+
+CREATE ALIAS IF NOT EXISTS FT_INIT FOR "org.h2.fulltext.FullText.init";
+CALL FT_INIT();
+CREATE ALIAS IF NOT EXISTS FT_CREATE_INDEX_IF_MISSING FOR "ru.otus.dao.impl.FullTextIndex.createIfMissing";
+CALL FT_CREATE_INDEX_IF_MISSING('PUBLIC', 'BOOKS', 'BOOK_NAME');
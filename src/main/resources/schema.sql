@@ -4,6 +4,8 @@ CREATE TABLE authors
     author_id   BIGINT PRIMARY KEY auto_increment,
     author_name VARCHAR(255)
 );
+-- уникальность имени - основа getOrCreate: параллельная вставка того же имени получает ошибку дубликата
+CREATE UNIQUE INDEX authors_author_name_uq ON authors (author_name);
 
 DROP TABLE IF EXISTS genres;
 CREATE TABLE genres
@@ -11,7 +13,11 @@ CREATE TABLE genres
     genre_id   BIGINT PRIMARY KEY auto_increment,
     genre_name VARCHAR(255)
 );
+CREATE UNIQUE INDEX genres_genre_name_uq ON genres (genre_name);
 
+DROP TABLE IF EXISTS book_view;
+DROP TABLE IF EXISTS book_authors;
+DROP TABLE IF EXISTS book_genres;
 DROP TABLE IF EXISTS books;
 CREATE TABLE books
 (
@@ -19,6 +25,69 @@ CREATE TABLE books
     book_name VARCHAR(255),
     author_id BIGINT,
     genre_id  BIGINT,
+    -- растет на каждом изменении книги, по ней update отличает изменения параллельных транзакций
+    version   BIGINT DEFAULT 0 NOT NULL,
+    -- копия названия для поиска без учета регистра, индекс по ней работает и для префиксного like
+    book_name_ci VARCHAR_IGNORECASE(255) AS book_name,
     foreign key (author_id) references authors(author_id),
     foreign key (genre_id) references genres(genre_id)
 );
+CREATE INDEX books_book_name_idx ON books (book_name);
+CREATE INDEX books_book_name_ci_idx ON books (book_name_ci);
+
+-- все авторы и жанры книги, position - порядок указания; строка с position = 0 совпадает с books.author_id/genre_id
+CREATE TABLE book_authors
+(
+    book_id   BIGINT,
+    author_id BIGINT,
+    position  INT,
+    -- ключ по порядку: связи страницы книг читаются по нему без сортировки
+    primary key (book_id, position),
+    unique (book_id, author_id),
+    foreign key (book_id) references books(book_id) on delete cascade,
+    foreign key (author_id) references authors(author_id)
+);
+CREATE INDEX book_authors_author_id_idx ON book_authors (author_id);
+
+CREATE TABLE book_genres
+(
+    book_id  BIGINT,
+    genre_id BIGINT,
+    position INT,
+    primary key (book_id, position),
+    unique (book_id, genre_id),
+    foreign key (book_id) references books(book_id) on delete cascade,
+    foreign key (genre_id) references genres(genre_id)
+);
+CREATE INDEX book_genres_genre_id_idx ON book_genres (genre_id);
+
+-- денормализованная копия books с именами автора и жанра для чтения без join (library.read-model.enabled),
+-- заполняется BookDAOJdbc при каждом изменении книг
+CREATE TABLE book_view
+(
+    book_id     BIGINT PRIMARY KEY,
+    book_name   VARCHAR(255),
+    author_id   BIGINT,
+    author_name VARCHAR(255),
+    genre_id    BIGINT,
+    genre_name  VARCHAR(255),
+    version     BIGINT DEFAULT 0 NOT NULL
+);
+CREATE INDEX book_view_book_name_idx ON book_view (book_name);
+CREATE INDEX book_view_author_id_idx ON book_view (author_id);
+CREATE INDEX book_view_genre_id_idx ON book_view (genre_id);
+
+-- журнал изменений книг (library.change-feed.enabled): пишется в транзакции изменения, по нему
+-- слушатели ленты изменений после перезапуска дочитывают пропущенное
+DROP TABLE IF EXISTS book_changes;
+CREATE TABLE book_changes
+(
+    change_id   BIGINT PRIMARY KEY auto_increment,
+    book_id     BIGINT      NOT NULL,
+    change_type VARCHAR(16) NOT NULL
+);
+
+-- полнотекстовый индекс H2 по названию книги, поддерживается триггерами на вставку/изменение/удаление
+CREATE ALIAS IF NOT EXISTS FT_INIT FOR "org.h2.fulltext.FullText.init";
+CALL FT_INIT();
+CALL FT_CREATE_INDEX('PUBLIC', 'BOOKS', 'BOOK_NAME');
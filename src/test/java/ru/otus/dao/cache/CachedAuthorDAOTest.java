@@ -0,0 +1,70 @@
+package ru.otus.dao.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcOperations;
+import ru.otus.config.LibraryConfig;
+import ru.otus.dao.impl.AuthorDAOJdbc;
+import ru.otus.entity.Author;
+import ru.otus.mapper.AuthorRowMapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Кэширующее Dao для работы с авторами")
+@JdbcTest
+@Import({CachedAuthorDAO.class, AuthorDAOJdbc.class, AuthorRowMapper.class, LibraryConfig.class})
+class CachedAuthorDAOTest {
+    private static final Author AUTHOR = new Author(2, "Дж.Дж. Мартин");
+
+    @Autowired
+    private CachedAuthorDAO authorDAO;
+
+    @Autowired
+    private JdbcOperations jdbcOperations;
+
+    @DisplayName("Повторный поиск по имени и по id обслуживается из кэша")
+    @Test
+    void findByName_Cached() {
+        final var cache = authorDAO.getCache();
+        cache.invalidateAll();
+        final var before = cache.stats();
+
+        assertThat(authorDAO.findByName(AUTHOR.getName())).contains(AUTHOR);
+        jdbcOperations.update("update authors set author_name = 'Другое имя' where author_id = 2");
+        assertThat(authorDAO.findByName(AUTHOR.getName())).contains(AUTHOR);
+        assertThat(authorDAO.findById(AUTHOR.getId())).contains(AUTHOR);
+
+        final var stats = cache.stats().minus(before);
+        assertThat(stats.hitCount()).isEqualTo(2);
+        assertThat(stats.missCount()).isEqualTo(1);
+    }
+
+    @DisplayName("Запись в таблицу сбрасывает кэш по имени")
+    @Test
+    void save_Invalidates() {
+        final var name = "Л.Н. Толстой";
+        assertThat(authorDAO.findByName(name)).isEmpty();
+
+        final var id = authorDAO.save(new Author(0, name));
+
+        assertThat(authorDAO.findByName(name)).contains(new Author(id, name));
+    }
+
+    @DisplayName("Созданный автор попадает в кэш только после фиксации транзакции")
+    @Test
+    void getOrCreate_CachedAfterCommit() {
+        final var name = "Л.Н. Толстой";
+        final var cache = authorDAO.getCache();
+        cache.invalidateAll();
+
+        final var created = authorDAO.getOrCreate(name);
+
+        assertThat(created.getName()).isEqualTo(name);
+        assertThat(cache.size()).isZero();
+        assertThat(authorDAO.getOrCreate(AUTHOR.getName())).isEqualTo(AUTHOR);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+}
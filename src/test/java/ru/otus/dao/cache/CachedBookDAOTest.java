@@ -0,0 +1,180 @@
+package ru.otus.dao.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.mockito.Mockito;
+import org.mockito.stubbing.Answer;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.otus.config.LibraryConfig;
+import ru.otus.config.LibraryProperties;
+import ru.otus.dao.impl.BookDAOJdbc;
+import ru.otus.entity.Author;
+import ru.otus.entity.Book;
+import ru.otus.entity.Genre;
+import ru.otus.mapper.AuthorRowMapper;
+import ru.otus.mapper.BookRowMapper;
+import ru.otus.mapper.GenreRowMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Кэширующее Dao для работы с книгами")
+@JdbcTest(properties = "library.book-cache.enabled=true")
+@Import({CachedBookDAO.class, BookDAOJdbc.class, BookRowMapper.class, AuthorRowMapper.class, GenreRowMapper.class,
+        LibraryConfig.class})
+class CachedBookDAOTest {
+    private static final long ID = 1;
+    private static final Author AUTHOR = new Author(2, "Дж.Дж. Мартин");
+    private static final Genre GENRE = new Genre(2, "Фэнтези");
+    private static final Book TEST_BOOK = new Book(ID, "Песнь льда и Пламени", AUTHOR, GENRE);
+
+    @Autowired
+    private CachedBookDAO bookDAO;
+
+    @Autowired
+    private JdbcOperations jdbcOperations;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private LibraryProperties libraryProperties;
+
+    @BeforeEach
+    void setUp() {
+        bookDAO.getCache().invalidateAll();
+    }
+
+    @DisplayName("Повторный поиск по id обслуживается из кэша и возвращает копию")
+    @Test
+    void findById_Cached() {
+        final var before = bookDAO.getCache().stats();
+        final var first = bookDAO.findById(ID).orElseThrow();
+        first.setName("Измененное название");
+        jdbcOperations.update("update books set book_name = 'Другое название' where book_id = 1");
+
+        final var second = bookDAO.findById(ID).orElseThrow();
+
+        assertThat(second).usingRecursiveComparison().isEqualTo(TEST_BOOK);
+        assertThat(bookDAO.getCache().stats().minus(before).hitCount()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", CachedBookDAO.CACHE_NAME).tag("result", "hit")
+                .functionCounter().count()).isEqualTo(bookDAO.getCache().stats().hitCount());
+    }
+
+    @DisplayName("Поиск по списку id берет из БД только отсутствующие в кэше книги")
+    @Test
+    void findAllByIds_PartiallyCached() {
+        final var secondId = bookDAO.save(new Book("Игра Престолов", AUTHOR, GENRE));
+        bookDAO.findById(ID);
+
+        final var books = bookDAO.findAllByIds(List.of(secondId, ID, 1000L));
+
+        assertThat(books).extracting(Book::getId).containsExactly(secondId, ID);
+        assertThat(bookDAO.getCache().size()).isEqualTo(2);
+    }
+
+    @DisplayName("Обновление, удаление и перенос книг автора сбрасывают кэш")
+    @Test
+    void update_Invalidates() {
+        final var otherAuthor = new Author(1, "А.С. Пушкин");
+        bookDAO.findById(ID);
+        bookDAO.update(new Book(ID, "Игра Престолов", AUTHOR, GENRE));
+        assertThat(bookDAO.findById(ID).orElseThrow().getName()).isEqualTo("Игра Престолов");
+
+        bookDAO.reassignAuthor(AUTHOR.getId(), otherAuthor.getId());
+        assertThat(bookDAO.findById(ID).orElseThrow().getAuthor()).isEqualTo(otherAuthor);
+
+        bookDAO.delete(ID);
+        assertThat(bookDAO.findById(ID)).isEmpty();
+    }
+
+    @DisplayName("Параллельные чтения и обновления оставляют в кэше актуальную книгу")
+    @Test
+    void concurrentAccess() throws Exception {
+        // потоки пула работают вне транзакции теста, поэтому книга для них создается и удаляется там же;
+        // обновление книги со связями - несколько запросов, поэтому каждое в своей транзакции, как в сервисе
+        final var transactionTemplate = new TransactionTemplate(transactionManager);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final long id = executor.submit(() -> bookDAO.save(new Book("Игра Престолов", AUTHOR, GENRE)))
+                .get(30, TimeUnit.SECONDS);
+        final var futures = new ArrayList<Future<?>>();
+        for (int thread = 0; thread < 8; thread++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    if (ThreadLocalRandom.current().nextInt(10) == 0) {
+                        final var name = "Название " + i;
+                        transactionTemplate.executeWithoutResult(
+                                status -> bookDAO.update(new Book(id, name, AUTHOR, GENRE)));
+                    } else {
+                        assertThat(bookDAO.findById(id)).isPresent();
+                    }
+                }
+            }));
+        }
+        for (var future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        final var last = executor.submit(() -> {
+            bookDAO.update(new Book(id, "Итоговое название", AUTHOR, GENRE));
+            final var name = bookDAO.findById(id).orElseThrow().getName();
+            bookDAO.delete(id);
+            return name;
+        }).get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertThat(last).isEqualTo("Итоговое название");
+    }
+
+    @DisplayName("Книга, прочитанная из БД до сброса ее записи, в кэш не кладется")
+    @Test
+    void findById_StaleLoadNotCached() {
+        final var jdbcDAO = Mockito.mock(BookDAOJdbc.class);
+        final var cachedDAO = new CachedBookDAO(jdbcDAO, libraryProperties, new SimpleMeterRegistry());
+        final var stale = new Book(ID, "Старое название", AUTHOR, GENRE);
+        // изменение книги завершается, пока читатель держит строку, прочитанную до него
+        final Answer<Object> updateWhileLoading = invocation -> {
+            cachedDAO.update(new Book(ID, "Новое название", AUTHOR, GENRE));
+            return invocation.getMethod().getName().equals("findById") ? Optional.of(stale) : List.of(stale);
+        };
+        Mockito.when(jdbcDAO.findById(ID)).thenAnswer(updateWhileLoading);
+        Mockito.when(jdbcDAO.findAllByIds(List.of(ID))).thenAnswer(updateWhileLoading);
+
+        assertThat(cachedDAO.findById(ID)).contains(stale);
+        assertThat(cachedDAO.getCache().getIfPresent(ID)).isNull();
+        assertThat(cachedDAO.findAllByIds(List.of(ID))).containsExactly(stale);
+        assertThat(cachedDAO.getCache().getIfPresent(ID)).isNull();
+
+        Mockito.doReturn(Optional.of(stale)).when(jdbcDAO).findById(ID);
+        cachedDAO.findById(ID);
+        assertThat(cachedDAO.getCache().getIfPresent(ID)).usingRecursiveComparison().isEqualTo(stale);
+    }
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
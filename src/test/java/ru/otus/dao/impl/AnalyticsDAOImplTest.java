@@ -0,0 +1,60 @@
+package ru.otus.dao.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcOperations;
+import ru.otus.dto.CountByName;
+
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Dao для агрегатов по книгам")
+@JdbcTest
+@Import(AnalyticsDAOJdbc.class)
+class AnalyticsDAOImplTest {
+    @Autowired
+    private AnalyticsDAOJdbc analyticsDAO;
+
+    @Autowired
+    private JdbcOperations jdbcOperations;
+
+    @DisplayName("Количество книг по авторам, включая авторов без книг")
+    @Test
+    void forEachBooksPerAuthor() {
+        addBook(100, "Игра Престолов", 2, 2);
+
+        final var counts = new ArrayList<CountByName>();
+        analyticsDAO.forEachBooksPerAuthor(counts::add);
+
+        assertThat(counts).containsExactly(
+                new CountByName(1, "А.С. Пушкин", 0),
+                new CountByName(2, "Дж.Дж. Мартин", 2)
+        );
+        assertThat(analyticsDAO.countBooks()).isEqualTo(2);
+    }
+
+    @DisplayName("Жанры и авторы с наибольшим количеством книг, книга считается у каждого соавтора")
+    @Test
+    void topGenres() {
+        addBook(100, "Сказка о рыбаке и рыбке", 1, 1);
+        addBook(101, "Сказка о царе Салтане", 1, 1);
+        jdbcOperations.update("insert into book_authors(book_id, author_id, position) values (101, 2, 1)");
+
+        assertThat(analyticsDAO.topGenres(1)).containsExactly(new CountByName(1, "Сказка", 2));
+        assertThat(analyticsDAO.topAuthors(5)).containsExactly(
+                new CountByName(1, "А.С. Пушкин", 2),
+                new CountByName(2, "Дж.Дж. Мартин", 2)
+        );
+    }
+
+    private void addBook(long id, String name, long authorId, long genreId) {
+        jdbcOperations.update("insert into books(book_id, book_name, author_id, genre_id) values (?, ?, ?, ?)",
+                id, name, authorId, genreId);
+        jdbcOperations.update("insert into book_authors(book_id, author_id, position) values (?, ?, 0)", id, authorId);
+        jdbcOperations.update("insert into book_genres(book_id, genre_id, position) values (?, ?, 0)", id, genreId);
+    }
+}
@@ -0,0 +1,90 @@
+package ru.otus.dao.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.otus.entity.Author;
+import ru.otus.mapper.AuthorRowMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Dao для работы с авторами")
+@JdbcTest
+@Import({AuthorDAOJdbc.class, AuthorRowMapper.class})
+class AuthorDAOImplTest {
+    private static final Author AUTHOR = new Author(2, "Дж.Дж. Мартин");
+
+    @Autowired
+    private AuthorDAOJdbc authorDAO;
+
+    @Autowired
+    private JdbcOperations jdbcOperations;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DisplayName("Получение существующего автора и создание нового")
+    @Test
+    void getOrCreate() {
+        assertThat(authorDAO.getOrCreate(AUTHOR.getName())).isEqualTo(AUTHOR);
+
+        final var created = authorDAO.getOrCreate("Л.Н. Толстой");
+
+        assertThat(authorDAO.findByName("Л.Н. Толстой")).contains(created);
+        assertThat(authorDAO.getOrCreate("Л.Н. Толстой")).isEqualTo(created);
+    }
+
+    @DisplayName("Параллельные вызовы с одними именами получают одну запись на имя")
+    @Test
+    void getOrCreate_Concurrent() throws Exception {
+        // потоки пула работают в своих транзакциях вне транзакции теста, созданные авторы удаляются в конце
+        final var names = List.of("Автор А", "Автор Б", "Автор В");
+        final var transactionTemplate = new TransactionTemplate(transactionManager);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final var start = new CountDownLatch(1);
+        final Set<Author> results = ConcurrentHashMap.newKeySet();
+        final var futures = new ArrayList<Future<?>>();
+        for (int thread = 0; thread < 8; thread++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 50; i++) {
+                    final var name = names.get(i % names.size());
+                    results.add(transactionTemplate.execute(status -> authorDAO.getOrCreate(name)));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        final Integer rows;
+        try {
+            for (var future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            rows = jdbcOperations.queryForObject(
+                    "select count(*) from authors where author_name in (?, ?, ?)", Integer.class, names.toArray());
+        } finally {
+            executor.submit(() -> names.forEach(
+                    name -> jdbcOperations.update("delete from authors where author_name = ?", name)))
+                    .get(30, TimeUnit.SECONDS);
+            executor.shutdown();
+        }
+
+        assertThat(rows).isEqualTo(names.size());
+        assertThat(results).extracting(Author::getName).containsExactlyInAnyOrderElementsOf(names);
+    }
+}
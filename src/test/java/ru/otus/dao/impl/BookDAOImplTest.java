@@ -6,6 +6,11 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.otus.config.LibraryConfig;
+import ru.otus.dto.SearchMode;
 import ru.otus.entity.Author;
 import ru.otus.entity.Book;
 import ru.otus.entity.Genre;
@@ -13,21 +18,37 @@ import ru.otus.mapper.AuthorRowMapper;
 import ru.otus.mapper.BookRowMapper;
 import ru.otus.mapper.GenreRowMapper;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 @DisplayName("Dao для работы с книгами")
-@JdbcTest
-@Import({BookDAOJdbc.class, BookRowMapper.class, AuthorRowMapper.class, GenreRowMapper.class})
+@JdbcTest(properties = "library.jdbc.in-chunk-size=2")
+@Import({BookDAOJdbc.class, BookRowMapper.class, AuthorRowMapper.class, GenreRowMapper.class, LibraryConfig.class})
 class BookDAOImplTest {
     private static final long ID = 1;
     private static final String NAME = "Песнь льда и Пламени";
     private static final Author AUTHOR = new Author(2, "Дж.Дж. Мартин");
     private static final Genre GENRE = new Genre(2, "Фэнтези");
     private static final Book TEST_BOOK = new Book(ID, NAME, AUTHOR, GENRE);
+    private static final Author OTHER_AUTHOR = new Author(1, "А.С. Пушкин");
+    private static final Genre OTHER_GENRE = new Genre(1, "Сказка");
 
     @Autowired
     private BookDAOJdbc bookDAO;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcOperations jdbcOperations;
+
 
     @DisplayName("Поиск по ID")
     @Test
@@ -36,6 +57,20 @@ class BookDAOImplTest {
         assertThat(TEST_BOOK).usingRecursiveComparison().isEqualTo(book);
     }
 
+    @DisplayName("Поиск по списку ID несколькими пачками")
+    @Test
+    void findAllByIds() {
+        final var secondId = bookDAO.save(new Book("Игра Престолов", AUTHOR, GENRE));
+        final var thirdId = bookDAO.save(new Book("Битва королей", AUTHOR, GENRE));
+
+        final var books = bookDAO.findAllByIds(List.of(thirdId, 1000L, ID, thirdId, secondId));
+
+        assertThat(books).extracting(Book::getId).containsExactly(thirdId, ID, secondId);
+        assertThat(books.get(1)).usingRecursiveComparison().isEqualTo(TEST_BOOK);
+        assertThat(books.get(0).getAuthor()).isSameAs(books.get(2).getAuthor());
+        assertThat(bookDAO.findAllByIds(List.of())).isEmpty();
+    }
+
     @DisplayName("Поиск по названию книги")
     @Test
     void findByName() {
@@ -43,21 +78,158 @@ class BookDAOImplTest {
         assertThat(TEST_BOOK).usingRecursiveComparison().isEqualTo(book);
     }
 
+    @DisplayName("Поиск по названию в разных режимах")
+    @Test
+    void search() {
+        bookDAO.saveAll(List.of(
+                new Book("Игра Престолов", AUTHOR, GENRE),
+                new Book("Пир стервятников", AUTHOR, GENRE),
+                new Book("100%_книга", AUTHOR, GENRE)
+        ));
+
+        assertThat(bookDAO.search(NAME, SearchMode.EXACT, 10))
+                .extracting(Book::getName).containsExactly(NAME);
+        assertThat(bookDAO.search("Пи", SearchMode.PREFIX, 10))
+                .extracting(Book::getName).containsExactly("Пир стервятников");
+        assertThat(bookDAO.search("пи", SearchMode.PREFIX, 10)).isEmpty();
+        assertThat(bookDAO.search("100%_", SearchMode.PREFIX, 10))
+                .extracting(Book::getName).containsExactly("100%_книга");
+        assertThat(bookDAO.search("100__", SearchMode.PREFIX, 10)).isEmpty();
+        assertThat(bookDAO.search("пЕСНЬ", SearchMode.IGNORE_CASE, 10))
+                .extracting(Book::getName).containsExactly(NAME);
+        assertThat(bookDAO.search("престолов", SearchMode.FULL_TEXT, 10))
+                .extracting(Book::getName).containsExactly("Игра Престолов");
+        assertThat(bookDAO.search("льда пламени", SearchMode.FULL_TEXT, 10))
+                .extracting(Book::getName).containsExactly(NAME);
+        assertThat(bookDAO.search("П", SearchMode.PREFIX, 1)).hasSize(1);
+    }
+
+    @DisplayName("Постраничный поиск по id")
+    @Test
+    void findPage() {
+        bookDAO.saveAll(List.of(
+                new Book("Игра Престолов", AUTHOR, GENRE),
+                new Book("Битва королей", AUTHOR, GENRE)
+        ));
+
+        final var firstPage = bookDAO.findPage(0, 2);
+        assertThat(firstPage).extracting(Book::getName).containsExactly(NAME, "Игра Престолов");
+
+        final var secondPage = bookDAO.findPage(firstPage.get(1).getId(), 2);
+        assertThat(secondPage).extracting(Book::getName).containsExactly("Битва королей");
+    }
+
+    @DisplayName("Один экземпляр автора и жанра на все книги запроса")
+    @Test
+    void findPage_SharedReferences() {
+        bookDAO.save(new Book("Игра Престолов", AUTHOR, GENRE));
+
+        final var books = bookDAO.findPage(0, 10);
+
+        assertThat(books).hasSize(2);
+        assertThat(books.get(0).getAuthor()).isSameAs(books.get(1).getAuthor()).isEqualTo(AUTHOR);
+        assertThat(books.get(0).getGenre()).isSameAs(books.get(1).getGenre()).isEqualTo(GENRE);
+    }
+
+    @DisplayName("Потоковый обход всех книг")
+    @Test
+    void forEach() {
+        bookDAO.save(new Book("Игра Престолов", AUTHOR, GENRE));
+
+        final var books = new ArrayList<Book>();
+        bookDAO.forEach(0, books::add);
+
+        assertThat(books).extracting(Book::getName).containsExactly(NAME, "Игра Престолов");
+        assertThat(books.get(0)).usingRecursiveComparison().isEqualTo(TEST_BOOK);
+    }
+
+    @DisplayName("Потоковый обход при ленивом выполнении запросов H2: связи дочитываются при открытом курсоре")
+    @Test
+    void forEach_LazyQueryExecution() {
+        bookDAO.saveAll(List.of(
+                new Book("Сказки", List.of(OTHER_AUTHOR, AUTHOR), List.of(OTHER_GENRE)),
+                new Book("Еще сказки", AUTHOR, GENRE),
+                new Book("Новые сказки", List.of(OTHER_AUTHOR), List.of(OTHER_GENRE, GENRE)),
+                new Book("Последние сказки", OTHER_AUTHOR, OTHER_GENRE)
+        ));
+        final var expected = bookDAO.findPage(0, 10);
+
+        final var streamed = new ArrayList<Book>();
+        jdbcOperations.execute("set lazy_query_execution 1");
+        try {
+            bookDAO.forEach(0, streamed::add);
+        } finally {
+            jdbcOperations.execute("set lazy_query_execution 0");
+        }
+
+        assertThat(streamed).hasSize(5).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(expected);
+    }
+
 
     @DisplayName("Сохранение книги")
     @Test
     void save() {
-        long newId = 2;
-        final var newBook = new Book(newId, "Игра Престолов", AUTHOR, GENRE);
+        final var newBook = new Book("Игра Престолов", AUTHOR, GENRE);
 
-        assertThat(bookDAO.findById(newId).isPresent()).isFalse();
+        assertThat(bookDAO.findByName(newBook.getName())).isEmpty();
 
-        bookDAO.save(newBook);
+        final var newId = bookDAO.save(newBook);
+        newBook.setId(newId);
 
         final var savedBook = bookDAO.findById(newId).orElseThrow();
         assertThat(savedBook).usingRecursiveComparison().isEqualTo(newBook);
     }
 
+    @DisplayName("Сохранение и чтение книги с несколькими авторами и жанрами в порядке указания")
+    @Test
+    void save_CoAuthored() {
+        final var newBook = new Book("Сказки", List.of(OTHER_AUTHOR, AUTHOR), List.of(GENRE, OTHER_GENRE));
+
+        final var newId = bookDAO.save(newBook);
+        newBook.setId(newId);
+
+        assertThat(bookDAO.findById(newId).orElseThrow()).usingRecursiveComparison().isEqualTo(newBook);
+        assertThat(bookDAO.findByName("Сказки").get(0)).usingRecursiveComparison().isEqualTo(newBook);
+    }
+
+    @DisplayName("Авторы и жанры всех книг страницы, в том числе нескольких пачек, одними экземплярами")
+    @Test
+    void findPage_CoAuthored() {
+        bookDAO.saveAll(List.of(
+                new Book("Сказки", List.of(OTHER_AUTHOR, AUTHOR), List.of(OTHER_GENRE)),
+                new Book("Еще сказки", List.of(AUTHOR, OTHER_AUTHOR), List.of(OTHER_GENRE, GENRE))
+        ));
+
+        final var books = bookDAO.findPage(0, 10);
+        final var streamed = new ArrayList<Book>();
+        bookDAO.forEach(0, streamed::add);
+
+        assertThat(books).extracting(Book::getName).containsExactly(NAME, "Сказки", "Еще сказки");
+        assertThat(books.get(0).getAuthors()).containsExactly(AUTHOR);
+        assertThat(books.get(1).getAuthors()).containsExactly(OTHER_AUTHOR, AUTHOR);
+        assertThat(books.get(2).getAuthors()).containsExactly(AUTHOR, OTHER_AUTHOR);
+        assertThat(books.get(2).getGenres()).containsExactly(OTHER_GENRE, GENRE);
+        assertThat(books.get(1).getAuthors().get(0)).isSameAs(books.get(2).getAuthors().get(1));
+        assertThat(bookDAO.findAllByIds(List.of(books.get(2).getId(), ID, books.get(1).getId())))
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactly(books.get(2), books.get(0), books.get(1));
+        assertThat(streamed).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(books);
+    }
+
+    @DisplayName("Пакетное сохранение книг")
+    @Test
+    void saveAll() {
+        final var books = List.of(
+                new Book("Игра Престолов", AUTHOR, GENRE),
+                new Book("Битва королей", AUTHOR, GENRE)
+        );
+
+        assertThat(bookDAO.saveAll(books)).isEqualTo(2);
+
+        assertThat(bookDAO.findByName("Игра Престолов")).hasSize(1);
+        assertThat(bookDAO.findByName("Битва королей")).hasSize(1);
+    }
+
 
     @DisplayName("Обновление книги")
     @Test
@@ -69,17 +241,173 @@ class BookDAOImplTest {
         assertThat(savedBook).usingRecursiveComparison().isNotEqualTo(newBook);
 
         bookDAO.update(newBook);
+        newBook.setVersion(1);
 
         savedBook = bookDAO.findById(ID).orElseThrow();
         assertThat(savedBook).usingRecursiveComparison().isEqualTo(newBook);
     }
 
+    @DisplayName("Условное обновление по версии: книга, прочитанная до чужого изменения, не записывается")
+    @Test
+    void updateIfVersion() {
+        final var first = bookDAO.findById(ID).orElseThrow();
+        final var second = bookDAO.findById(ID).orElseThrow();
+
+        first.setName("Игра Престолов");
+        assertThat(bookDAO.updateIfVersion(first)).isTrue();
+        assertThat(first.getVersion()).isEqualTo(1);
+
+        second.setName("Битва королей");
+        assertThat(bookDAO.updateIfVersion(second)).isFalse();
+        assertThat(second.getVersion()).isZero();
+        assertThat(bookDAO.findById(ID).orElseThrow()).usingRecursiveComparison().isEqualTo(first);
+    }
+
+    @DisplayName("Чтение с блокировкой строки книги")
+    @Test
+    void findByIdForUpdate() {
+        assertThat(bookDAO.findByIdForUpdate(ID, true).orElseThrow())
+                .usingRecursiveComparison().isEqualTo(TEST_BOOK);
+        assertThat(bookDAO.findByIdForUpdate(1000, true)).isEmpty();
+        assertThat(bookDAO.findByIdForUpdate(1000, false)).isEmpty();
+    }
+
+    @DisplayName("Параллельные изменения по версии с повтором не теряют изменений")
+    @Test
+    void updateIfVersion_Concurrent() throws Exception {
+        // потоки пула работают в своих транзакциях вне транзакции теста, книга удаляется в конце
+        final var transactionTemplate = new TransactionTemplate(transactionManager);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final long id = executor.submit(() -> bookDAO.save(new Book("0", AUTHOR, GENRE))).get(30, TimeUnit.SECONDS);
+        final var start = new CountDownLatch(1);
+        final var futures = new ArrayList<Future<?>>();
+        for (int thread = 0; thread < 4; thread++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 25; i++) {
+                    boolean updated;
+                    do {
+                        updated = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                            final var book = bookDAO.findById(id).orElseThrow();
+                            book.setName(String.valueOf(Integer.parseInt(book.getName()) + 1));
+                            return bookDAO.updateIfVersion(book);
+                        }));
+                    } while (!updated);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        final Book book;
+        try {
+            for (var future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            book = bookDAO.findById(id).orElseThrow();
+        } finally {
+            executor.submit(() -> bookDAO.delete(id)).get(30, TimeUnit.SECONDS);
+            executor.shutdown();
+        }
+
+        assertThat(book.getName()).isEqualTo("100");
+        assertThat(book.getVersion()).isEqualTo(100);
+    }
+
+
+    @DisplayName("Обновление списка авторов и жанров книги")
+    @Test
+    void update_CoAuthored() {
+        final var newBook = new Book(ID, NAME, List.of(OTHER_AUTHOR, AUTHOR), List.of(OTHER_GENRE));
+
+        assertThat(bookDAO.update(newBook)).isTrue();
+        newBook.setVersion(1);
+
+        assertThat(bookDAO.findById(ID).orElseThrow()).usingRecursiveComparison().isEqualTo(newBook);
+    }
 
     @DisplayName("Удаление книги по ID")
     @Test
     void delete() {
         assertThat(bookDAO.findById(ID).isPresent()).isTrue();
-        bookDAO.delete(ID);
+        assertThat(bookDAO.delete(ID)).isEqualTo(1);
         assertThat(bookDAO.findById(ID).isPresent()).isFalse();
+        assertThat(bookDAO.delete(ID)).isZero();
+    }
+
+    @DisplayName("Удаление книг по списку ID")
+    @Test
+    void deleteAllByIds() {
+        final var secondId = bookDAO.save(new Book("Игра Престолов", AUTHOR, GENRE));
+        final var thirdId = bookDAO.save(new Book("Битва королей", AUTHOR, GENRE));
+
+        assertThat(bookDAO.deleteAllByIds(List.of(ID, thirdId, 1000L))).isEqualTo(2);
+
+        assertThat(bookDAO.findAllByIds(List.of(ID, secondId, thirdId)))
+                .extracting(Book::getId).containsExactly(secondId);
+    }
+
+    @DisplayName("Удаление книг автора и жанра")
+    @Test
+    void deleteByAuthorAndGenre() {
+        final var pushkinId = bookDAO.save(new Book("Сказка о рыбаке и рыбке", OTHER_AUTHOR, OTHER_GENRE));
+
+        assertThat(bookDAO.deleteByAuthor(AUTHOR.getId())).isEqualTo(1);
+        assertThat(bookDAO.findById(ID)).isEmpty();
+        assertThat(bookDAO.deleteByGenre(OTHER_GENRE.getId())).isEqualTo(1);
+        assertThat(bookDAO.findById(pushkinId)).isEmpty();
+    }
+
+    @DisplayName("Удаление книг, где автор - один из соавторов")
+    @Test
+    void deleteByAuthor_CoAuthored() {
+        final var coAuthoredId = bookDAO.save(new Book("Сказки", List.of(AUTHOR, OTHER_AUTHOR), List.of(GENRE)));
+
+        assertThat(bookDAO.deleteByAuthor(OTHER_AUTHOR.getId())).isEqualTo(1);
+
+        assertThat(bookDAO.findById(coAuthoredId)).isEmpty();
+        assertThat(bookDAO.findById(ID)).isPresent();
+    }
+
+    @DisplayName("Перенос на соавтора не дублирует его у книги")
+    @Test
+    void reassignAuthor_CoAuthored() {
+        final var coAuthoredId = bookDAO.save(new Book("Сказки", List.of(OTHER_AUTHOR, AUTHOR), List.of(GENRE)));
+
+        assertThat(bookDAO.reassignAuthor(OTHER_AUTHOR.getId(), AUTHOR.getId())).isEqualTo(1);
+
+        final var book = bookDAO.findById(coAuthoredId).orElseThrow();
+        assertThat(book.getAuthors()).containsExactly(AUTHOR);
+        assertThat(book.getAuthor()).isEqualTo(AUTHOR);
+    }
+
+    @DisplayName("Перенос на соавтора и второй жанр книги: оставшаяся связь становится основной")
+    @Test
+    void reassign_ToSecondLink() {
+        final var bookId = bookDAO.save(
+                new Book("Сказки", List.of(OTHER_AUTHOR, AUTHOR), List.of(OTHER_GENRE, GENRE)));
+
+        bookDAO.reassignAuthor(OTHER_AUTHOR.getId(), AUTHOR.getId());
+        bookDAO.reassignGenre(OTHER_GENRE.getId(), GENRE.getId());
+
+        assertThat(jdbcOperations.queryForList(
+                "select position from book_authors where book_id = ?", Integer.class, bookId)).containsExactly(0);
+        assertThat(jdbcOperations.queryForList(
+                "select position from book_genres where book_id = ?", Integer.class, bookId)).containsExactly(0);
+        final var book = bookDAO.findById(bookId).orElseThrow();
+        assertThat(book.getAuthors()).containsExactly(AUTHOR);
+        assertThat(book.getGenres()).containsExactly(GENRE);
+    }
+
+    @DisplayName("Перенос книг на другого автора и жанр")
+    @Test
+    void reassignAuthorAndGenre() {
+        bookDAO.save(new Book("Игра Престолов", AUTHOR, GENRE));
+
+        assertThat(bookDAO.reassignAuthor(AUTHOR.getId(), OTHER_AUTHOR.getId())).isEqualTo(2);
+        assertThat(bookDAO.reassignGenre(GENRE.getId(), OTHER_GENRE.getId())).isEqualTo(2);
+
+        final var book = bookDAO.findById(ID).orElseThrow();
+        assertThat(book.getAuthor()).isEqualTo(OTHER_AUTHOR);
+        assertThat(book.getGenre()).isEqualTo(OTHER_GENRE);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,118 @@
+package ru.otus.dao.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.otus.config.LibraryConfig;
+import ru.otus.config.LibraryProperties;
+import ru.otus.entity.Author;
+import ru.otus.entity.Book;
+import ru.otus.entity.Genre;
+import ru.otus.mapper.AuthorRowMapper;
+import ru.otus.mapper.BookRowMapper;
+import ru.otus.mapper.GenreRowMapper;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Dao для работы с книгами через таблицу book_view")
+@JdbcTest(properties = "library.read-model.enabled=true")
+@Import({BookDAOJdbc.class, BookRowMapper.class, AuthorRowMapper.class, GenreRowMapper.class, LibraryConfig.class})
+class BookDAOReadModelTest {
+    private static final long ID = 1;
+    private static final String NAME = "Песнь льда и Пламени";
+    private static final Author AUTHOR = new Author(2, "Дж.Дж. Мартин");
+    private static final Genre GENRE = new Genre(2, "Фэнтези");
+    private static final Author OTHER_AUTHOR = new Author(1, "А.С. Пушкин");
+    private static final Genre OTHER_GENRE = new Genre(1, "Сказка");
+
+    @Autowired
+    private BookDAOJdbc bookDAO;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BookRowMapper bookRowMapper;
+
+    @DisplayName("Чтение идет из book_view")
+    @Test
+    void findById_FromView() {
+        jdbcTemplate.update("insert into books(book_id, book_name, author_id, genre_id) values (100, 'Без копии', 2, 2)");
+
+        assertThat(bookDAO.findById(100)).isEmpty();
+        assertThat(bookDAO.findById(ID).orElseThrow())
+                .usingRecursiveComparison().isEqualTo(new Book(ID, NAME, AUTHOR, GENRE));
+    }
+
+    @DisplayName("Сохранение и пакетное сохранение попадают в book_view")
+    @Test
+    void save_SyncsView() {
+        final var id = bookDAO.save(new Book("Игра Престолов", AUTHOR, GENRE));
+        bookDAO.saveAll(List.of(
+                new Book("Битва королей", OTHER_AUTHOR, GENRE),
+                new Book("Буря мечей", AUTHOR, OTHER_GENRE)
+        ));
+
+        assertThat(bookDAO.findById(id).orElseThrow().getName()).isEqualTo("Игра Престолов");
+        assertThat(bookDAO.findByName("Битва королей")).singleElement()
+                .extracting(Book::getAuthor).isEqualTo(OTHER_AUTHOR);
+        assertThat(bookDAO.findByName("Буря мечей")).singleElement()
+                .extracting(Book::getGenre).isEqualTo(OTHER_GENRE);
+        assertThat(viewRows()).isEqualTo(4);
+    }
+
+    @DisplayName("Обновление, перенос и удаление меняют book_view")
+    @Test
+    void updateAndDelete_SyncView() {
+        final var updated = new Book(ID, "Игра Престолов", AUTHOR, OTHER_GENRE);
+        bookDAO.update(updated);
+        updated.setVersion(1);
+        assertThat(bookDAO.findById(ID).orElseThrow()).usingRecursiveComparison().isEqualTo(updated);
+
+        bookDAO.reassignAuthor(AUTHOR.getId(), OTHER_AUTHOR.getId());
+        assertThat(bookDAO.findById(ID).orElseThrow())
+                .extracting(Book::getAuthor, Book::getVersion).containsExactly(OTHER_AUTHOR, 2L);
+
+        bookDAO.delete(ID);
+        assertThat(bookDAO.findById(ID)).isEmpty();
+        assertThat(viewRows()).isZero();
+    }
+
+    @DisplayName("Книга для изменения читается из books, даже если book_view отстала")
+    @Test
+    void findByIdForUpdate_StaleView() {
+        new BookDAOJdbc(jdbcTemplate, bookRowMapper, new LibraryProperties(), null)
+                .update(new Book(ID, "Игра Престолов", AUTHOR, GENRE));
+        jdbcTemplate.update("insert into books(book_id, book_name, author_id, genre_id) values (100, 'Без копии', 2, 2)");
+
+        final var book = bookDAO.findByIdForUpdate(ID, false).orElseThrow();
+        assertThat(book).extracting(Book::getName, Book::getVersion).containsExactly("Игра Престолов", 1L);
+        book.setName("Битва королей");
+
+        assertThat(bookDAO.updateIfVersion(book)).isTrue();
+        assertThat(bookDAO.findById(ID).orElseThrow().getName()).isEqualTo("Битва королей");
+        assertThat(bookDAO.findByIdForUpdate(100, true)).isPresent();
+    }
+
+    @DisplayName("Перестроение book_view по books")
+    @Test
+    void rebuildReadModel() {
+        jdbcTemplate.update("insert into books(book_id, book_name, author_id, genre_id) values (100, 'Без копии', 2, 2)");
+        jdbcTemplate.update("update books set book_name = 'Игра Престолов' where book_id = 1");
+
+        assertThat(bookDAO.rebuildReadModel()).isEqualTo(2);
+
+        assertThat(bookDAO.findAllByIds(List.of(ID, 100L)))
+                .extracting(Book::getName).containsExactly("Игра Престолов", "Без копии");
+    }
+
+    private int viewRows() {
+        final Integer rows = jdbcTemplate.queryForObject("select count(*) from book_view", Integer.class);
+        return rows == null ? 0 : rows;
+    }
+}
@@ -0,0 +1,32 @@
+package ru.otus.dao.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import ru.otus.entity.Genre;
+import ru.otus.mapper.GenreRowMapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Dao для работы с жанрами")
+@JdbcTest
+@Import({GenreDAOJdbc.class, GenreRowMapper.class})
+class GenreDAOImplTest {
+    private static final Genre GENRE = new Genre(2, "Фэнтези");
+
+    @Autowired
+    private GenreDAOJdbc genreDAO;
+
+    @DisplayName("Получение существующего жанра и создание нового")
+    @Test
+    void getOrCreate() {
+        assertThat(genreDAO.getOrCreate(GENRE.getName())).isEqualTo(GENRE);
+
+        final var created = genreDAO.getOrCreate("Роман");
+
+        assertThat(genreDAO.findByName("Роман")).contains(created);
+        assertThat(genreDAO.getOrCreate("Роман")).isEqualTo(created);
+    }
+}
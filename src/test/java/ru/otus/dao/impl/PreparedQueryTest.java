@@ -0,0 +1,65 @@
+package ru.otus.dao.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Запрос, разобранный один раз")
+class PreparedQueryTest {
+
+    @DisplayName("Значения выставляются в объявленном порядке имен, повторное имя берет то же значение")
+    @Test
+    void setValues_RepeatedName() throws SQLException {
+        final var query = PreparedQuery.of(
+                "update book_view set author_id = :to_id, author_name = (select author_name from authors " +
+                "where author_id = :to_id) where author_id = :from_id").parameters("from_id", "to_id");
+        final var statement = Mockito.mock(PreparedStatement.class);
+
+        query.setValues(statement, 1L, 2L);
+
+        assertThat(query.getSql()).doesNotContain(":").contains("author_id = ?");
+        Mockito.verify(statement).setObject(1, 2L);
+        Mockito.verify(statement).setObject(2, 2L);
+        Mockito.verify(statement).setObject(3, 1L);
+    }
+
+    @DisplayName("Количество значений проверяется при привязке")
+    @Test
+    void bind_WrongValueCount() {
+        final var query = PreparedQuery.of("select book_id from books where book_id > ? and book_id < ?");
+
+        assertThat(query.bind(1L, 10L)).isNotNull();
+        assertThatThrownBy(() -> query.bind(1L)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @DisplayName("Несколько имен передаются только в объявленном порядке, объявление сверяется с запросом")
+    @Test
+    void bind_DeclaredOrder() {
+        final var query = PreparedQuery.of("select book_id from books where book_id > :after_id limit :limit");
+
+        assertThatThrownBy(() -> query.bind(1L, 10)).isInstanceOf(IllegalStateException.class);
+        assertThat(query.parameters("limit", "after_id").bind(10, 1L)).isNotNull();
+        assertThatThrownBy(() -> query.parameters("after_id")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> query.parameters("after_id", "count")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> query.parameters("after_id", "limit", "limit"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @DisplayName("Одно имя можно передать по порядку, в том числе повторенное")
+    @Test
+    void setValues_SingleName() throws SQLException {
+        final var query = PreparedQuery.of("select author_id from authors where author_name = :name or :name is null");
+        final var statement = Mockito.mock(PreparedStatement.class);
+
+        query.setValues(statement, "Пушкин");
+
+        Mockito.verify(statement).setString(1, "Пушкин");
+        Mockito.verify(statement).setString(2, "Пушкин");
+    }
+}
@@ -0,0 +1,91 @@
+package ru.otus.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Инициализация базы с пропуском неизменных скриптов")
+class CachedScriptDatabaseInitializerTest {
+    private static final String SCHEMA = "create table if not exists items(id bigint auto_increment primary key, name varchar(255));\n";
+    private static final String DATA = "insert into items(name) values ('item');\n";
+
+    @TempDir
+    Path directory;
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private Path schema;
+    private Path data;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        schema = Files.writeString(directory.resolve("schema.sql"), SCHEMA);
+        data = Files.writeString(directory.resolve("data.sql"), DATA);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("shutdown");
+    }
+
+    @DisplayName("Неизменные скрипты не выполняются повторно")
+    @Test
+    void skipUnchanged() {
+        initialize();
+        initialize();
+
+        assertThat(itemCount()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from sql_init_scripts", Integer.class)).isEqualTo(2);
+    }
+
+    @DisplayName("Измененные данные выполняются без повторного выполнения схемы")
+    @Test
+    void changedData() throws IOException {
+        initialize();
+        Files.writeString(data, DATA + DATA);
+        initialize();
+
+        assertThat(itemCount()).isEqualTo(3);
+    }
+
+    @DisplayName("После измененной схемы выполняются и неизменные скрипты данных")
+    @Test
+    void changedSchema() throws IOException {
+        initialize();
+        Files.writeString(schema, SCHEMA + "create index if not exists items_name on items(name);\n");
+        initialize();
+
+        assertThat(itemCount()).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(*) from information_schema.indexes where index_name = 'ITEMS_NAME'", Integer.class))
+                .isEqualTo(1);
+    }
+
+    private void initialize() {
+        final var settings = new DatabaseInitializationSettings();
+        settings.setSchemaLocations(List.of(schema.toUri().toString()));
+        settings.setDataLocations(List.of(data.toUri().toString()));
+        settings.setMode(DatabaseInitializationMode.ALWAYS);
+        new CachedScriptDatabaseInitializer(dataSource, settings).initializeDatabase();
+    }
+
+    private int itemCount() {
+        return jdbcTemplate.queryForObject("select count(*) from items", Integer.class);
+    }
+}
@@ -0,0 +1,130 @@
+package ru.otus.datasource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Маршрутизация соединений между основной базой и репликами")
+class ReplicaRoutingDataSourceTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    private ReplicaRoutingDataSource routingDataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate writeTransaction;
+    private TransactionTemplate readTransaction;
+
+    @AfterEach
+    void tearDown() {
+        routingDataSource.close();
+        pools.forEach(HikariDataSource::close);
+    }
+
+    @DisplayName("Читающие транзакции по очереди на реплики, остальное на основную базу")
+    @Test
+    void roundRobin() {
+        setUp(ReplicaPolicy.ROUND_ROBIN, Duration.ZERO);
+
+        assertThat(List.of(read(), read(), read(), read()))
+                .containsExactly("replica-1", "replica-2", "replica-1", "replica-2");
+        final String written = writeTransaction.execute(status -> node());
+        assertThat(written).isEqualTo("primary");
+        assertThat(node()).isEqualTo("primary");
+    }
+
+    @DisplayName("Реплика с наименьшим количеством занятых соединений")
+    @Test
+    void leastBusy() throws SQLException {
+        setUp(ReplicaPolicy.LEAST_BUSY, Duration.ZERO);
+
+        try (var busy = routingDataSource.getReplicas().get(0).getConnection()) {
+            assertThat(List.of(read(), read(), read())).containsOnly("replica-2");
+        }
+        assertThat(List.of(read(), read())).containsExactlyInAnyOrder("replica-1", "replica-2");
+    }
+
+    @DisplayName("После записи поток читает с основной базы, пока не истечет окно")
+    @Test
+    void readYourWrites() throws InterruptedException {
+        setUp(ReplicaPolicy.ROUND_ROBIN, Duration.ofMillis(300));
+
+        assertThat(read()).startsWith("replica");
+        writeTransaction.executeWithoutResult(status -> jdbcTemplate.update("update node set name = name"));
+        assertThat(read()).isEqualTo("primary");
+
+        final var otherThread = new String[1];
+        final var thread = new Thread(() -> otherThread[0] = read());
+        thread.start();
+        thread.join();
+        assertThat(otherThread[0]).startsWith("replica");
+
+        Thread.sleep(400);
+        assertThat(read()).startsWith("replica");
+        assertThat(meterRegistry.get(ReplicaRoutingDataSource.CONNECTIONS_NAME)
+                .tag("route", ReplicaRoutingDataSource.ROUTE_PINNED).counter().count()).isEqualTo(1);
+    }
+
+    @DisplayName("Откат записи не закрепляет поток за основной базой")
+    @Test
+    void readYourWrites_Rollback() {
+        setUp(ReplicaPolicy.ROUND_ROBIN, Duration.ofMinutes(1));
+
+        writeTransaction.executeWithoutResult(status -> {
+            jdbcTemplate.update("update node set name = name");
+            status.setRollbackOnly();
+        });
+
+        assertThat(read()).startsWith("replica");
+    }
+
+    private void setUp(ReplicaPolicy policy, Duration readYourWritesWindow) {
+        final var primary = database("primary");
+        final var replicas = List.of(database("replica-1"), database("replica-2"));
+        routingDataSource = new ReplicaRoutingDataSource(primary, replicas, policy, readYourWritesWindow, meterRegistry);
+        final var dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        final var transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        writeTransaction = new TransactionTemplate(transactionManager);
+        readTransaction = new TransactionTemplate(transactionManager);
+        readTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Отдельная база H2 в памяти, в которой записано ее имя
+     */
+    private HikariDataSource database(String name) {
+        final var config = new HikariConfig();
+        config.setPoolName(name);
+        config.setJdbcUrl("jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        config.setMaximumPoolSize(2);
+        final var pool = new HikariDataSource(config);
+        final var jdbc = new JdbcTemplate(pool);
+        jdbc.execute("create table node(name varchar(32))");
+        jdbc.update("insert into node(name) values (?)", name);
+        pools.add(pool);
+        return pool;
+    }
+
+    private String read() {
+        return readTransaction.execute(status -> node());
+    }
+
+    private String node() {
+        return jdbcTemplate.queryForObject("select name from node", String.class);
+    }
+}
@@ -0,0 +1,97 @@
+package ru.otus.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import ru.otus.config.JdbcConfig;
+import ru.otus.config.LibraryConfig;
+import ru.otus.dao.impl.AnalyticsDAOJdbc;
+import ru.otus.dao.impl.BookDAOJdbc;
+import ru.otus.entity.Author;
+import ru.otus.entity.Book;
+import ru.otus.entity.Genre;
+import ru.otus.mapper.AuthorRowMapper;
+import ru.otus.mapper.BookRowMapper;
+import ru.otus.mapper.GenreRowMapper;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Метрики SQL запросов")
+@JdbcTest
+@Import({JdbcConfig.class, LibraryConfig.class, StatementMetrics.class,
+        BookDAOJdbc.class, AnalyticsDAOJdbc.class, BookRowMapper.class, AuthorRowMapper.class, GenreRowMapper.class})
+class StatementMetricsTest {
+    private static final Author AUTHOR = new Author(2, "Дж.Дж. Мартин");
+    private static final Genre GENRE = new Genre(2, "Фэнтези");
+
+    @Autowired
+    private BookDAOJdbc bookDAO;
+
+    @Autowired
+    private AnalyticsDAOJdbc analyticsDAO;
+
+    @Autowired
+    private StatementMetrics statementMetrics;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DisplayName("Вызовы, прочитанные и измененные строки по каждому запросу")
+    @Test
+    void record() {
+        bookDAO.findById(1);
+        bookDAO.findById(1);
+        bookDAO.update(new Book(1, "Игра Престолов", AUTHOR, GENRE));
+        bookDAO.forEach(0, book -> { });
+        bookDAO.saveAll(List.of(new Book("Буря мечей", AUTHOR, GENRE), new Book("Пир стервятников", AUTHOR, GENRE)));
+        analyticsDAO.countBooks();
+
+        final var findById = stats("where b.book_id = ?");
+        assertThat(findById.getCount()).isEqualTo(2);
+        assertThat(findById.getRowsReturned()).isEqualTo(2);
+
+        final var update = stats("update books set");
+        assertThat(update.getCount()).isEqualTo(1);
+        assertThat(update.getRowsAffected()).isEqualTo(1);
+
+        final var forEach = stats("where b.book_id > ?");
+        assertThat(forEach.getRowsReturned()).isEqualTo(1);
+
+        final var saveAll = stats("insert into books");
+        assertThat(saveAll.getRowsAffected()).isEqualTo(2);
+        assertThat(saveAll.getRowsReturned()).isZero();
+
+        final var count = stats("select count(*) from books");
+        assertThat(count.getRowsReturned()).isEqualTo(1);
+
+        final var authors = stats("from book_authors ba");
+        assertThat(authors.getCount()).isEqualTo(3);
+        assertThat(authors.getRowsReturned()).isEqualTo(3);
+
+        // книга по id, чтение, удаление и вставка связей по двум таблицам, update, обход книг, insert книг, count
+        assertThat(meterRegistry.find(StatementMetrics.TIMER_NAME).timers()).hasSize(11);
+    }
+
+    private StatementMetrics.StatementStats stats(String sqlPart) {
+        return statementMetrics.getStatements().stream()
+                .filter(stats -> stats.getSql().contains(sqlPart))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
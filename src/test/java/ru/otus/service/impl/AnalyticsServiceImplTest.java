@@ -0,0 +1,48 @@
+package ru.otus.service.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
+import ru.otus.config.LibraryConfig;
+import ru.otus.dao.AnalyticsDAO;
+import ru.otus.dto.CountByName;
+import ru.otus.event.BooksChangedEvent;
+import ru.otus.service.AnalyticsService;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Сервис агрегатов по книгам")
+@SpringBootTest(classes = {AnalyticsServiceImpl.class, LibraryConfig.class})
+class AnalyticsServiceImplTest {
+    private static final List<CountByName> TOP = List.of(new CountByName(2, "Дж.Дж. Мартин", 5));
+
+    @MockBean
+    private AnalyticsDAO analyticsDAO;
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @DisplayName("Повторный запрос берется из кэша до изменения книг")
+    @Test
+    void topAuthors_CachedUntilBooksChanged() {
+        Mockito.when(analyticsDAO.topAuthors(3)).thenReturn(TOP);
+
+        assertThat(analyticsService.topAuthors(3)).isEqualTo(TOP);
+        assertThat(analyticsService.topAuthors(3)).isEqualTo(TOP);
+        Mockito.verify(analyticsDAO, Mockito.times(1)).topAuthors(3);
+
+        eventPublisher.publishEvent(new BooksChangedEvent(1));
+
+        assertThat(analyticsService.topAuthors(3)).isEqualTo(TOP);
+        Mockito.verify(analyticsDAO, Mockito.times(2)).topAuthors(3);
+    }
+}
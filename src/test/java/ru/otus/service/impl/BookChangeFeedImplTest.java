@@ -0,0 +1,247 @@
+package ru.otus.service.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.otus.config.LibraryConfig;
+import ru.otus.dao.impl.BookChangeDAOJdbc;
+import ru.otus.dao.impl.BookDAOJdbc;
+import ru.otus.entity.Author;
+import ru.otus.entity.Book;
+import ru.otus.entity.Genre;
+import ru.otus.event.BookChange;
+import ru.otus.event.BookChangeListener;
+import ru.otus.mapper.AuthorRowMapper;
+import ru.otus.mapper.BookRowMapper;
+import ru.otus.mapper.GenreRowMapper;
+import ru.otus.service.BookChangeCursor;
+import ru.otus.service.BookChangeFeed;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@DisplayName("Лента изменений книг")
+@JdbcTest(properties = {"library.change-feed.enabled=true", "library.change-feed.queue-capacity=1",
+        "library.change-feed.gap-timeout=300ms"})
+@Import({BookChangeFeedImpl.class, BookChangeDAOJdbc.class, BookDAOJdbc.class, BookRowMapper.class,
+        AuthorRowMapper.class, GenreRowMapper.class, LibraryConfig.class})
+// изменения должны коммититься, поэтому тесты идут вне транзакции теста и удаляют свои книги и журнал сами
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookChangeFeedImplTest {
+    private static final Author AUTHOR = new Author(2, "Дж.Дж. Мартин");
+    private static final Genre GENRE = new Genre(2, "Фэнтези");
+
+    private final BlockingQueue<List<BookChange>> batches = new LinkedBlockingQueue<>();
+    private final BookChangeListener listener = batches::add;
+
+    @Autowired
+    private BookChangeFeed changeFeed;
+
+    @Autowired
+    private BookDAOJdbc bookDAO;
+
+    @Autowired
+    private JdbcOperations jdbcOperations;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        changeFeed.subscribe(listener);
+    }
+
+    @AfterEach
+    void tearDown() {
+        changeFeed.unsubscribe(listener);
+        jdbcOperations.update("delete from books where book_id > 1");
+        jdbcOperations.update("delete from book_changes");
+    }
+
+    @DisplayName("Изменения транзакции рассылаются одной пачкой только после коммита")
+    @Test
+    void publishedAfterCommit() throws InterruptedException {
+        final var ids = transactionTemplate.execute(status -> {
+            final long first = bookDAO.save(new Book("Игра Престолов", AUTHOR, GENRE));
+            final long second = bookDAO.save(new Book("Битва королей", AUTHOR, GENRE));
+            bookDAO.update(new Book(first, "Буря мечей", AUTHOR, GENRE));
+            try {
+                assertThat(batches.poll(100, TimeUnit.MILLISECONDS)).isNull();
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+            return List.of(first, second);
+        });
+
+        final var batch = batches.poll(5, TimeUnit.SECONDS);
+
+        assertThat(batch).extracting(BookChange::getBookId, BookChange::getType).containsExactly(
+                tuple(ids.get(0), BookChange.Type.CREATED),
+                tuple(ids.get(1), BookChange.Type.CREATED),
+                tuple(ids.get(0), BookChange.Type.UPDATED));
+        assertThat(batches).isEmpty();
+        assertThat(changeFeed.replay(0, 10)).isEqualTo(batch);
+    }
+
+    @DisplayName("Изменения откатившейся транзакции не рассылаются и не остаются в журнале")
+    @Test
+    void notPublishedOnRollback() throws InterruptedException {
+        transactionTemplate.executeWithoutResult(status -> {
+            bookDAO.save(new Book("Игра Престолов", AUTHOR, GENRE));
+            status.setRollbackOnly();
+        });
+
+        assertThat(batches.poll(200, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(changeFeed.replay(0, 10)).isEmpty();
+    }
+
+    @DisplayName("Журнал дочитывается с последнего обработанного номера, массовое удаление пишет запись на книгу")
+    @Test
+    void replay() {
+        final long first = bookDAO.save(new Book("Игра Престолов", AUTHOR, GENRE));
+        final long second = bookDAO.save(new Book("Битва королей", AUTHOR, GENRE));
+        final long lastSeen = changeFeed.replay(0, 10).get(1).getChangeId();
+
+        transactionTemplate.executeWithoutResult(status -> bookDAO.deleteAllByIds(List.of(first, second, 1000L)));
+
+        final var changes = changeFeed.replay(lastSeen, 10);
+        assertThat(changes).extracting(BookChange::getType).containsOnly(BookChange.Type.DELETED);
+        assertThat(changes).extracting(BookChange::getBookId).containsExactlyInAnyOrder(first, second);
+        assertThat(changes).allMatch(change -> change.getChangeId() > lastSeen);
+        assertThat(changeFeed.purge(lastSeen)).isEqualTo(2);
+        assertThat(changeFeed.replay(0, 10)).isEqualTo(changes);
+    }
+
+    @DisplayName("Курсор отдает запись транзакции, закоммиченной после записи с большим номером")
+    @Test
+    void cursor_LateCommit() throws Exception {
+        final var cursor = cursorAfterNewBook();
+        final long start = cursor.getPosition();
+        final var inserted = new CountDownLatch(1);
+        final var commit = new CountDownLatch(1);
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            final var slow = executor.submit(() -> transactionTemplate.execute(status -> {
+                final long id = bookDAO.save(new Book("Игра Престолов", AUTHOR, GENRE));
+                inserted.countDown();
+                await(commit);
+                return id;
+            }));
+            assertThat(inserted.await(5, TimeUnit.SECONDS)).isTrue();
+            final long fast = bookDAO.save(new Book("Битва королей", AUTHOR, GENRE));
+
+            assertThat(cursor.next(10)).extracting(BookChange::getBookId).containsExactly(fast);
+            assertThat(cursor.getPosition()).isEqualTo(start);
+
+            commit.countDown();
+            final long late = slow.get(5, TimeUnit.SECONDS);
+            assertThat(cursor.next(10)).extracting(BookChange::getBookId).containsExactly(late);
+            assertThat(cursor.next(10)).isEmpty();
+            assertThat(cursor.getPosition()).isEqualTo(changeFeed.replay(start, 10).get(1).getChangeId());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @DisplayName("Пропуск номера откатившейся транзакции курсор проходит после gap-timeout")
+    @Test
+    void cursor_RollbackGap() throws InterruptedException {
+        final var cursor = cursorAfterNewBook();
+        bookDAO.save(new Book("Игра Престолов", AUTHOR, GENRE));
+        transactionTemplate.executeWithoutResult(status -> {
+            bookDAO.save(new Book("Битва королей", AUTHOR, GENRE));
+            status.setRollbackOnly();
+        });
+        bookDAO.save(new Book("Буря мечей", AUTHOR, GENRE));
+        final var changes = changeFeed.replay(cursor.getPosition(), 10);
+
+        assertThat(cursor.next(10)).isEqualTo(changes);
+        assertThat(cursor.getPosition()).isEqualTo(changes.get(0).getChangeId());
+
+        TimeUnit.MILLISECONDS.sleep(400);
+        assertThat(cursor.next(10)).isEmpty();
+        assertThat(cursor.getPosition()).isEqualTo(changes.get(1).getChangeId());
+    }
+
+    @DisplayName("О пачке, не поместившейся в очередь, слушатели узнают диапазон ее номеров")
+    @Test
+    void dropped_NotifiesListeners() throws InterruptedException {
+        final var delivering = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final BlockingQueue<List<Long>> dropped = new LinkedBlockingQueue<>();
+        final var blocking = new BookChangeListener() {
+            @Override
+            public void onChanges(List<BookChange> changes) {
+                delivering.countDown();
+                await(release);
+            }
+
+            @Override
+            public void onDropped(long fromChangeId, long toChangeId) {
+                dropped.add(List.of(fromChangeId, toChangeId));
+            }
+        };
+        changeFeed.subscribe(blocking);
+        try {
+            changeFeed.publish(List.of(new BookChange(1, 1, BookChange.Type.UPDATED)));
+            assertThat(delivering.await(5, TimeUnit.SECONDS)).isTrue();
+            changeFeed.publish(List.of(new BookChange(2, 1, BookChange.Type.UPDATED)));
+            changeFeed.publish(List.of(
+                    new BookChange(3, 1, BookChange.Type.UPDATED), new BookChange(4, 1, BookChange.Type.UPDATED)));
+            release.countDown();
+
+            assertThat(dropped.poll(5, TimeUnit.SECONDS)).containsExactly(3L, 4L);
+        } finally {
+            release.countDown();
+            changeFeed.unsubscribe(blocking);
+        }
+    }
+
+    /**
+     * Курсор после записи новой книги: номера журнала продолжаются после записей прошлых тестов
+     */
+    private BookChangeCursor cursorAfterNewBook() {
+        bookDAO.save(new Book("Пролог", AUTHOR, GENRE));
+        final var changes = changeFeed.replay(0, 10);
+        return changeFeed.cursor(changes.get(changes.size() - 1).getChangeId());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
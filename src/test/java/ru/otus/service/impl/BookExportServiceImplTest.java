@@ -0,0 +1,123 @@
+package ru.otus.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import ru.otus.config.LibraryConfig;
+import ru.otus.config.LibraryProperties;
+import ru.otus.dto.ExportFormat;
+import ru.otus.entity.Author;
+import ru.otus.entity.Book;
+import ru.otus.entity.Genre;
+import ru.otus.service.BookExportService;
+import ru.otus.service.BookService;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Сервис выгрузки книг в файл")
+@SpringBootTest(classes = {BookExportServiceImpl.class, LibraryConfig.class})
+class BookExportServiceImplTest {
+    private static final Author AUTHOR = new Author(2, "Дж.Дж. Мартин");
+    private static final Genre GENRE = new Genre(2, "Фэнтези");
+    private static final Genre OTHER_GENRE = new Genre(1, "Сказка");
+    private static final List<Book> BOOKS = List.of(
+            new Book(1, "Песнь льда и Пламени", AUTHOR, GENRE),
+            new Book(2, "Игра \"Престолов\", том 1", List.of(AUTHOR), List.of(GENRE, OTHER_GENRE))
+    );
+
+    @MockBean
+    private BookService bookService;
+
+    @Autowired
+    private BookExportService bookExportService;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        Mockito.doAnswer(invocation -> {
+            BOOKS.forEach(invocation.<Consumer<Book>>getArgument(1));
+            return null;
+        }).when(bookService).forEach(ArgumentMatchers.anyLong(), ArgumentMatchers.any(Consumer.class));
+    }
+
+    @DisplayName("CSV читается обратно тем же разбором, что и при загрузке")
+    @Test
+    void export_Csv() throws IOException {
+        final var file = tempDir.resolve("books.csv");
+
+        final var result = bookExportService.export(file, ExportFormat.CSV, false);
+
+        assertThat(result.getRows()).isEqualTo(2);
+        assertThat(result.getBytes()).isEqualTo(Files.size(file));
+        final var parser = new DelimitedLineParser(',');
+        assertThat(Files.readAllLines(file, StandardCharsets.UTF_8).stream()
+                .map(parser::parse)
+                .collect(Collectors.toList()))
+                .containsExactly(
+                        List.of("Песнь льда и Пламени", AUTHOR.getName(), GENRE.getName()),
+                        List.of("Игра \"Престолов\", том 1", AUTHOR.getName(), "Фэнтези;Сказка"));
+    }
+
+    @DisplayName("JSON Lines со сжатием gzip")
+    @Test
+    void export_JsonLinesGzip() throws IOException {
+        final var file = tempDir.resolve("books.jsonl.gz");
+
+        final var result = bookExportService.export(file, ExportFormat.JSONL, true);
+
+        assertThat(result.getRows()).isEqualTo(2);
+        try (var in = new GZIPInputStream(Files.newInputStream(file))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")).containsExactly(
+                    "{\"id\":1,\"name\":\"Песнь льда и Пламени\","
+                            + "\"authors\":[{\"id\":2,\"name\":\"Дж.Дж. Мартин\"}],\"genres\":[{\"id\":2,\"name\":\"Фэнтези\"}]}",
+                    "{\"id\":2,\"name\":\"Игра \\\"Престолов\\\", том 1\","
+                            + "\"authors\":[{\"id\":2,\"name\":\"Дж.Дж. Мартин\"}],\"genres\":[{\"id\":2,\"name\":\"Фэнтези\"},"
+                            + "{\"id\":1,\"name\":\"Сказка\"}]}");
+        }
+    }
+
+    @DisplayName("Пустые названия выгружаются в CSV пустыми полями")
+    @Test
+    @SuppressWarnings("unchecked")
+    void export_CsvNullNames() throws IOException {
+        final var book = new Book(3, null, List.of(new Author(3, null)), List.of(GENRE, new Genre(3, null)));
+        Mockito.doAnswer(invocation -> {
+            invocation.<Consumer<Book>>getArgument(1).accept(book);
+            return null;
+        }).when(bookService).forEach(ArgumentMatchers.anyLong(), ArgumentMatchers.any(Consumer.class));
+        final var file = tempDir.resolve("books.csv");
+
+        bookExportService.export(file, ExportFormat.CSV, false);
+
+        assertThat(Files.readAllLines(file, StandardCharsets.UTF_8)).containsExactly(",,Фэнтези;");
+    }
+
+    @DisplayName("Нулевой интервал прогресса отклоняется при создании")
+    @Test
+    void create_ZeroProgressInterval() {
+        final var libraryProperties = new LibraryProperties();
+        libraryProperties.getExport().setProgressInterval(0);
+
+        assertThatThrownBy(() -> new BookExportServiceImpl(bookService, libraryProperties))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,90 @@
+package ru.otus.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import ru.otus.config.LibraryConfig;
+import ru.otus.dao.AuthorDAO;
+import ru.otus.dao.GenreDAO;
+import ru.otus.entity.Author;
+import ru.otus.entity.Book;
+import ru.otus.entity.Genre;
+import ru.otus.service.BookImportService;
+import ru.otus.service.BookService;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Сервис загрузки книг из файла")
+@SpringBootTest(classes = {BookImportServiceImpl.class, LibraryConfig.class})
+class BookImportServiceImplTest {
+    private static final Author AUTHOR = new Author(2, "Дж.Дж. Мартин");
+    private static final Genre GENRE = new Genre(2, "Фэнтези");
+
+    @MockBean
+    private BookService bookService;
+
+    @MockBean
+    private AuthorDAO authorDAO;
+
+    @MockBean
+    private GenreDAO genreDAO;
+
+    @Autowired
+    private BookImportService bookImportService;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        Mockito.when(authorDAO.findByName(AUTHOR.getName()))
+                .thenReturn(Optional.of(AUTHOR));
+        Mockito.when(genreDAO.findByName(GENRE.getName()))
+                .thenReturn(Optional.of(GENRE));
+    }
+
+    @DisplayName("Загрузка пачками с однократным поиском автора и жанра")
+    @Test
+    void importFile_Success() throws IOException {
+        final var file = tempDir.resolve("books.tsv");
+        Files.write(file, List.of(
+                "# название\tавтор\tжанр",
+                "Игра Престолов\tДж.Дж. Мартин\tФэнтези",
+                "Битва королей\tДж.Дж. Мартин\tФэнтези",
+                "\"Буря\tмечей\"\tДж.Дж. Мартин\tФэнтези",
+                "Сказка о рыбаке и рыбке\tА.С. Пушкин\tСказка",
+                "Без жанра\tДж.Дж. Мартин"
+        ), StandardCharsets.UTF_8);
+
+        final List<List<Book>> chunks = new ArrayList<>();
+        Mockito.when(bookService.createAll(Mockito.anyList()))
+                .then(invocation -> {
+                    final List<Book> chunk = invocation.getArgument(0);
+                    chunks.add(new ArrayList<>(chunk));
+                    return chunk.size();
+                });
+
+        final var result = bookImportService.importFile(file, '\t', 2);
+
+        assertThat(result.getRowsRead()).isEqualTo(5);
+        assertThat(result.getImported()).isEqualTo(3);
+        assertThat(result.getSkipped()).isEqualTo(2);
+        assertThat(chunks).hasSize(2);
+        assertThat(chunks.get(1).get(0).getName()).isEqualTo("Буря\tмечей");
+        Mockito.verify(authorDAO, Mockito.times(1)).findByName(AUTHOR.getName());
+        Mockito.verify(genreDAO, Mockito.times(1)).findByName(GENRE.getName());
+    }
+}
@@ -0,0 +1,107 @@
+package ru.otus.service.impl;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import ru.otus.config.LibraryConfig;
+import ru.otus.entity.Author;
+import ru.otus.entity.Book;
+import ru.otus.entity.Genre;
+import ru.otus.exception.NotFoundException;
+import ru.otus.service.BookScriptService;
+import ru.otus.service.BookService;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Параллельное выполнение скрипта команд")
+@SpringBootTest(classes = {BookScriptServiceImpl.class, LibraryConfig.class})
+class BookScriptServiceImplTest {
+    private static final Author AUTHOR = new Author(2, "Дж.Дж. Мартин");
+    private static final Genre GENRE = new Genre(2, "Фэнтези");
+
+    @MockBean
+    private BookService bookService;
+
+    @Autowired
+    private BookScriptService bookScriptService;
+
+    @TempDir
+    Path tempDir;
+
+    @DisplayName("Команды над одной книгой выполняются в порядке скрипта")
+    @Test
+    void run_SameBookInOrder() throws IOException {
+        final var calls = new CopyOnWriteArrayList<String>();
+        Mockito.when(bookService.update(Mockito.eq(1L), Mockito.anyString(), Mockito.anyString(), Mockito.anyString()))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(5);
+                    calls.add(invocation.getArgument(1));
+                    return new Book(1, invocation.getArgument(1), AUTHOR, GENRE);
+                });
+        Mockito.when(bookService.findById(1))
+                .thenAnswer(invocation -> {
+                    calls.add("find");
+                    return Optional.of(new Book(1, "", AUTHOR, GENRE));
+                });
+        final var script = Files.writeString(tempDir.resolve("script.txt"), String.join(System.lineSeparator(),
+                "# обновления одной книги",
+                "update 1 'Игра Престолов' --author-name 'Дж.Дж. Мартин' --genre-name Фэнтези",
+                "update --id 1 --name 'Битва королей' --author-name '' --genre-name ''",
+                "find --id 1",
+                "update 1 \"Буря мечей\" '' ''"
+        ), StandardCharsets.UTF_8);
+
+        final var result = bookScriptService.run(script, 4);
+
+        assertThat(result.getCommands()).isEqualTo(4);
+        assertThat(result.getSucceeded()).isEqualTo(4);
+        assertThat(calls).containsExactly("Игра Престолов", "Битва королей", "find", "Буря мечей");
+        Mockito.verify(bookService).update(1, "Битва королей", "", "");
+    }
+
+    @DisplayName("Независимые команды выполняются, ошибки отчитываются по номеру строки")
+    @Test
+    void run_ErrorsReported() throws IOException {
+        Mockito.when(bookService.create(Mockito.anyString(), Mockito.eq(AUTHOR.getName()), Mockito.eq(GENRE.getName())))
+                .thenAnswer(invocation -> new Book(1, invocation.getArgument(0), AUTHOR, GENRE));
+        Mockito.when(bookService.findByName("Нет такой"))
+                .thenReturn(List.of());
+        Mockito.when(bookService.create("Сказка", "А.С. Пушкин", "Сказка"))
+                .thenThrow(new NotFoundException("отсутствует автор с именем А.С. Пушкин"));
+        final var script = Files.writeString(tempDir.resolve("script.txt"), String.join(System.lineSeparator(),
+                "create 'Игра Престолов' 'Дж.Дж. Мартин' 'Фэнтези'",
+                "create 'Битва королей' 'Дж.Дж. Мартин' 'Фэнтези'",
+                "find --name 'Нет такой'",
+                "create 'Сказка' 'А.С. Пушкин' 'Сказка'",
+                "list --limit 5",
+                "",
+                "create 'Незакрытая"
+        ), StandardCharsets.UTF_8);
+
+        final var result = bookScriptService.run(script, 4);
+
+        assertThat(result.getCommands()).isEqualTo(6);
+        assertThat(result.getSucceeded()).isEqualTo(2);
+        assertThat(result.getFailed()).isEqualTo(4);
+        assertThat(result.getErrors()).containsExactly(
+                "строка 3: не найдены книги с name Нет такой",
+                "строка 4: отсутствует автор с именем А.С. Пушкин",
+                "строка 5: команда не поддерживается в скрипте: list",
+                "строка 7: не закрыта кавычка"
+        );
+        Mockito.verify(bookService, Mockito.times(3))
+                .create(Mockito.anyString(), Mockito.anyString(), Mockito.anyString());
+    }
+}
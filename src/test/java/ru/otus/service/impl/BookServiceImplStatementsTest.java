@@ -0,0 +1,134 @@
+package ru.otus.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.otus.config.LibraryConfig;
+import ru.otus.dao.impl.AuthorDAOJdbc;
+import ru.otus.dao.impl.BookDAOJdbc;
+import ru.otus.dao.impl.GenreDAOJdbc;
+import ru.otus.entity.Author;
+import ru.otus.entity.Book;
+import ru.otus.entity.Genre;
+import ru.otus.mapper.AuthorRowMapper;
+import ru.otus.mapper.BookRowMapper;
+import ru.otus.mapper.GenreRowMapper;
+import ru.otus.service.BookService;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Количество SQL запросов сервиса для работы с книгами")
+@JdbcTest
+@Import({BookServiceImpl.class, BookDAOJdbc.class, AuthorDAOJdbc.class, GenreDAOJdbc.class,
+        BookRowMapper.class, AuthorRowMapper.class, GenreRowMapper.class, LibraryConfig.class})
+class BookServiceImplStatementsTest {
+    private static final long ID = 1;
+    private static final String NEW_NAME = "Игра Престолов";
+    private static final Author AUTHOR = new Author(2, "Дж.Дж. Мартин");
+    private static final Genre GENRE = new Genre(2, "Фэнтези");
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private CountingJdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.statements.set(0);
+    }
+
+    @DisplayName("Создание: поиск автора, поиск жанра, insert книги и по пакету связей без повторного чтения")
+    @Test
+    void create() {
+        final var book = bookService.create(NEW_NAME, AUTHOR.getName(), GENRE.getName());
+
+        assertThat(jdbcTemplate.statements).hasValue(5);
+        assertThat(bookService.findById(book.getId()).orElseThrow()).usingRecursiveComparison().isEqualTo(book);
+    }
+
+    @DisplayName("Обновление с автором и жанром: как только названия - чтение книги и update по версии, " +
+            "прежние автор и жанр не ищутся повторно")
+    @Test
+    void update_Full() {
+        final var expected = new Book(ID, NEW_NAME, AUTHOR, GENRE);
+        expected.setVersion(1);
+
+        final var book = bookService.update(ID, NEW_NAME, AUTHOR.getName(), GENRE.getName());
+
+        assertThat(jdbcTemplate.statements).hasValue(8);
+        assertThat(book).usingRecursiveComparison().isEqualTo(expected);
+    }
+
+    @DisplayName("Обновление только названия: чтение книги со связями, update по версии и замена связей")
+    @Test
+    void update_NameOnly() {
+        final var expected = new Book(ID, NEW_NAME, AUTHOR, GENRE);
+        expected.setVersion(1);
+
+        final var book = bookService.update(ID, NEW_NAME, null, null);
+
+        assertThat(jdbcTemplate.statements).hasValue(8);
+        assertThat(book).usingRecursiveComparison().isEqualTo(expected);
+    }
+
+    @DisplayName("Чтение страницы: запрос книг и по запросу на таблицу связей независимо от числа книг")
+    @Test
+    void findPage() {
+        bookService.createAll(List.of(
+                new Book("Битва королей", AUTHOR, GENRE),
+                new Book("Буря мечей", AUTHOR, GENRE)
+        ));
+        jdbcTemplate.statements.set(0);
+
+        assertThat(bookService.findPage(0, 10)).hasSize(3);
+        assertThat(jdbcTemplate.statements).hasValue(3);
+    }
+
+    @DisplayName("Создание или обновление через merge и замена связей")
+    @Test
+    void upsert() {
+        final long newId = 100;
+        final var book = bookService.upsert(newId, NEW_NAME, AUTHOR.getName(), GENRE.getName());
+
+        assertThat(jdbcTemplate.statements).hasValue(7);
+        assertThat(bookService.findById(newId).orElseThrow()).usingRecursiveComparison().isEqualTo(book);
+    }
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        CountingJdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new CountingJdbcTemplate(dataSource);
+        }
+    }
+
+    /**
+     * Считает выполненные через шаблон запросы: настройки применяются к каждому созданному statement ровно один раз
+     */
+    static class CountingJdbcTemplate extends JdbcTemplate {
+        private final AtomicInteger statements = new AtomicInteger();
+
+        CountingJdbcTemplate(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        protected void applyStatementSettings(Statement statement) throws SQLException {
+            statements.incrementAndGet();
+            super.applyStatementSettings(statement);
+        }
+    }
+}
@@ -7,13 +7,18 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import ru.otus.config.LibraryConfig;
 import ru.otus.dao.AuthorDAO;
 import ru.otus.dao.BookDAO;
 import ru.otus.dao.GenreDAO;
 import ru.otus.entity.Author;
 import ru.otus.entity.Book;
 import ru.otus.entity.Genre;
+import ru.otus.event.BooksChangedEvent;
 import ru.otus.exception.NotFoundException;
+import ru.otus.exception.OptimisticLockException;
 import ru.otus.service.BookService;
 
 import java.util.Collections;
@@ -23,7 +28,9 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @DisplayName("Сервис для работы с книгами")
-@SpringBootTest(classes = {BookServiceImpl.class})
+@SpringBootTest(classes = {BookServiceImpl.class, LibraryConfig.class},
+        properties = "library.book-update.max-attempts=2")
+@RecordApplicationEvents
 class BookServiceImplTest {
     private static final long ID = 1;
     private static final String NAME = "Песнь льда и Пламени";
@@ -44,6 +51,9 @@ class BookServiceImplTest {
     @Autowired
     private BookService bookService;
 
+    @Autowired
+    private ApplicationEvents events;
+
     @BeforeEach
     void setUp() {
         Mockito.when(bookDAO.findByName(TEST_BOOK.getName()))
@@ -52,6 +62,10 @@ class BookServiceImplTest {
                 .thenReturn(Optional.of(TEST_BOOK));
         Mockito.when(bookDAO.save(Mockito.any(Book.class)))
                 .thenReturn(1L);
+        Mockito.when(bookDAO.update(Mockito.any(Book.class)))
+                .thenReturn(true);
+        Mockito.when(bookDAO.updateIfVersion(Mockito.any(Book.class)))
+                .thenReturn(true);
         Mockito.when(authorDAO.findByName(AUTHOR.getName()))
                 .thenReturn(Optional.of(AUTHOR));
         Mockito.when(genreDAO.findByName(GENRE.getName()))
@@ -79,6 +93,27 @@ class BookServiceImplTest {
         assertThat(book).usingRecursiveComparison().isEqualTo(TEST_BOOK);
     }
 
+    @DisplayName("Создание книги с несколькими авторами и жанрами через разделитель")
+    @Test
+    void create_CoAuthoredSuccess() {
+        final var otherAuthor = new Author(1, "А.С. Пушкин");
+        Mockito.when(authorDAO.findByName(otherAuthor.getName())).thenReturn(Optional.of(otherAuthor));
+
+        final var book = bookService.create(NAME, " А.С. Пушкин ;Дж.Дж. Мартин; А.С. Пушкин", GENRE.getName() + ";");
+
+        assertThat(book.getAuthors()).containsExactly(otherAuthor, AUTHOR);
+        assertThat(book.getGenres()).containsExactly(GENRE);
+        assertThatThrownBy(() -> bookService.create(NAME, " ; ", GENRE.getName()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @DisplayName("Создание книги сообщает об изменении книг")
+    @Test
+    void create_PublishesEvent() {
+        bookService.create(TEST_BOOK.getName(), AUTHOR.getName(), GENRE.getName());
+        assertThat(events.stream(BooksChangedEvent.class)).hasSize(1);
+    }
+
     @DisplayName("Создание книги (исключение: пустое имя книги, автора или жанра)")
     @Test
     void create_NamesFail() {
@@ -109,11 +144,48 @@ class BookServiceImplTest {
     void update_Success() {
         final var newBook = new Book(ID, NEW_NAME, AUTHOR, GENRE);
 
-        Mockito.when(bookDAO.findById(ID))
-                .thenReturn(Optional.of(newBook));
+        Mockito.when(bookDAO.findByIdForUpdate(ID, false))
+                .thenReturn(Optional.of(new Book(ID, NAME, AUTHOR, GENRE)));
 
         final var updatedBook = bookService.update(TEST_BOOK.getId(), NEW_NAME, AUTHOR.getName(), GENRE.getName());
-        assertThat(newBook).usingRecursiveComparison().isEqualTo(updatedBook);
+        assertThat(updatedBook).usingRecursiveComparison().isEqualTo(newBook);
+        Mockito.verify(bookDAO, Mockito.never()).update(Mockito.any(Book.class));
+    }
+
+    @DisplayName("Обновление книги с автором и жанром (успех: книгу изменили параллельно, изменение применено повторно)")
+    @Test
+    void update_FullConflictRetried() {
+        Mockito.when(bookDAO.findByIdForUpdate(ID, false))
+                .thenReturn(Optional.of(new Book(ID, NAME, AUTHOR, GENRE)));
+        Mockito.when(bookDAO.updateIfVersion(Mockito.any(Book.class)))
+                .thenReturn(false, true);
+
+        final var updatedBook = bookService.update(ID, NEW_NAME, AUTHOR.getName(), GENRE.getName());
+
+        assertThat(updatedBook.getName()).isEqualTo(NEW_NAME);
+        Mockito.verify(bookDAO, Mockito.times(2)).findByIdForUpdate(ID, false);
+        Mockito.verify(bookDAO, Mockito.never()).update(Mockito.any(Book.class));
+    }
+
+    @DisplayName("Обновление книги (исключение: книга не найдена)")
+    @Test
+    void update_BookFail() {
+        Mockito.when(bookDAO.findByIdForUpdate(ID, false))
+                .thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> bookService.update(ID, NEW_NAME, AUTHOR.getName(), GENRE.getName()))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    @DisplayName("Создание или обновление книги по id (успех)")
+    @Test
+    void upsert_Success() {
+        final var newBook = new Book(ID, NEW_NAME, AUTHOR, GENRE);
+
+        final var savedBook = bookService.upsert(ID, NEW_NAME, AUTHOR.getName(), GENRE.getName());
+
+        assertThat(savedBook).usingRecursiveComparison().isEqualTo(newBook);
+        Mockito.verify(bookDAO).upsert(Mockito.any(Book.class));
     }
 
     @DisplayName("Обновление книги (успех: без автора и жанра)")
@@ -121,13 +193,53 @@ class BookServiceImplTest {
     void update_OnlyBookNameSuccess() {
         final var newBook = new Book(ID, NEW_NAME, AUTHOR, GENRE);
 
-        Mockito.when(bookDAO.findById(ID))
+        Mockito.when(bookDAO.findByIdForUpdate(ID, false))
                 .thenReturn(Optional.of(newBook));
 
         final var updatedBook = bookService.update(TEST_BOOK.getId(), NEW_NAME, null, null);
         assertThat(newBook).usingRecursiveComparison().isEqualTo(updatedBook);
     }
 
+    @DisplayName("Обновление книги (успех: книгу изменили параллельно, изменение применено повторно)")
+    @Test
+    void update_ConflictRetried() {
+        Mockito.when(bookDAO.findByIdForUpdate(ID, false))
+                .thenReturn(Optional.of(new Book(ID, NAME, AUTHOR, GENRE)));
+        Mockito.when(bookDAO.updateIfVersion(Mockito.any(Book.class)))
+                .thenReturn(false, true);
+
+        final var updatedBook = bookService.update(ID, NEW_NAME, null, null);
+
+        assertThat(updatedBook.getName()).isEqualTo(NEW_NAME);
+        Mockito.verify(bookDAO, Mockito.times(2)).findByIdForUpdate(ID, false);
+    }
+
+    @DisplayName("Обновление книги (исключение: конфликт версий на всех попытках)")
+    @Test
+    void update_ConflictFail() {
+        Mockito.when(bookDAO.findByIdForUpdate(ID, false))
+                .thenReturn(Optional.of(new Book(ID, NAME, AUTHOR, GENRE)));
+        Mockito.when(bookDAO.updateIfVersion(Mockito.any(Book.class)))
+                .thenReturn(false);
+
+        assertThatThrownBy(() -> bookService.update(ID, NEW_NAME, null, null))
+                .isInstanceOf(OptimisticLockException.class);
+        Mockito.verify(bookDAO, Mockito.times(2)).updateIfVersion(Mockito.any(Book.class));
+        assertThat(events.stream(BooksChangedEvent.class)).isEmpty();
+    }
+
+    @DisplayName("Удаление книги: слушатели узнают об изменении, только если книга была")
+    @Test
+    void delete_PublishesOnlyDeleted() {
+        Mockito.when(bookDAO.delete(ID)).thenReturn(1);
+        Mockito.when(bookDAO.delete(5)).thenReturn(0);
+
+        bookService.delete(5);
+        assertThat(events.stream(BooksChangedEvent.class)).isEmpty();
+        bookService.delete(ID);
+        assertThat(events.stream(BooksChangedEvent.class)).hasSize(1);
+    }
+
     @DisplayName("Обновление книги (исключение: неверное новое имя книги)")
     @Test
     void update_NameFail() {
@@ -163,4 +275,26 @@ class BookServiceImplTest {
         assertThatThrownBy(() -> bookService.update(ID, NEW_NAME, AUTHOR.getName(), "Сказка"))
                 .isInstanceOf(NotFoundException.class);
     }
-}
\ No newline at end of file
+
+    @DisplayName("Перенос книг на другого автора (успех)")
+    @Test
+    void reassignAuthor_Success() {
+        final var newAuthor = new Author(1, "А.С. Пушкин");
+        Mockito.when(authorDAO.findByName(newAuthor.getName()))
+                .thenReturn(Optional.of(newAuthor));
+        Mockito.when(bookDAO.reassignAuthor(AUTHOR.getId(), newAuthor.getId()))
+                .thenReturn(3);
+
+        assertThat(bookService.reassignAuthor(AUTHOR.getName(), newAuthor.getName())).isEqualTo(3);
+        assertThat(bookService.reassignAuthor(AUTHOR.getName(), AUTHOR.getName())).isZero();
+        Mockito.verify(bookDAO).reassignAuthor(AUTHOR.getId(), newAuthor.getId());
+    }
+
+    @DisplayName("Удаление книг жанра (исключение: жанр не найден)")
+    @Test
+    void deleteByGenre_GenreFail() {
+        assertThatThrownBy(() -> bookService.deleteByGenre("Сказка"))
+                .isInstanceOf(NotFoundException.class);
+        Mockito.verify(bookDAO, Mockito.never()).deleteByGenre(Mockito.anyLong());
+    }
+}
@@ -0,0 +1,172 @@
+package ru.otus.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.otus.config.LibraryProperties;
+import ru.otus.entity.Author;
+import ru.otus.entity.Book;
+import ru.otus.entity.Genre;
+import ru.otus.exception.NotFoundException;
+import ru.otus.service.BookService;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Очередь отложенной записи книг")
+class BookWriteQueueImplTest {
+    private static final Author AUTHOR = new Author(2, "Дж.Дж. Мартин");
+    private static final Genre GENRE = new Genre(2, "Фэнтези");
+
+    private final BookService bookService = Mockito.mock(BookService.class);
+    private final PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private BookWriteQueueImpl writeQueue;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writeQueue.stop();
+    }
+
+    @DisplayName("Операции, пришедшие вместе, пишутся одной транзакцией")
+    @Test
+    void create_OneTransactionPerBatch() throws Exception {
+        startQueue(10, 3, Duration.ofSeconds(10), Duration.ofSeconds(1));
+        Mockito.when(bookService.create(Mockito.anyString(), Mockito.anyString(), Mockito.anyString()))
+                .thenAnswer(invocation -> new Book(1, invocation.getArgument(0), AUTHOR, GENRE));
+
+        final var first = writeQueue.create("Игра Престолов", AUTHOR.getName(), GENRE.getName());
+        final var second = writeQueue.create("Битва королей", AUTHOR.getName(), GENRE.getName());
+        writeQueue.flush().get(5, TimeUnit.SECONDS);
+
+        assertThat(first.get().getName()).isEqualTo("Игра Престолов");
+        assertThat(second.get().getName()).isEqualTo("Битва королей");
+        Mockito.verify(transactionManager, Mockito.times(1)).getTransaction(Mockito.any());
+        assertThat(meterRegistry.get(BookWriteQueueImpl.BATCH_SIZE_NAME).summary().totalAmount()).isEqualTo(2);
+    }
+
+    @DisplayName("flush без операций не открывает транзакцию и не попадает в метрики")
+    @Test
+    void flush_Empty() throws Exception {
+        startQueue(10, 3, Duration.ofMillis(10), Duration.ofSeconds(1));
+
+        writeQueue.flush().get(5, TimeUnit.SECONDS);
+
+        Mockito.verifyNoInteractions(transactionManager);
+        assertThat(meterRegistry.get(BookWriteQueueImpl.BATCH_SIZE_NAME).summary().count()).isZero();
+        assertThat(meterRegistry.get(BookWriteQueueImpl.LATENCY_TIMER).timer().count()).isZero();
+    }
+
+    @DisplayName("Ошибка одной операции не отменяет остальные операции пачки")
+    @Test
+    void update_FailedMutationIsolated() throws Exception {
+        startQueue(10, 10, Duration.ofMillis(500), Duration.ofSeconds(1));
+        final var book = new Book(1, "Игра Престолов", AUTHOR, GENRE);
+        Mockito.when(bookService.create(book.getName(), AUTHOR.getName(), GENRE.getName()))
+                .thenReturn(book);
+        Mockito.when(bookService.update(5, book.getName(), AUTHOR.getName(), GENRE.getName()))
+                .thenThrow(new NotFoundException("Отсутствует книга с id=5"));
+
+        final var created = writeQueue.create(book.getName(), AUTHOR.getName(), GENRE.getName());
+        final var updated = writeQueue.update(5, book.getName(), AUTHOR.getName(), GENRE.getName());
+
+        assertThat(created.get(5, TimeUnit.SECONDS)).isSameAs(book);
+        assertThatThrownBy(() -> updated.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(NotFoundException.class);
+        assertThat(meterRegistry.get(BookWriteQueueImpl.FAILED_NAME).counter().count()).isEqualTo(1);
+    }
+
+    @DisplayName("Заполненная очередь отклоняет операции после ожидания")
+    @Test
+    void create_RejectedWhenFull() throws Exception {
+        startQueue(1, 1, Duration.ofMillis(10), Duration.ofMillis(10));
+        final var release = new CountDownLatch(1);
+        Mockito.when(bookService.create(Mockito.anyString(), Mockito.anyString(), Mockito.anyString()))
+                .thenAnswer(invocation -> {
+                    release.await();
+                    return new Book(1, invocation.getArgument(0), AUTHOR, GENRE);
+                });
+
+        final var inFlight = writeQueue.create("Игра Престолов", AUTHOR.getName(), GENRE.getName());
+        while (writeQueue.getPending() > 0) {
+            Thread.sleep(1);
+        }
+        final var queued = writeQueue.create("Битва королей", AUTHOR.getName(), GENRE.getName());
+        final var rejected = writeQueue.create("Буря мечей", AUTHOR.getName(), GENRE.getName());
+
+        assertThat(rejected).isCompletedExceptionally();
+        assertThatThrownBy(rejected::join).hasCauseInstanceOf(RejectedExecutionException.class);
+        release.countDown();
+        CompletableFuture.allOf(inFlight, queued).get(5, TimeUnit.SECONDS);
+    }
+
+    @DisplayName("При остановке очередь дописывается")
+    @Test
+    void stop_DrainsQueue() throws Exception {
+        startQueue(100, 10, Duration.ofSeconds(10), Duration.ofSeconds(1));
+        Mockito.when(bookService.create(Mockito.anyString(), Mockito.anyString(), Mockito.anyString()))
+                .thenAnswer(invocation -> new Book(1, invocation.getArgument(0), AUTHOR, GENRE));
+
+        final var created = writeQueue.create("Игра Престолов", AUTHOR.getName(), GENRE.getName());
+        writeQueue.stop();
+
+        assertThat(created).isCompleted();
+        assertThat(writeQueue.create("Битва королей", AUTHOR.getName(), GENRE.getName())).isCompletedExceptionally();
+    }
+
+    @DisplayName("Операция, ждавшая места в очереди во время остановки, завершается")
+    @Test
+    void stop_CompletesWaitingOffer() throws Exception {
+        startQueue(1, 1, Duration.ofMillis(10), Duration.ofSeconds(5));
+        final var release = new CountDownLatch(1);
+        Mockito.when(bookService.create(Mockito.anyString(), Mockito.anyString(), Mockito.anyString()))
+                .thenAnswer(invocation -> {
+                    release.await();
+                    return new Book(1, invocation.getArgument(0), AUTHOR, GENRE);
+                });
+
+        final var inFlight = writeQueue.create("Игра Престолов", AUTHOR.getName(), GENRE.getName());
+        while (writeQueue.getPending() > 0) {
+            Thread.sleep(1);
+        }
+        final var queued = writeQueue.create("Битва королей", AUTHOR.getName(), GENRE.getName());
+        final var waiting = CompletableFuture.supplyAsync(
+                () -> writeQueue.create("Буря мечей", AUTHOR.getName(), GENRE.getName()));
+        final var stopped = CompletableFuture.runAsync(() -> {
+            try {
+                writeQueue.stop();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.sleep(50);
+        release.countDown();
+
+        stopped.get(5, TimeUnit.SECONDS);
+        CompletableFuture.allOf(inFlight, queued).get(5, TimeUnit.SECONDS);
+        final var late = waiting.get(5, TimeUnit.SECONDS);
+        assertThat(late.handle((book, ex) -> book != null || ex instanceof RejectedExecutionException)
+                .get(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private void startQueue(int capacity, int batchSize, Duration flushInterval, Duration offerTimeout) {
+        final var properties = new LibraryProperties();
+        properties.getWriteBehind().setQueueCapacity(capacity);
+        properties.getWriteBehind().setBatchSize(batchSize);
+        properties.getWriteBehind().setFlushInterval(flushInterval);
+        properties.getWriteBehind().setOfferTimeout(offerTimeout);
+        writeQueue = new BookWriteQueueImpl(bookService, transactionManager, meterRegistry, properties);
+        writeQueue.start();
+    }
+}
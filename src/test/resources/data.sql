@@ -1,5 +1,8 @@
-insert into authors values(1, 'А.С. Пушкин');
-insert into authors values(2, 'Дж.Дж. Мартин');
-insert into genres values (1, 'Сказка');
-insert into genres values (2, 'Фэнтези');
-insert into books values (1, 'Песнь льда и Пламени', 2, 2);
\ No newline at end of file
+insert into authors(author_id, author_name) values (1, 'А.С. Пушкин');
+insert into authors(author_id, author_name) values (2, 'Дж.Дж. Мартин');
+insert into genres(genre_id, genre_name) values (1, 'Сказка');
+insert into genres(genre_id, genre_name) values (2, 'Фэнтези');
+insert into books(book_id, book_name, author_id, genre_id) values (1, 'Песнь льда и Пламени', 2, 2);
+insert into book_authors(book_id, author_id, position) values (1, 2, 0);
+insert into book_genres(book_id, genre_id, position) values (1, 2, 0);
+insert into book_view(book_id, book_name, author_id, author_name, genre_id, genre_name) values (1, 'Песнь льда и Пламени', 2, 'Дж.Дж. Мартин', 2, 'Фэнтези');